@@ -0,0 +1,68 @@
+package com.example.artship.social.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Объекты БД для поиска, которые Hibernate (ddl-auto=update) создать не умеет:
+ * генерируемая колонка tsvector по title+description и GIN-индексы pg_trgm
+ * для поиска подстрок в названиях тегов и username.
+ *
+ * Все DDL идемпотентны. Если что-то создать не удалось (нет прав на расширение,
+ * старая версия Postgres), поиск продолжает работать через LIKE-запросы.
+ */
+@Component
+public class SearchSchemaInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchSchemaInitializer.class);
+
+    private static final String ADD_SEARCH_VECTOR =
+            "ALTER TABLE arts ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+            "GENERATED ALWAYS AS (" +
+            "setweight(to_tsvector('simple'::regconfig, coalesce(title, '')), 'A') || " +
+            "setweight(to_tsvector('simple'::regconfig, coalesce(description, '')), 'B')" +
+            ") STORED";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean fullTextEnabled;
+
+    public SearchSchemaInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        fullTextEnabled = execute("full-text search vector",
+                ADD_SEARCH_VECTOR,
+                "CREATE INDEX IF NOT EXISTS idx_arts_search_vector ON arts USING GIN (search_vector)");
+
+        // Индексы только ускоряют LIKE '%q%', сами запросы от расширения не зависят
+        boolean trigramEnabled = execute("trigram indexes",
+                "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+                "CREATE INDEX IF NOT EXISTS idx_tags_name_trgm ON tags USING GIN (lower(name) gin_trgm_ops)",
+                "CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING GIN (lower(username) gin_trgm_ops)");
+
+        logger.info("Search schema ready: fullText={}, trigram={}", fullTextEnabled, trigramEnabled);
+    }
+
+    public boolean isFullTextEnabled() {
+        return fullTextEnabled;
+    }
+
+    private boolean execute(String name, String... statements) {
+        try {
+            for (String sql : statements) {
+                jdbcTemplate.execute(sql);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not create {}, search will run without it: {}", name, e.getMessage());
+            return false;
+        }
+    }
+}
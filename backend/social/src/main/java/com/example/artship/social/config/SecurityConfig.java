@@ -137,6 +137,7 @@ public class SecurityConfig {
                     "/verify-failed.html",
                     "/static/**",
                     "/api/users/public/**",   
+                    "/api/users/deletion-jobs/*", // доступ проверяет контроллер по X-Deletion-Token
                     "/api/test/**",           
                     "/api/arts/public/**",    
                     "/api/arts/{id}/access",  
@@ -185,7 +186,8 @@ public class SecurityConfig {
             "Access-Control-Request-Method",
             "Access-Control-Request-Headers",
             "Cache-Control",
-            "Cookie"
+            "Cookie",
+            "X-Deletion-Token"
         ));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
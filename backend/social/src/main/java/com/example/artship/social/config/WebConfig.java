@@ -2,24 +2,12 @@ package com.example.artship.social.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/images/**")
-                .addResourceLocations("file:uploads/images/")
-                .setCachePeriod(3600);
-
-        registry.addResourceHandler("/api/files/images/**")
-                .addResourceLocations("file:uploads/images/")
-                .setCachePeriod(3600);
-        
-        System.out.println("Resource handlers configured for file access");
-    }
+    // /uploads/images/** и /api/files/images/** отдает ImageController
     
     @Override
     public void addCorsMappings(CorsRegistry registry) {
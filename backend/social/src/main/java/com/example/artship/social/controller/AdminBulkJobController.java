@@ -0,0 +1,44 @@
+package com.example.artship.social.controller;
+
+import com.example.artship.social.service.AdminBulkJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/bulk-jobs")
+@Tag(name = "Admin Bulk Job Controller", description = "Прогресс массовых операций администратора")
+public class AdminBulkJobController {
+
+    private final AdminBulkJobService adminBulkJobService;
+
+    public AdminBulkJobController(AdminBulkJobService adminBulkJobService) {
+        this.adminBulkJobService = adminBulkJobService;
+    }
+
+    // Прогресс задачи; после завершения — список id, которые не удалось обработать
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasAnyRole('MODERATOR', 'ADMIN')")
+    @Operation(summary = "Статус массовой операции")
+    public ResponseEntity<Map<String, Object>> getJob(
+            @Parameter(description = "ID задачи") @PathVariable String jobId) {
+        return adminBulkJobService.findJob(jobId)
+                .map(job -> ResponseEntity.ok(adminBulkJobService.describe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Статистика очереди массовых операций (только админ)")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(adminBulkJobService.getStats());
+    }
+}
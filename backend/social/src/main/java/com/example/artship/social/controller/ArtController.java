@@ -1,6 +1,7 @@
 package com.example.artship.social.controller;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -15,12 +16,15 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import com.example.artship.social.dto.ArtDto;
+import com.example.artship.social.dto.CursorPage;
 import com.example.artship.social.model.Art;
 import com.example.artship.social.model.User;
 import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.model.mongo.AdminBulkJob;
 import com.example.artship.social.requests.CreateArtRequest;
 import com.example.artship.social.requests.PrivacyUpdateRequest;
 import com.example.artship.social.requests.UpdateArtRequest;
+import com.example.artship.social.service.AdminBulkJobService;
 import com.example.artship.social.service.ArtService;
 import com.example.artship.social.service.LocalFileStorageService;
 import com.example.artship.social.service.PermissionService;
@@ -45,15 +49,18 @@ public class ArtController {
     private final UserService userService;
     private final LocalFileStorageService fileStorageService;
     private final PermissionService permissionService;
+    private final AdminBulkJobService adminBulkJobService;
     
     public ArtController(ArtService artService, 
                          UserService userService, 
                          LocalFileStorageService fileStorageService,
-                         PermissionService permissionService) {
+                         PermissionService permissionService,
+                         AdminBulkJobService adminBulkJobService) {
         this.artService = artService;
         this.userService = userService;
         this.fileStorageService = fileStorageService;
         this.permissionService = permissionService;
+        this.adminBulkJobService = adminBulkJobService;
     }
     
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, 
@@ -100,7 +107,14 @@ public class ArtController {
         art.setProjectDataUrl(request.getProjectDataUrl() != null ? request.getProjectDataUrl().trim() : null);
         art.setIsPublicFlag(request.getIsPublicFlag() != null ? request.getIsPublicFlag() : true);
         
-        ArtDto createdArt = artService.createArt(art, currentUser.getId());
+        ArtDto createdArt;
+        try {
+            createdArt = artService.createArt(art, currentUser.getId());
+        } catch (RuntimeException e) {
+            // Арт не сохранился — ссылку, взятую загрузкой, возвращаем
+            fileStorageService.deleteFile(imageUrl);
+            throw e;
+        }
         
         return new ResponseEntity<>(createdArt, HttpStatus.CREATED);
     }
@@ -146,6 +160,8 @@ public class ArtController {
             existingArt.setProjectDataUrl(request.getProjectDataUrl().trim());
         }
         
+        String previousImageUrl = existingArt.getImageUrl();
+        String newImageUrl = null;
         if (request.getImageFile() != null && !request.getImageFile().isEmpty()) {
             String contentType = request.getImageFile().getContentType();
             if (!isValidImageFormat(contentType)) {
@@ -157,20 +173,30 @@ public class ArtController {
                 return ResponseEntity.badRequest().build();
             }
             
-            String newImageUrl = fileStorageService.uploadFile(request.getImageFile());
-            
-            try {
-                fileStorageService.deleteFile(existingArt.getImageUrl());
-            } catch (Exception e) {
-                logger.warn("Не удалось удалить старое изображение: {}", e.getMessage());
-            }
-            
+            newImageUrl = fileStorageService.uploadFile(request.getImageFile());
             existingArt.setImageUrl(newImageUrl);
         }
         
         existingArt.setUpdatedAt(LocalDateTime.now());
         
-        ArtDto updatedArt = artService.updateArt(id, existingArt);
+        ArtDto updatedArt;
+        try {
+            updatedArt = artService.updateArt(id, existingArt);
+        } catch (RuntimeException e) {
+            if (newImageUrl != null) {
+                fileStorageService.deleteFile(newImageUrl);
+            }
+            throw e;
+        }
+        
+        // Старое изображение освобождается только после того, как арт сохранен с новым
+        if (newImageUrl != null) {
+            try {
+                fileStorageService.deleteFile(previousImageUrl);
+            } catch (Exception e) {
+                logger.warn("Не удалось удалить старое изображение: {}", e.getMessage());
+            }
+        }
         
         return ResponseEntity.ok(updatedArt);
     }
@@ -326,6 +352,84 @@ public class ArtController {
         return ResponseEntity.ok(arts);
     }
     
+    // ==================== KEYSET-ПАГИНАЦИЯ ====================
+    
+    @GetMapping("/public/cursor")
+    @Operation(summary = "Публичные арты (keyset)", 
+               description = "Постраничная выдача по курсору без подсчета общего количества")
+    public ResponseEntity<CursorPage<ArtDto>> getPublicArtsByCursor(
+            @Parameter(description = "Курсор из nextCursor предыдущей страницы") 
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        
+        User currentUser = null;
+        if (userDetails != null) {
+            Optional<User> userOpt = userService.findByUsername(userDetails.getUsername());
+            currentUser = userOpt.orElse(null);
+        }
+        
+        return ResponseEntity.ok(artService.getPublicArtsSlice(cursor, size, currentUser));
+    }
+    
+    @GetMapping("/feed/cursor")
+    @Operation(summary = "Лента подписок (keyset)")
+    public ResponseEntity<CursorPage<ArtDto>> getUserFeedByCursor(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        Optional<User> userOpt = userService.findByUsername(userDetails.getUsername());
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        return ResponseEntity.ok(artService.getUserFeedSlice(userOpt.get().getId(), cursor, size));
+    }
+    
+    @GetMapping("/author/{userId}/cursor")
+    @Operation(summary = "Арты автора (keyset)")
+    public ResponseEntity<CursorPage<ArtDto>> getArtsByAuthorByCursor(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        
+        Optional<User> author = userService.findById(userId);
+        if (author.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        User currentUser = null;
+        if (userDetails != null) {
+            Optional<User> userOpt = userService.findByUsername(userDetails.getUsername());
+            currentUser = userOpt.orElse(null);
+        }
+        
+        return ResponseEntity.ok(artService.getArtsByAuthorSlice(author.get(), cursor, size, currentUser));
+    }
+    
+    @GetMapping("/tag/{tagName}/cursor")
+    @Operation(summary = "Арты по тегу (keyset)")
+    public ResponseEntity<CursorPage<ArtDto>> getArtsByTagByCursor(
+            @PathVariable String tagName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        
+        User currentUser = null;
+        if (userDetails != null) {
+            Optional<User> userOpt = userService.findByUsername(userDetails.getUsername());
+            currentUser = userOpt.orElse(null);
+        }
+        
+        return ResponseEntity.ok(artService.findDtosByTagNameSlice(tagName, cursor, size, currentUser));
+    }
+    
     @GetMapping("/my-arts")
     public ResponseEntity<Page<ArtDto>> getMyArts(
             @AuthenticationPrincipal UserDetails userDetails,
@@ -495,6 +599,39 @@ public class ArtController {
         }
     }
     
+    // Массовое скрытие/бан выполняется в фоне, прогресс — в /api/admin/bulk-jobs/{jobId}
+    @PatchMapping("/bulk/hide")
+    @PreAuthorize("hasAnyRole('MODERATOR', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> bulkHideArts(
+            @RequestBody List<Long> artIds,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        return submitBulkModeration(AdminBulkJob.Type.HIDE_ARTS, artIds, userDetails);
+    }
+    
+    @PatchMapping("/bulk/ban")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> bulkBanArts(
+            @RequestBody List<Long> artIds,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        return submitBulkModeration(AdminBulkJob.Type.BAN_ARTS, artIds, userDetails);
+    }
+    
+    private ResponseEntity<Map<String, Object>> submitBulkModeration(AdminBulkJob.Type type, List<Long> artIds,
+                                                                     UserDetails userDetails) {
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        try {
+            AdminBulkJob job = adminBulkJobService.submit(type, artIds, Map.of(), userDetails.getUsername());
+            logger.info("Массовая операция {} над {} артами запущена пользователем {}",
+                    type, artIds.size(), userDetails.getUsername());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(adminBulkJobService.describe(job));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     private Sort parseSort(String sortParam) {
         String[] sortParts = sortParam.split(",");
         if (sortParts.length == 2) {
@@ -5,6 +5,8 @@ import com.example.artship.social.auth.AuthResponse;
 import com.example.artship.social.dto.*;
 import com.example.artship.social.model.User;
 import com.example.artship.social.service.AuthService;
+import com.example.artship.social.service.EmailDispatcher;
+import com.example.artship.social.requests.ChangePasswordRequest;
 import com.example.artship.social.requests.ResetPasswordRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -19,6 +21,9 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -32,6 +37,9 @@ public class AuthController {
     @Autowired
     private AuthService authService;
     
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+    
     @PostMapping("/login")
     @Operation(summary = "Вход в систему", description = "Аутентификация пользователя и получение токенов")
     @ApiResponses(value = {
@@ -208,6 +216,36 @@ public class AuthController {
         }
     }
     
+    @PostMapping("/change-password")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Смена пароля", description = "Меняет пароль, завершает все сессии и выдает новые токены текущей")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Пароль изменен, выданы новые токены"),
+        @ApiResponse(responseCode = "400", description = "Неверный старый пароль или слишком короткий новый")
+    })
+    public ResponseEntity<?> changePassword(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody ChangePasswordRequest changePasswordRequest,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        try {
+            String newPassword = changePasswordRequest.getNewPassword();
+            if (newPassword == null || newPassword.length() < 6) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Password must be at least 6 characters long");
+                return ResponseEntity.badRequest().body(error);
+            }
+            
+            AuthResponse authResponse = authService.changePassword(userDetails.getUsername(),
+                    changePasswordRequest.getOldPassword(), newPassword, request, response);
+            return ResponseEntity.ok(authResponse);
+        } catch (RuntimeException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     @GetMapping("/reset-password")
     @Operation(summary = "Проверка токена сброса пароля", description = "Проверяет валидность токена перед сбросом пароля")
     @ApiResponses(value = {
@@ -338,4 +376,11 @@ public class AuthController {
             return ResponseEntity.badRequest().body(error);
         }
     }
+    
+    @GetMapping("/email-queue/stats")
+    @Operation(summary = "Состояние очереди писем", description = "Глубина очереди, ошибки и время отправки писем")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getEmailQueueStats() {
+        return ResponseEntity.ok(emailDispatcher.getStats());
+    }
 }
@@ -123,6 +123,24 @@ public class CollectionArtController {
         }
     }
     
+    // Перестановка артов внутри коллекции или перенос нескольких артов из другой коллекции
+    @PostMapping("/move")
+    public ResponseEntity<?> moveArts(@RequestBody MoveArtRequest request) {
+        try {
+            int moved = collectionArtService.moveArts(request.getFromCollectionId(), request.getToCollectionId(),
+                    request.getArtIds(), request.getAfterArtId());
+            Map<String, Object> response = new HashMap<>();
+            response.put("collectionId", request.getToCollectionId());
+            response.put("moved", moved);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            log.error("Error moving arts to collection {}: {}", request.getToCollectionId(), e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     // Копирование арта в коллекцию
     @PostMapping("/art/{artId}/copy")
     public ResponseEntity<CollectionArtDto> copyArtToCollection(
@@ -117,6 +117,10 @@ public class CollectionController {
             return new ResponseEntity<>(collection, HttpStatus.CREATED);
         } catch (RuntimeException e) {
             logger.error("Ошибка создания коллекции: {}", e.getMessage());
+            if (coverImageUrl != null) {
+                // Коллекция не сохранилась — ссылку, взятую загрузкой обложки, возвращаем
+                fileStorageService.deleteFile(coverImageUrl);
+            }
             return ResponseEntity.badRequest().build();
         }
     }
@@ -173,7 +177,8 @@ public class CollectionController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         
-        String coverImageUrl = existingCollection.getCoverImageUrl();
+        // null — обложка не меняется; прежнюю загруженную обложку освобождает сервис
+        String coverImageUrl = null;
         
         if (coverImageFile != null && !coverImageFile.isEmpty()) {
             String contentType = coverImageFile.getContentType();
@@ -188,15 +193,6 @@ public class CollectionController {
                 return ResponseEntity.badRequest().build();
             }
             
-            if (existingCollection.getCoverImageUrl() != null) {
-                try {
-                    fileStorageService.deleteFile(existingCollection.getCoverImageUrl());
-                    logger.info("Старая обложка удалена: {}", existingCollection.getCoverImageUrl());
-                } catch (Exception e) {
-                    logger.warn("Не удалось удалить старую обложку: {}", e.getMessage());
-                }
-            }
-            
             coverImageUrl = fileStorageService.uploadFile(coverImageFile);
             logger.info("Новая обложка загружена: {}", coverImageUrl);
         }
@@ -213,6 +209,10 @@ public class CollectionController {
             return ResponseEntity.ok(collection);
         } catch (RuntimeException e) {
             logger.error("Ошибка обновления коллекции: {}", e.getMessage());
+            if (coverImageUrl != null) {
+                // Коллекция не сохранилась — ссылку, взятую загрузкой обложки, возвращаем
+                fileStorageService.deleteFile(coverImageUrl);
+            }
             return ResponseEntity.badRequest().build();
         }
     }
@@ -361,16 +361,7 @@ public class CollectionController {
         }
         
         try {
-            String coverImageUrl = existingCollection.getCoverImageUrl();
-            if (coverImageUrl != null) {
-                try {
-                    fileStorageService.deleteFile(coverImageUrl);
-                    logger.info("Обложка коллекции удалена: {}", coverImageUrl);
-                } catch (Exception e) {
-                    logger.warn("Не удалось удалить обложку: {}", e.getMessage());
-                }
-            }
-            
+            // Загруженную обложку освобождает сервис; обложку из арта трогать нельзя
             collectionService.deleteCollection(id);
             logger.info("=== КОЛЛЕКЦИЯ УДАЛЕНА. ID: {} ===", id);
             return ResponseEntity.noContent().build();
@@ -0,0 +1,205 @@
+package com.example.artship.social.controller;
+
+import com.example.artship.social.service.LocalFileStorageService;
+import com.example.artship.social.service.UploadGarbageCollector;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Отдача загруженных изображений вместо ResourceHttpRequestHandler.
+ *
+ * Файлы от 48KB передаются через sendfile коннектора Tomcat: поток запроса
+ * освобождается сразу, данные идут из page cache в сокет без копирования в heap.
+ * Меньшие файлы (и контейнеры без sendfile) пишутся FileChannel.transferTo.
+ *
+ * ETag — хэш содержимого, поддерживаются If-None-Match (304), один диапазон
+ * Range/If-Range (206/416) и HEAD. Content-addressed файлы кэшируются как immutable.
+ */
+@RestController
+public class ImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+
+    private static final String IMMUTABLE_CACHE = "public, max-age=31536000, immutable";
+    private static final String LEGACY_CACHE = "public, max-age=86400";
+
+    // Как у DefaultServlet: на маленьких файлах sendfile не окупается
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final LocalFileStorageService fileStorageService;
+    private final UploadGarbageCollector uploadGarbageCollector;
+
+    public ImageController(LocalFileStorageService fileStorageService,
+                           UploadGarbageCollector uploadGarbageCollector) {
+        this.fileStorageService = fileStorageService;
+        this.uploadGarbageCollector = uploadGarbageCollector;
+    }
+
+    // Сколько места освободил сборщик неиспользуемых загрузок
+    @GetMapping("/api/files/gc/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getUploadGcStats() {
+        return ResponseEntity.ok(uploadGarbageCollector.getStats());
+    }
+
+    @RequestMapping(value = { "/uploads/images/**", "/api/files/images/**" },
+                    method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Path file = fileStorageService.resolveLocalFile(path);
+
+        // Временные файлы загрузки (.upload-*.tmp) и прочие скрытые не отдаются
+        if (file == null || file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = Files.size(file);
+        String etag = "\"" + fileStorageService.contentHash(file) + "\"";
+        MediaType contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                fileStorageService.isContentAddressed(file) ? IMMUTABLE_CACHE : LEGACY_CACHE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            // null — несколько диапазонов или неизвестная единица: отдаем файл целиком
+            long[] bounds = parseRange(range, length);
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            } else if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        } catch (IOException e) {
+            // Обычно клиент закрыл соединение, не дочитав картинку
+            logger.debug("Image transfer interrupted for {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Диапазон [start, end] включительно; null — заголовок игнорируется,
+     * пустой массив — диапазон вне файла (416).
+     */
+    private static long[] parseRange(String header, long length) {
+        Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        String from = matcher.group(1);
+        String to = matcher.group(2);
+        try {
+            if (from.isEmpty()) {
+                // bytes=-N: последние N байт
+                if (to.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(to);
+                if (suffix == 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[] { Math.max(0, length - suffix), length - 1 };
+            }
+
+            long start = Long.parseLong(from);
+            long last = to.isEmpty() ? Long.MAX_VALUE : Long.parseLong(to);
+            if (last < start) {
+                return null;
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] { start, Math.min(last, length - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
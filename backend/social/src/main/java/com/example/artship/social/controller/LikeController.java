@@ -25,14 +25,19 @@ public class LikeController {
         this.likeService = likeService;
     }
     
-    // Добавление лайка
+    // Добавление лайка; повторный вызов не ошибка, changed=false
     @PostMapping("/user/{userId}/art/{artId}")
     public ResponseEntity<?> addLike(
             @PathVariable Long userId,
             @PathVariable Long artId) {
         try {
-            LikeDto like = likeService.addLike(userId, artId);
-            return ResponseEntity.ok(like);
+            boolean changed = likeService.addLike(userId, artId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("userId", userId);
+            response.put("artId", artId);
+            response.put("liked", true);
+            response.put("changed", changed);
+            return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -45,12 +50,10 @@ public class LikeController {
     public ResponseEntity<Void> removeLike(
             @PathVariable Long userId,
             @PathVariable Long artId) {
-        try {
-            likeService.removeLike(userId, artId);
+        if (likeService.removeLike(userId, artId)) {
             return ResponseEntity.noContent().build();
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.notFound().build();
     }
     
     // Проверка лайка
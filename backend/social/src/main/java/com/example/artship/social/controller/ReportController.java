@@ -1,10 +1,14 @@
 package com.example.artship.social.controller;
 
 import com.example.artship.social.model.enumclass.ReportStatus;
+import com.example.artship.social.model.mongo.AdminBulkJob;
+import com.example.artship.social.model.mongo.ModerationTarget;
 import com.example.artship.social.model.mongo.Report;
 import com.example.artship.social.requests.ReportRequest;
 import com.example.artship.social.security.CustomUserDetails;
+import com.example.artship.social.service.AdminBulkJobService;
 import com.example.artship.social.service.ReportService;
+import com.example.artship.social.service.ReportStatisticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,6 +16,7 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
@@ -32,9 +37,15 @@ public class ReportController {
     private static final Logger logger = LoggerFactory.getLogger(ReportController.class);
     
     private final ReportService reportService;
+    private final ReportStatisticsService reportStatisticsService;
+    private final AdminBulkJobService adminBulkJobService;
     
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService,
+                            ReportStatisticsService reportStatisticsService,
+                            AdminBulkJobService adminBulkJobService) {
         this.reportService = reportService;
+        this.reportStatisticsService = reportStatisticsService;
+        this.adminBulkJobService = adminBulkJobService;
     }
         
     /**
@@ -134,6 +145,28 @@ public class ReportController {
         return ResponseEntity.ok(reports);
     }
     
+    /**
+     * Очередь модерации: объекты с жалобами по убыванию числа необработанных жалоб
+     */
+    @GetMapping("/queue")
+    @PreAuthorize("hasAnyRole('MODERATOR', 'ADMIN')")
+    @Operation(summary = "Очередь модерации (модератор или админ)",
+               description = "Арты и комментарии с жалобами, сгруппированные по объекту")
+    public ResponseEntity<Page<ModerationTarget>> getModerationQueue(
+            @Parameter(description = "Статус объекта в очереди")
+            @RequestParam(defaultValue = "PENDING") ReportStatus status,
+            
+            @Parameter(description = "Номер страницы (начиная с 0)")
+            @RequestParam(defaultValue = "0") int page,
+            
+            @Parameter(description = "Размер страницы")
+            @RequestParam(defaultValue = "20") int size) {
+        
+        // Сортировка задана в запросе репозитория и совпадает с индексом
+        Page<ModerationTarget> queue = reportService.getModerationQueue(status, PageRequest.of(page, size));
+        return ResponseEntity.ok(queue);
+    }
+    
     /**
      * Получение жалоб по статусу (только для администратора и модератора)
      */
@@ -173,15 +206,7 @@ public class ReportController {
         
         logger.info("Администратор запрашивает статистику по жалобам");
         
-        Map<String, Object> statistics = new HashMap<>();
-        statistics.put("total", reportService.getAllReports(Pageable.unpaged()).getTotalElements());
-        
-        for (ReportStatus status : ReportStatus.values()) {
-            long count = reportService.getReportsByStatus(status, Pageable.unpaged()).getTotalElements();
-            statistics.put(status.toString().toLowerCase(), count);
-        }
-        
-        return ResponseEntity.ok(statistics);
+        return ResponseEntity.ok(reportStatisticsService.getStatistics());
     }
     
     /**
@@ -314,28 +339,15 @@ public class ReportController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         
-        int successCount = 0;
-        int failedCount = 0;
-        
-        for (String reportId : reportIds) {
-            try {
-                reportService.resolveReport(reportId, currentUser.getUsername(), resolutionNote, deleteContent);
-                successCount++;
-            } catch (Exception e) {
-                logger.error("Не удалось обработать жалобу {}: {}", reportId, e.getMessage());
-                failedCount++;
-            }
+        // Жалобы разбираются в фоне, прогресс и ошибки — в /api/admin/bulk-jobs/{jobId}
+        try {
+            AdminBulkJob job = adminBulkJobService.submit(AdminBulkJob.Type.RESOLVE_REPORTS, reportIds,
+                    Map.of("resolutionNote", resolutionNote, "deleteContent", String.valueOf(deleteContent)),
+                    currentUser.getUsername());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(adminBulkJobService.describe(job));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("message", "Bulk resolve completed");
-        response.put("successCount", successCount);
-        response.put("failedCount", failedCount);
-        response.put("total", reportIds.size());
-        
-        logger.info("Массовая обработка завершена: успешно {}, ошибок {}", successCount, failedCount);
-        
-        return ResponseEntity.ok(response);
     }
     
     
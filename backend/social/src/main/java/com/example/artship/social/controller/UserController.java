@@ -3,6 +3,7 @@ package com.example.artship.social.controller;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -22,6 +23,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -44,12 +46,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.Size;
 
-import com.example.artship.social.service.ArtService;
-import com.example.artship.social.service.CollectionService;
-import com.example.artship.social.service.CommentLikeService;
-import com.example.artship.social.service.CommentService;
-import com.example.artship.social.service.FollowService;
-import com.example.artship.social.service.LikeService;
+import com.example.artship.social.model.mongo.AccountDeletionJob;
+import com.example.artship.social.model.mongo.AdminBulkJob;
+import com.example.artship.social.service.AccountDeletionService;
+import com.example.artship.social.service.AdminBulkJobService;
+import com.example.artship.social.service.ImageDerivativeService;
 import com.example.artship.social.service.LocalFileStorageService;
 
 @RestController
@@ -60,28 +61,19 @@ public class UserController {
     private UserService userService;
 
     @Autowired
-    private ArtService artService;
+    private AccountDeletionService accountDeletionService;
 
     @Autowired
-    private CommentService commentService;
-
-    @Autowired
-    private LikeService likeService;
-
-    @Autowired
-    private CollectionService collectionService;
-
-    @Autowired
-    private FollowService followService;
+    private AdminBulkJobService adminBulkJobService;
     
     @Autowired
     private LocalFileStorageService fileStorageService;
 
     @Autowired
-    private JwtTokenUtil jwtTokenUtil;
+    private ImageDerivativeService imageDerivativeService;
 
     @Autowired
-    private CommentLikeService commentLikeService;
+    private JwtTokenUtil jwtTokenUtil;
 
     
     @GetMapping("/public/{id}")
@@ -163,7 +155,7 @@ public class UserController {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = authentication.getName();
         
-        Optional<User> userOptional = userService.findByUsername(currentUsername);
+        Optional<User> userOptional = userService.findByUsernameForUpdate(currentUsername);
         if (!userOptional.isPresent()) {
             return ResponseEntity.notFound().build();
         }
@@ -202,16 +194,39 @@ public class UserController {
             System.out.println("IsPublic updated to: " + isPublic);
         }
         
+        String oldAvatarUrl = existingUser.getAvatarUrl();
         try {
             handleAvatarUpdate(existingUser, avatarFile, avatarUrl);
         } catch (Exception e) {
             System.err.println("Error handling avatar: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        boolean avatarChanged = !Objects.equals(oldAvatarUrl, existingUser.getAvatarUrl());
+        if (avatarChanged) {
+            existingUser.setAvatarThumbnailUrl(null);
+        }
         
-        User updatedUser = userService.save(existingUser);
+        User updatedUser;
+        try {
+            updatedUser = userService.save(existingUser);
+        } catch (RuntimeException e) {
+            // Пользователь не сохранился — ссылку, взятую загрузкой аватара, возвращаем
+            if (avatarFile != null && !avatarFile.isEmpty()) {
+                deleteOldAvatar(existingUser.getAvatarUrl());
+            }
+            throw e;
+        }
         System.out.println("User saved successfully");
         
+        // Прежний аватар освобождается только после того, как сохранен новый
+        if (avatarChanged) {
+            deleteOldAvatar(oldAvatarUrl);
+        }
+        
+        if (avatarChanged) {
+            imageDerivativeService.onAvatarChanged(updatedUser.getId(), updatedUser.getAvatarUrl());
+        }
+        
         UserDto userDto = new UserDto(updatedUser);
         
         if (usernameChanged) {
@@ -237,17 +252,13 @@ public class UserController {
             String newAvatarUrl = fileStorageService.uploadFile(avatarFile);
             System.out.println("Avatar file uploaded: " + newAvatarUrl);
             
-            deleteOldAvatar(user.getAvatarUrl());
             user.setAvatarUrl(newAvatarUrl);
             
         } else if (avatarUrl != null) {
             if (avatarUrl.isEmpty()) {
-
-                deleteOldAvatar(user.getAvatarUrl());
                 user.setAvatarUrl(null);
                 System.out.println("Avatar removed");
             } else {
-                deleteOldAvatar(user.getAvatarUrl());
                 user.setAvatarUrl(avatarUrl);
                 System.out.println("Avatar URL updated to: " + avatarUrl);
             }
@@ -281,7 +292,7 @@ public class UserController {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
         
-        Optional<User> userOptional = userService.findByUsername(username);
+        Optional<User> userOptional = userService.findByUsernameForUpdate(username);
         if (!userOptional.isPresent()) {
             return ResponseEntity.notFound().build();
         }
@@ -289,6 +300,7 @@ public class UserController {
         User existingUser = userOptional.get();
         deleteOldAvatar(existingUser.getAvatarUrl());
         existingUser.setAvatarUrl(null);
+        existingUser.setAvatarThumbnailUrl(null);
         
         User updatedUser = userService.save(existingUser);
         return ResponseEntity.ok(new UserDto(updatedUser));
@@ -464,30 +476,32 @@ public class UserController {
     @Operation(summary = "Массовое изменение ролей")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> bulkChangeRole(
-            @RequestBody List<Long> userIds,
-            @RequestParam UserRole role) {
-        
-        int updatedCount = userService.bulkChangeUserRole(userIds, role);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("message", "Roles updated successfully");
-        response.put("updatedCount", updatedCount);
-        response.put("role", role);
+            @org.springframework.web.bind.annotation.RequestBody List<Long> userIds,
+            @RequestParam UserRole role,
+            @AuthenticationPrincipal UserDetails userDetails) {
         
-        return ResponseEntity.ok(response);
+        try {
+            AdminBulkJob job = adminBulkJobService.submit(AdminBulkJob.Type.CHANGE_USER_ROLE, userIds,
+                    Map.of("role", role.name()), userDetails.getUsername());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(adminBulkJobService.describe(job));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
 
     @DeleteMapping("/me")
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Delete current user account", 
-            description = "Permanently deletes the authenticated user's account and all associated data")
+            description = "Queues permanent deletion of the authenticated user's account and all associated data. " +
+                          "Progress is available at /api/users/deletion-jobs/{jobId} with the returned statusToken " +
+                          "in the X-Deletion-Token header")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "204", description = "Account deleted successfully"),
+        @ApiResponse(responseCode = "202", description = "Account deletion queued"),
         @ApiResponse(responseCode = "401", description = "Not authenticated"),
         @ApiResponse(responseCode = "404", description = "User not found")
     })
-    public ResponseEntity<Void> deleteAccount(
+    public ResponseEntity<Map<String, Object>> deleteAccount(
             @AuthenticationPrincipal UserDetails userDetails) {
         
         
@@ -500,45 +514,66 @@ public class UserController {
             return ResponseEntity.notFound().build();
         }
         
-        User user = userOpt.get();
-        Long userId = user.getId();
-        
-        
         try {
-            if (user.getAvatarUrl() != null) {
-                try {
-                    fileStorageService.deleteFile(user.getAvatarUrl());
-                } catch (Exception e) {
-                }
-            }
-            
-            userService.revokeAllTokens(userId);
-            
-            artService.deleteAllUserArts(userId);
-            
-            commentService.deleteAllUserComments(userId);
-            
-            followService.deleteAllUserFollows(userId);
-            
-            likeService.deleteAllUserLikes(userId);
-            
-            collectionService.deleteAllUserCollections(userId);
-
-            commentLikeService.deleteAllLikesByUserId(userId);
-            
-            userService.deleteVerificationTokens(userId);
-            
-            userService.deleteById(userId);
+            AccountDeletionJob job = accountDeletionService.requestDeletion(userOpt.get().getId());
             
             SecurityContextHolder.clearContext();
             
-            return ResponseEntity.noContent().build();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(toDeletionJobResponse(job));
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    // Сессии владельца отозваны при запросе удаления, поэтому доступ не по JWT,
+    // а по statusToken из ответа DELETE /me. Админ видит любую задачу.
+    // Чужой или неверный токен — 404, чтобы не раскрывать существование задачи.
+    @GetMapping("/deletion-jobs/{jobId}")
+    @Operation(summary = "Get account deletion status", 
+            description = "Returns progress of a queued account deletion. Requires the statusToken " +
+                          "issued on deletion request (X-Deletion-Token header) or admin role")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<Map<String, Object>> getDeletionJob(
+            @Parameter(description = "Deletion job ID") @PathVariable String jobId,
+            @RequestHeader(value = "X-Deletion-Token", required = false) String statusToken,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        boolean admin = userDetails != null && userDetails.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+
+        Optional<AccountDeletionJob> job = admin
+                ? accountDeletionService.findJob(jobId)
+                : accountDeletionService.findJob(jobId, statusToken);
+        return job
+                .map(found -> ResponseEntity.ok(toDeletionJobResponse(found)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/deletion-jobs/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Account deletion queue statistics (Admin only)")
+    public ResponseEntity<Map<String, Object>> getDeletionJobStats() {
+        return ResponseEntity.ok(accountDeletionService.getStats());
+    }
+
+    private Map<String, Object> toDeletionJobResponse(AccountDeletionJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        response.put("step", job.getStep());
+        response.put("processed", job.getProcessed());
+        response.put("createdAt", job.getCreatedAt());
+        response.put("startedAt", job.getStartedAt());
+        response.put("finishedAt", job.getFinishedAt());
+        if (job.getStatusToken() != null) {
+            response.put("statusToken", job.getStatusToken());
+        }
+        return response;
+    }
+
     private void deleteOldAvatar(String oldAvatarUrl) {
         if (oldAvatarUrl != null && oldAvatarUrl.startsWith("/uploads/images/")) {
             try {
@@ -0,0 +1,56 @@
+package com.example.artship.social.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.example.artship.social.model.Art;
+
+/**
+ * Позиция в ленте, отсортированной по (createdAt DESC, id DESC).
+ * Клиенту передается в виде непрозрачной base64url-строки.
+ */
+public final class ArtCursor {
+
+    // Начальная позиция: раньше любой реальной даты не бывает
+    private static final LocalDateTime FIRST_PAGE_CREATED_AT = LocalDateTime.of(9999, 12, 31, 23, 59);
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    private ArtCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static ArtCursor first() {
+        return new ArtCursor(FIRST_PAGE_CREATED_AT, Long.MAX_VALUE);
+    }
+
+    public static ArtCursor after(Art art) {
+        return new ArtCursor(art.getCreatedAt(), art.getId());
+    }
+
+    public static ArtCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return first();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new ArtCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                 Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public Long getId() { return id; }
+}
@@ -12,6 +12,8 @@ public class ArtDto {
     private String title;
     private String description;
     private String image;
+    private String thumbnailUrl;
+    private String mediumUrl;
     private String projectDataUrl;
     
     private boolean publicFlag;
@@ -21,6 +23,10 @@ public class ArtDto {
     private LocalDateTime updatedAt; 
     private UserDto author;
     private List<TagDto> tags;
+    
+    private long likeCount;
+    private long commentCount;
+    private long collectionCount;
 
     public ArtDto() {}
 
@@ -29,6 +35,8 @@ public class ArtDto {
         this.title = art.getTitle();
         this.description = art.getDescription();
         this.image = art.getImageUrl();
+        this.thumbnailUrl = art.getThumbnailUrl();
+        this.mediumUrl = art.getMediumUrl();
         this.projectDataUrl = art.getProjectDataUrl();
         this.publicFlag = art.getIsPublicFlag() != null ? art.getIsPublicFlag() : true;
         this.status = art.getStatus();  
@@ -40,6 +48,9 @@ public class ArtDto {
         }
         
         this.tags = null; 
+        this.likeCount = art.getLikeCount();
+        this.commentCount = art.getCommentCount();
+        this.collectionCount = art.getCollectionCount();
     }
 
     public ArtDto(Art art, List<TagDto> tags) {
@@ -47,6 +58,8 @@ public class ArtDto {
         this.title = art.getTitle();
         this.description = art.getDescription();
         this.image = art.getImageUrl();
+        this.thumbnailUrl = art.getThumbnailUrl();
+        this.mediumUrl = art.getMediumUrl();
         this.projectDataUrl = art.getProjectDataUrl();
         this.publicFlag = art.getIsPublicFlag() != null ? art.getIsPublicFlag() : true;
         this.status = art.getStatus();  
@@ -58,6 +71,9 @@ public class ArtDto {
         }
         
         this.tags = tags;
+        this.likeCount = art.getLikeCount();
+        this.commentCount = art.getCommentCount();
+        this.collectionCount = art.getCollectionCount();
     }
 
     // Геттеры и сеттеры
@@ -73,6 +89,12 @@ public class ArtDto {
     public String getImage() { return image; }
     public void setImage(String image) { this.image = image; }
     
+    public String getThumbnailUrl() { return thumbnailUrl; }
+    public void setThumbnailUrl(String thumbnailUrl) { this.thumbnailUrl = thumbnailUrl; }
+    
+    public String getMediumUrl() { return mediumUrl; }
+    public void setMediumUrl(String mediumUrl) { this.mediumUrl = mediumUrl; }
+    
     public String getProjectDataUrl() { return projectDataUrl; }
     public void setProjectDataUrl(String projectDataUrl) { this.projectDataUrl = projectDataUrl; }
     
@@ -105,4 +127,13 @@ public class ArtDto {
     
     public List<TagDto> getTags() { return tags; }
     public void setTags(List<TagDto> tags) { this.tags = tags; }
+    
+    public long getLikeCount() { return likeCount; }
+    public void setLikeCount(long likeCount) { this.likeCount = likeCount; }
+    
+    public long getCommentCount() { return commentCount; }
+    public void setCommentCount(long commentCount) { this.commentCount = commentCount; }
+    
+    public long getCollectionCount() { return collectionCount; }
+    public void setCollectionCount(long collectionCount) { this.collectionCount = collectionCount; }
 }
\ No newline at end of file
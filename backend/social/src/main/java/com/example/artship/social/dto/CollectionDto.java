@@ -2,6 +2,7 @@ package com.example.artship.social.dto;
 
 import com.example.artship.social.model.Collection;
 import com.example.artship.social.model.CollectionArt;
+import com.example.artship.social.model.enumclass.CollectionKind;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
@@ -13,10 +14,13 @@ public class CollectionDto {
     private String description;
     private Boolean isPublic;
     private String coverImageUrl;
+    private CollectionKind kind;
     private LocalDateTime createdAt;
     private Long userId;
     private String username;
     private Integer artCount;
+    // Первые картинки коллекции для мозаики на карточке
+    private List<String> previewImages;
     private List<ArtDto> arts;
 
     public CollectionDto() {}
@@ -27,6 +31,7 @@ public class CollectionDto {
         this.description = collection.getDescription();
         this.isPublic = collection.getIsPublic();
         this.coverImageUrl = collection.getCoverImageUrl();
+        this.kind = collection.getKind();
         this.createdAt = collection.getCreatedAt();
         this.userId = collection.getUser() != null ? collection.getUser().getId() : null;
         this.username = collection.getUser() != null ? collection.getUser().getUsername() : null;
@@ -63,6 +68,9 @@ public class CollectionDto {
     public String getCoverImageUrl() { return coverImageUrl; }
     public void setCoverImageUrl(String coverImageUrl) { this.coverImageUrl = coverImageUrl; }
 
+    public CollectionKind getKind() { return kind; }
+    public void setKind(CollectionKind kind) { this.kind = kind; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -75,6 +83,9 @@ public class CollectionDto {
     public Integer getArtCount() { return artCount; }
     public void setArtCount(Integer artCount) { this.artCount = artCount; }
 
+    public List<String> getPreviewImages() { return previewImages; }
+    public void setPreviewImages(List<String> previewImages) { this.previewImages = previewImages; }
+
     public List<ArtDto> getArts() { return arts; }
     public void setArts(List<ArtDto> arts) { this.arts = arts; }
 }
\ No newline at end of file
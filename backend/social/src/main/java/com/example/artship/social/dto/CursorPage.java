@@ -0,0 +1,35 @@
+package com.example.artship.social.dto;
+
+import java.util.List;
+
+/**
+ * Страница keyset-пагинации: без подсчета общего количества,
+ * следующая страница запрашивается по непрозрачному nextCursor.
+ */
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+
+    public CursorPage() {}
+
+    public CursorPage(List<T> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+        this.size = content != null ? content.size() : 0;
+    }
+
+    public List<T> getContent() { return content; }
+    public void setContent(List<T> content) { this.content = content; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasNext() { return hasNext; }
+    public void setHasNext(boolean hasNext) { this.hasNext = hasNext; }
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+}
@@ -1,6 +1,8 @@
 package com.example.artship.social.dto;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SearchResult {
     private List<ArtDto> artsByTitle;    
@@ -10,6 +12,7 @@ public class SearchResult {
     private long totalArtsByTags;
     private long totalUsers;
     private String searchType;              
+    private Map<String, Long> timingsMs = new LinkedHashMap<>(); // время выполнения секций поиска
     
     public SearchResult() {}
     
@@ -34,4 +37,7 @@ public class SearchResult {
     
     public String getSearchType() { return searchType; }
     public void setSearchType(String searchType) { this.searchType = searchType; }
+    
+    public Map<String, Long> getTimingsMs() { return timingsMs; }
+    public void setTimingsMs(Map<String, Long> timingsMs) { this.timingsMs = timingsMs; }
 }
\ No newline at end of file
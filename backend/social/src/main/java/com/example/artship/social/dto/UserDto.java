@@ -12,6 +12,7 @@ public class UserDto {
     private UserRole userRole;
     private String displayName;
     private String avatarUrl;
+    private String avatarThumbnailUrl;
     private String bio;
     private Boolean isPublic;
     private LocalDateTime createdAt;
@@ -28,6 +29,7 @@ public class UserDto {
         this.userRole = user.getUserRole();
         this.displayName = user.getDisplayName();
         this.avatarUrl = user.getAvatarUrl();
+        this.avatarThumbnailUrl = user.getAvatarThumbnailUrl();
         this.bio = user.getBio();
         this.isPublic = user.getIsPublic();
         this.createdAt = user.getCreatedAt();
@@ -40,6 +42,7 @@ public class UserDto {
         this.email = other.email;
         this.displayName = other.displayName;
         this.avatarUrl = other.avatarUrl;
+        this.avatarThumbnailUrl = other.avatarThumbnailUrl;
         this.bio = other.bio;
         this.isPublic = other.isPublic;
         this.createdAt = other.createdAt;
@@ -51,6 +54,7 @@ public class UserDto {
     public String getEmail() { return email; }
     public String getDisplayName() { return displayName; }
     public String getAvatarUrl() { return avatarUrl; }
+    public String getAvatarThumbnailUrl() { return avatarThumbnailUrl; }
     public String getBio() { return bio; }
     public Boolean getIsPublic() { return isPublic; }
     public LocalDateTime getCreatedAt() { return createdAt; }
@@ -61,6 +65,7 @@ public class UserDto {
     public void setEmail(String email) { this.email = email; }
     public void setDisplayName(String displayName) { this.displayName = displayName; }
     public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
+    public void setAvatarThumbnailUrl(String avatarThumbnailUrl) { this.avatarThumbnailUrl = avatarThumbnailUrl; }
     public void setBio(String bio) { this.bio = bio; }
     public void setIsPublic(Boolean isPublic) { this.isPublic = isPublic; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
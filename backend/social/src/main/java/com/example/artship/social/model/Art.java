@@ -10,6 +10,7 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
@@ -22,7 +23,10 @@ import jakarta.persistence.GenerationType;
 import com.example.artship.social.model.enumclass.ArtStatus;
 
 @Entity
-@Table(name = "arts")
+@Table(name = "arts", indexes = {
+    @Index(name = "idx_art_status_created", columnList = "status, created_at DESC, id DESC"),
+    @Index(name = "idx_art_author_created", columnList = "author_id, created_at DESC, id DESC")
+})
 public class Art {
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY)
@@ -37,6 +41,13 @@ public class Art {
     @Column(name = "image", nullable = false, length= 500)
     private String image;
 
+    // Уменьшенные копии image; null, пока фоновая обработка не завершилась
+    @Column(name = "thumbnail_url", length = 500)
+    private String thumbnailUrl;
+
+    @Column(name = "medium_url", length = 500)
+    private String mediumUrl;
+    
     @Column(name = "project_data_url", length = 500)
     private String projectDataUrl;
     
@@ -53,8 +64,22 @@ public class Art {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Счетчики обновляются только batch-UPDATE из ArtCounterService,
+    // поэтому сохранение сущности их не перезаписывает
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long likeCount;
+
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long commentCount;
+
+    @Column(name = "collection_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long collectionCount;
+
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "author_id", nullable = false)
+    @JoinColumn(name = "author_id")
     private User author;
 
     @ManyToMany
@@ -98,6 +123,12 @@ public class Art {
     public String getImageUrl() { return image; }
     public void setImageUrl(String imageUrl) { this.image = imageUrl; }
     
+    public String getThumbnailUrl() { return thumbnailUrl; }
+    public void setThumbnailUrl(String thumbnailUrl) { this.thumbnailUrl = thumbnailUrl; }
+    
+    public String getMediumUrl() { return mediumUrl; }
+    public void setMediumUrl(String mediumUrl) { this.mediumUrl = mediumUrl; }
+    
     public String getProjectDataUrl() { return projectDataUrl; }
     public void setProjectDataUrl(String projectDataUrl) { this.projectDataUrl = projectDataUrl; }
     
@@ -115,5 +146,9 @@ public class Art {
 
     public ArtStatus getStatus() {return status;}
     public void setStatus(ArtStatus artStatus) { this.status = artStatus;}
+
+    public long getLikeCount() { return likeCount; }
+    public long getCommentCount() { return commentCount; }
+    public long getCollectionCount() { return collectionCount; }
     
 }
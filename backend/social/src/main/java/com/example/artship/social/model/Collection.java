@@ -1,6 +1,7 @@
 package com.example.artship.social.model;
 
 
+import com.example.artship.social.model.enumclass.CollectionKind;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -25,9 +26,23 @@ public class Collection {
     @Column(name = "cover_image_url", length = 500)
     private String coverImageUrl;
     
+    // Обложка загружена для коллекции и держит ссылку на файл (StoredBlob);
+    // обложка, взятая из картинки арта, ссылки не держит и освобождаться не должна
+    @Column(name = "cover_uploaded", nullable = false, columnDefinition = "boolean default false")
+    private boolean coverUploaded = false;
+    
+    // Позиции элементов выставлены. false только у коллекций, созданных до появления
+    // collection_arts.position: их один раз нумерует CollectionArtService.initializePositions
+    @Column(name = "positions_initialized", nullable = false, columnDefinition = "boolean default false")
+    private boolean positionsInitialized = true;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 16, columnDefinition = "varchar(16) default 'REGULAR'")
+    private CollectionKind kind = CollectionKind.REGULAR;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -53,7 +68,10 @@ public class Collection {
     public String getDescription() { return description; }
     public Boolean getIsPublic() { return isPublic; }
     public String getCoverImageUrl() { return coverImageUrl; }
+    public boolean isCoverUploaded() { return coverUploaded; }
+    public boolean isPositionsInitialized() { return positionsInitialized; }
     public LocalDateTime getCreatedAt() { return createdAt; }
+    public CollectionKind getKind() { return kind; }
     public User getUser() { return user; }
     public List<CollectionArt> getCollectionArts() { return collectionArts; }
     
@@ -62,7 +80,10 @@ public class Collection {
     public void setDescription(String description) { this.description = description; }
     public void setIsPublic(Boolean isPublic) { this.isPublic = isPublic; }
     public void setCoverImageUrl(String coverImageUrl) { this.coverImageUrl = coverImageUrl; }
+    public void setCoverUploaded(boolean coverUploaded) { this.coverUploaded = coverUploaded; }
+    public void setPositionsInitialized(boolean positionsInitialized) { this.positionsInitialized = positionsInitialized; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public void setKind(CollectionKind kind) { this.kind = kind; }
     public void setUser(User user) { this.user = user; }
     public void setCollectionArts(List<CollectionArt> collectionArts) { this.collectionArts = collectionArts; }
     
@@ -5,10 +5,15 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "collection_arts")
+@Table(name = "collection_arts", indexes = {
+    @Index(name = "idx_collection_arts_position", columnList = "collection_id, position")
+})
 @IdClass(CollectionArt.CollectionArtId.class)  
 public class CollectionArt {
     
+    // Расстояние между соседними позициями при добавлении в конец и перенумерации
+    public static final double POSITION_GAP = 1024;
+    
     @Id
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "collection_id", nullable = false)
@@ -22,6 +27,11 @@ public class CollectionArt {
     @Column(name = "saved_at")
     private LocalDateTime savedAt;
     
+    // Порядок внутри коллекции: новые элементы встают в конец с шагом GAP,
+    // при перестановке позиция берется между соседями, так что меняется одна строка
+    @Column(name = "position", nullable = false, columnDefinition = "double precision default 0")
+    private double position;
+    
     
     public CollectionArt() {}
     
@@ -48,6 +58,9 @@ public class CollectionArt {
     public LocalDateTime getSavedAt() { return savedAt; }
     public void setSavedAt(LocalDateTime savedAt) { this.savedAt = savedAt; }
     
+    public double getPosition() { return position; }
+    public void setPosition(double position) { this.position = position; }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
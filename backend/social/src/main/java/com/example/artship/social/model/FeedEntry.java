@@ -0,0 +1,101 @@
+package com.example.artship.social.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Запись материализованной ленты: арт автора, на которого подписан пользователь.
+ * Заполняется при публикации арта (fan-out on write), читается диапазоном по индексу.
+ */
+@Entity
+@Table(name = "feed_entries", indexes = {
+    @Index(name = "idx_feed_user_created", columnList = "user_id, art_created_at DESC, art_id DESC"),
+    @Index(name = "idx_feed_art", columnList = "art_id"),
+    @Index(name = "idx_feed_user_author", columnList = "user_id, author_id")
+})
+@IdClass(FeedEntry.FeedEntryId.class)
+public class FeedEntry {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "art_id", nullable = false)
+    private Long artId;
+
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+
+    @Column(name = "art_created_at", nullable = false)
+    private LocalDateTime artCreatedAt;
+
+    public FeedEntry() {}
+
+    public FeedEntry(Long userId, Long artId, Long authorId, LocalDateTime artCreatedAt) {
+        this.userId = userId;
+        this.artId = artId;
+        this.authorId = authorId;
+        this.artCreatedAt = artCreatedAt;
+    }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Long getArtId() { return artId; }
+    public void setArtId(Long artId) { this.artId = artId; }
+
+    public Long getAuthorId() { return authorId; }
+    public void setAuthorId(Long authorId) { this.authorId = authorId; }
+
+    public LocalDateTime getArtCreatedAt() { return artCreatedAt; }
+    public void setArtCreatedAt(LocalDateTime artCreatedAt) { this.artCreatedAt = artCreatedAt; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FeedEntry that)) return false;
+        return Objects.equals(userId, that.userId) && Objects.equals(artId, that.artId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, artId);
+    }
+
+    @Override
+    public String toString() {
+        return "FeedEntry{user=" + userId + ", art=" + artId + ", author=" + authorId + "}";
+    }
+
+    public static class FeedEntryId implements java.io.Serializable {
+        private Long userId;
+        private Long artId;
+
+        public FeedEntryId() {}
+
+        public FeedEntryId(Long userId, Long artId) {
+            this.userId = userId;
+            this.artId = artId;
+        }
+
+        public Long getUserId() { return userId; }
+        public void setUserId(Long userId) { this.userId = userId; }
+
+        public Long getArtId() { return artId; }
+        public void setArtId(Long artId) { this.artId = artId; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FeedEntryId that)) return false;
+            return Objects.equals(userId, that.userId) && Objects.equals(artId, that.artId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, artId);
+        }
+    }
+}
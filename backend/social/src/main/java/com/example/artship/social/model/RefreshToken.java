@@ -7,7 +7,8 @@ import java.time.LocalDateTime;
 @Table(name = "refresh_tokens", indexes = {
     @Index(name = "idx_refresh_token_hash", columnList = "token_hash"),
     @Index(name = "idx_refresh_token_user", columnList = "user_id"),
-    @Index(name = "idx_refresh_token_expiry", columnList = "expiry_date")
+    @Index(name = "idx_refresh_token_expiry", columnList = "expiry_date"),
+    @Index(name = "idx_refresh_token_family", columnList = "family_id")
 })
 public class RefreshToken {
     
@@ -40,6 +41,19 @@ public class RefreshToken {
     @Column(name = "is_revoked", nullable = false)
     private boolean revoked = false;
     
+    // Все токены, полученные ротацией от одного входа; при повторном использовании
+    // отозванного токена отзывается вся цепочка
+    @Column(name = "family_id", length = 36)
+    private String familyId;
+    
+    // Токен, выданный взамен этого при ротации, и время ротации: по ним параллельный
+    // запрос со старым токеном в пределах grace-периода отличается от повторного использования
+    @Column(name = "replaced_by")
+    private Long replacedBy;
+    
+    @Column(name = "rotated_at")
+    private LocalDateTime rotatedAt;
+    
     @PrePersist
     protected void onCreate() {
         issuedAt = LocalDateTime.now();
@@ -68,4 +82,10 @@ public class RefreshToken {
     public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
     public boolean isRevoked() { return revoked; }
     public void setRevoked(boolean revoked) { this.revoked = revoked; }
+    public String getFamilyId() { return familyId; }
+    public void setFamilyId(String familyId) { this.familyId = familyId; }
+    public Long getReplacedBy() { return replacedBy; }
+    public void setReplacedBy(Long replacedBy) { this.replacedBy = replacedBy; }
+    public LocalDateTime getRotatedAt() { return rotatedAt; }
+    public void setRotatedAt(LocalDateTime rotatedAt) { this.rotatedAt = rotatedAt; }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.example.artship.social.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Файл в content-addressed хранилище загрузок: один файл на SHA-256 содержимого.
+ * refCount — число ссылок из артов, аватаров и обложек; файл удаляется,
+ * когда счетчик доходит до нуля.
+ */
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    // Путь относительно uploads/images: ab/cd/abcd...{ext}
+    @Column(name = "path", nullable = false, length = 100)
+    private String path;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public StoredBlob() {}
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -39,6 +39,10 @@ public class User {
     @Column(name = "avatar_url", length = 500)
     private String avatarUrl;
 
+    // Уменьшенная копия аватара; null, пока фоновая обработка не завершилась
+    @Column(name = "avatar_thumbnail_url", length = 500)
+    private String avatarThumbnailUrl;
+
     @Column(name = "bio", columnDefinition = "TEXT")
     private String bio;
 
@@ -138,6 +142,14 @@ public class User {
         this.avatarUrl = avatarUrl;
     }
 
+    public String getAvatarThumbnailUrl() {
+        return avatarThumbnailUrl;
+    }
+
+    public void setAvatarThumbnailUrl(String avatarThumbnailUrl) {
+        this.avatarThumbnailUrl = avatarThumbnailUrl;
+    }
+
     public String getBio() {
         return bio;
     }
@@ -0,0 +1,7 @@
+package com.example.artship.social.model.enumclass;
+
+
+public enum CollectionKind {
+    REGULAR,
+    LIKED                // системная "Понравившиеся", не больше одной на пользователя
+}
@@ -0,0 +1,112 @@
+package com.example.artship.social.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Фоновое удаление аккаунта. Выполняется AccountDeletionService по шагам,
+ * в processed — число затронутых строк на каждом шаге.
+ * Индексы создает AccountDeletionService при старте (auto-index-creation выключен).
+ */
+@Document(collection = "account_deletion_jobs")
+public class AccountDeletionJob {
+
+    @Id
+    private String id;
+
+    private Long userId;
+
+    private Status status;
+
+    // Текущий (или последний выполненный) шаг. После сбоя задача проходит шаги
+    // заново с первого: все они идемпотентны и подбирают данные, появившиеся за это время
+    private String step;
+
+    private Map<String, Long> processed = new LinkedHashMap<>();
+
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;
+
+    // Пока задача в RUNNING, другие инстансы ее не берут; продлевается после каждой порции
+    private LocalDateTime lockedUntil;
+
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    // SHA-256 секрета, по которому владелец смотрит статус: его сессии к этому времени отозваны
+    private String statusTokenHash;
+
+    // Сам секрет; не сохраняется и отдается только в ответе на запрос удаления
+    @Transient
+    private String statusToken;
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public AccountDeletionJob() {}
+
+    public AccountDeletionJob(Long userId) {
+        this.userId = userId;
+        this.status = Status.PENDING;
+        this.attempts = 0;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Геттеры и сеттеры
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public String getStep() { return step; }
+    public void setStep(String step) { this.step = step; }
+
+    public Map<String, Long> getProcessed() { return processed; }
+    public void setProcessed(Map<String, Long> processed) { this.processed = processed; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public String getStatusTokenHash() { return statusTokenHash; }
+    public void setStatusTokenHash(String statusTokenHash) { this.statusTokenHash = statusTokenHash; }
+
+    public String getStatusToken() { return statusToken; }
+    public void setStatusToken(String statusToken) { this.statusToken = statusToken; }
+}
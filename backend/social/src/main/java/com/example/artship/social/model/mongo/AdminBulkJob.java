@@ -0,0 +1,150 @@
+package com.example.artship.social.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Массовая операция администратора. Выполняется AdminBulkJobService порциями
+ * в фоне; cursor — сколько id из itemIds уже обработано.
+ * Индексы создает AdminBulkJobService при старте (auto-index-creation выключен).
+ */
+@Document(collection = "admin_bulk_jobs")
+public class AdminBulkJob {
+
+    @Id
+    private String id;
+
+    private Type type;
+
+    // Параметры операции: роль, заметка модератора и т.п.
+    private Map<String, String> params = new LinkedHashMap<>();
+
+    // id пользователей, артов или жалоб — в виде строк, у жалоб id строковые
+    private List<String> itemIds = new ArrayList<>();
+
+    private Status status;
+
+    private int cursor;
+
+    private long succeeded;
+
+    private List<Failure> failures = new ArrayList<>();
+
+    private String requestedBy;
+
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;
+
+    // Пока задача в RUNNING, другие инстансы ее не берут; продлевается после каждой порции
+    private LocalDateTime lockedUntil;
+
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    public enum Type {
+        CHANGE_USER_ROLE,
+        RESOLVE_REPORTS,
+        HIDE_ARTS,
+        BAN_ARTS
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    // Элемент, который не удалось обработать
+    public static class Failure {
+        private String itemId;
+        private String error;
+
+        public Failure() {}
+
+        public Failure(String itemId, String error) {
+            this.itemId = itemId;
+            this.error = error;
+        }
+
+        public String getItemId() { return itemId; }
+        public void setItemId(String itemId) { this.itemId = itemId; }
+
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+
+    public AdminBulkJob() {}
+
+    public AdminBulkJob(Type type, List<String> itemIds, Map<String, String> params, String requestedBy) {
+        this.type = type;
+        this.itemIds = itemIds;
+        this.params = params;
+        this.requestedBy = requestedBy;
+        this.status = Status.PENDING;
+        this.cursor = 0;
+        this.attempts = 0;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Геттеры и сеттеры
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public Map<String, String> getParams() { return params; }
+    public void setParams(Map<String, String> params) { this.params = params; }
+
+    public List<String> getItemIds() { return itemIds; }
+    public void setItemIds(List<String> itemIds) { this.itemIds = itemIds; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getCursor() { return cursor; }
+    public void setCursor(int cursor) { this.cursor = cursor; }
+
+    public long getSucceeded() { return succeeded; }
+    public void setSucceeded(long succeeded) { this.succeeded = succeeded; }
+
+    public List<Failure> getFailures() { return failures; }
+    public void setFailures(List<Failure> failures) { this.failures = failures; }
+
+    public String getRequestedBy() { return requestedBy; }
+    public void setRequestedBy(String requestedBy) { this.requestedBy = requestedBy; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
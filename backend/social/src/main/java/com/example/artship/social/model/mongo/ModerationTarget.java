@@ -0,0 +1,95 @@
+package com.example.artship.social.model.mongo;
+
+import com.example.artship.social.model.enumclass.ReportStatus;
+import com.example.artship.social.model.enumclass.ReportTargetType;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Сводка жалоб по одному объекту (арту или комментарию) — элемент очереди модерации.
+ * Обновляется атомарным upsert'ом в ModerationQueueService при каждой жалобе,
+ * id вида "ART:42".
+ */
+@Document(collection = "moderation_queue")
+public class ModerationTarget {
+
+    @Id
+    private String id;
+
+    private ReportTargetType targetType;
+
+    private Long targetId;
+
+    // PENDING, пока есть необработанные жалобы
+    private ReportStatus status;
+
+    private long reportCount;
+
+    // Число необработанных жалоб — по нему сортируется очередь
+    private long priority;
+
+    private Set<String> reasons = new LinkedHashSet<>();
+
+    // Снимок контента на момент первой жалобы
+    private String title;
+    private String authorUsername;
+
+    private boolean autoHidden;
+    private LocalDateTime autoHiddenAt;
+
+    private LocalDateTime firstReportedAt;
+    private LocalDateTime lastReportedAt;
+    private LocalDateTime resolvedAt;
+
+    public ModerationTarget() {}
+
+    public static String idOf(ReportTargetType targetType, Long targetId) {
+        return targetType + ":" + targetId;
+    }
+
+    // Геттеры и сеттеры
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public ReportTargetType getTargetType() { return targetType; }
+    public void setTargetType(ReportTargetType targetType) { this.targetType = targetType; }
+
+    public Long getTargetId() { return targetId; }
+    public void setTargetId(Long targetId) { this.targetId = targetId; }
+
+    public ReportStatus getStatus() { return status; }
+    public void setStatus(ReportStatus status) { this.status = status; }
+
+    public long getReportCount() { return reportCount; }
+    public void setReportCount(long reportCount) { this.reportCount = reportCount; }
+
+    public long getPriority() { return priority; }
+    public void setPriority(long priority) { this.priority = priority; }
+
+    public Set<String> getReasons() { return reasons; }
+    public void setReasons(Set<String> reasons) { this.reasons = reasons; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getAuthorUsername() { return authorUsername; }
+    public void setAuthorUsername(String authorUsername) { this.authorUsername = authorUsername; }
+
+    public boolean isAutoHidden() { return autoHidden; }
+    public void setAutoHidden(boolean autoHidden) { this.autoHidden = autoHidden; }
+
+    public LocalDateTime getAutoHiddenAt() { return autoHiddenAt; }
+    public void setAutoHiddenAt(LocalDateTime autoHiddenAt) { this.autoHiddenAt = autoHiddenAt; }
+
+    public LocalDateTime getFirstReportedAt() { return firstReportedAt; }
+    public void setFirstReportedAt(LocalDateTime firstReportedAt) { this.firstReportedAt = firstReportedAt; }
+
+    public LocalDateTime getLastReportedAt() { return lastReportedAt; }
+    public void setLastReportedAt(LocalDateTime lastReportedAt) { this.lastReportedAt = lastReportedAt; }
+
+    public LocalDateTime getResolvedAt() { return resolvedAt; }
+    public void setResolvedAt(LocalDateTime resolvedAt) { this.resolvedAt = resolvedAt; }
+}
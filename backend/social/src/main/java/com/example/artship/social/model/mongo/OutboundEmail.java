@@ -0,0 +1,91 @@
+package com.example.artship.social.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+/**
+ * Письмо в очереди исходящей почты. Отправляется EmailDispatcher'ом,
+ * после исчерпания попыток остается в коллекции со статусом DEAD.
+ * Индексы создает EmailDispatcher при старте (auto-index-creation выключен).
+ */
+@Document(collection = "outbound_emails")
+public class OutboundEmail {
+    
+    @Id
+    private String id;
+    
+    private String to;
+    
+    private String subject;
+    
+    private String body;
+    
+    private Status status;
+    
+    private int attempts;
+    
+    private LocalDateTime nextAttemptAt;
+    
+    // Пока письмо в SENDING, другие воркеры его не берут; по истечении — повторная попытка
+    private LocalDateTime lockedUntil;
+    
+    private String lastError;
+    
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime sentAt;
+    
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        DEAD
+    }
+    
+    public OutboundEmail() {}
+    
+    public OutboundEmail(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.status = Status.PENDING;
+        this.attempts = 0;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+    
+    // Геттеры и сеттеры
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+    
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+    
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+}
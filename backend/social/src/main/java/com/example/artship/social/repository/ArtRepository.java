@@ -4,14 +4,17 @@ import com.example.artship.social.model.Art;
 import com.example.artship.social.model.User;
 import com.example.artship.social.model.enumclass.ArtStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface ArtRepository extends JpaRepository<Art, Long> {
@@ -51,6 +54,40 @@ public interface ArtRepository extends JpaRepository<Art, Long> {
     
     @Query("SELECT DISTINCT a FROM Art a JOIN a.tags t WHERE LOWER(t.name) = LOWER(:tagName) AND a.isPublicFlag = true")
     Page<Art> findByTagNameAndIsPublicFlagTrue(@Param("tagName") String tagName, Pageable pageable);
+
+    /**
+     * Арты, не видимые обычным пользователям (не ACTIVE или не публичные): пары (id, status)
+     */
+    @Query("SELECT a.id, a.status FROM Art a " +
+           "WHERE a.status <> :active OR a.isPublicFlag IS NULL OR a.isPublicFlag = false")
+    List<Object[]> findRestrictedIdsAndStatus(@Param("active") ArtStatus active);
+
+    /**
+     * Полнотекстовый поиск по title+description (колонка search_vector, GIN-индекс),
+     * результаты упорядочены по релевантности. tsQuery — готовое выражение для to_tsquery
+     */
+    @Query(value = "SELECT a.* FROM arts a " +
+                   "WHERE a.is_public_flag = true AND a.search_vector @@ to_tsquery('simple', :tsQuery) " +
+                   "ORDER BY ts_rank(a.search_vector, to_tsquery('simple', :tsQuery)) DESC, a.created_at DESC, a.id DESC",
+           countQuery = "SELECT COUNT(*) FROM arts a " +
+                        "WHERE a.is_public_flag = true AND a.search_vector @@ to_tsquery('simple', :tsQuery)",
+           nativeQuery = true)
+    Page<Art> searchPublicByText(@Param("tsQuery") String tsQuery, Pageable pageable);
+
+    /**
+     * Арты с тегом, название которого подходит под LIKE-шаблон (trigram-индекс по lower(name))
+     */
+    @Query(value = "SELECT a.* FROM arts a " +
+                   "WHERE a.is_public_flag = true AND a.id IN (" +
+                   "  SELECT at.art_id FROM art_tags at JOIN tags t ON t.id = at.tag_id " +
+                   "  WHERE lower(t.name) LIKE :pattern) " +
+                   "ORDER BY a.created_at DESC, a.id DESC",
+           countQuery = "SELECT COUNT(*) FROM arts a " +
+                        "WHERE a.is_public_flag = true AND a.id IN (" +
+                        "  SELECT at.art_id FROM art_tags at JOIN tags t ON t.id = at.tag_id " +
+                        "  WHERE lower(t.name) LIKE :pattern)",
+           nativeQuery = true)
+    Page<Art> searchPublicByTagPattern(@Param("pattern") String pattern, Pageable pageable);
     
     
     /**
@@ -91,6 +128,15 @@ public interface ArtRepository extends JpaRepository<Art, Long> {
                                          @Param("status") ArtStatus status, 
                                          Pageable pageable);
     
+    /**
+     * Арты нескольких авторов по статусу и публичности (pull-часть гибридной ленты)
+     */
+    @Query("SELECT a FROM Art a WHERE a.author.id IN :authorIds AND a.status = :status " +
+           "AND a.isPublicFlag = true ORDER BY a.createdAt DESC, a.id DESC")
+    Page<Art> findByAuthorIdInAndStatusAndIsPublicFlagTrue(@Param("authorIds") List<Long> authorIds,
+                                                           @Param("status") ArtStatus status,
+                                                           Pageable pageable);
+    
     /**
      * Поиск по заголовку с исключением статусов (для админов/модераторов)
      */
@@ -165,8 +211,101 @@ public interface ArtRepository extends JpaRepository<Art, Long> {
     Page<Art> findByAnyTagNamesAndStatusAndIsPublicFlagTrue(@Param("tagNames") List<String> tagNames,
                                                              @Param("status") ArtStatus status,
                                                              Pageable pageable);
+    
+    // ==================== KEYSET-ПАГИНАЦИЯ (createdAt, id) ====================
+    // Pageable используется только как LIMIT: возвращается List, поэтому count-запроса нет
+    
+    @Query("SELECT a FROM Art a WHERE a.status = :status AND a.isPublicFlag = true " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByStatusAndIsPublicFlagTrueBefore(@Param("status") ArtStatus status,
+                                                    @Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") Long id,
+                                                    Pageable limit);
+    
+    @Query("SELECT a FROM Art a WHERE a.status NOT IN :statuses " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByStatusNotInBefore(@Param("statuses") List<ArtStatus> statuses,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable limit);
+    
+    @Query("SELECT a FROM Art a WHERE a.author = :author AND a.status NOT IN :statuses " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByAuthorAndStatusNotInBefore(@Param("author") User author,
+                                               @Param("statuses") List<ArtStatus> statuses,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Pageable limit);
+    
+    @Query("SELECT a FROM Art a WHERE a.author = :author AND a.status = :status AND a.isPublicFlag = true " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByAuthorAndStatusAndIsPublicFlagTrueBefore(@Param("author") User author,
+                                                             @Param("status") ArtStatus status,
+                                                             @Param("createdAt") LocalDateTime createdAt,
+                                                             @Param("id") Long id,
+                                                             Pageable limit);
+    
+    @Query("SELECT a FROM Art a WHERE a.author.id IN " +
+           "(SELECT f.following.id FROM Follow f WHERE f.follower.id = :userId) " +
+           "AND a.status = :status AND a.isPublicFlag = true " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findFeedByUserIdAndStatusBefore(@Param("userId") Long userId,
+                                              @Param("status") ArtStatus status,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Pageable limit);
+    
+    @Query("SELECT a FROM Art a WHERE a.author.id IN :authorIds AND a.status = :status " +
+           "AND a.isPublicFlag = true " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByAuthorIdInAndStatusAndIsPublicFlagTrueBefore(@Param("authorIds") List<Long> authorIds,
+                                                                 @Param("status") ArtStatus status,
+                                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                                 @Param("id") Long id,
+                                                                 Pageable limit);
+    
+    @Query("SELECT DISTINCT a FROM Art a JOIN a.tags t WHERE LOWER(t.name) = LOWER(:tagName) " +
+           "AND a.status NOT IN :statuses " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByTagNameAndStatusNotInBefore(@Param("tagName") String tagName,
+                                                @Param("statuses") List<ArtStatus> statuses,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable limit);
+    
+    @Query("SELECT DISTINCT a FROM Art a JOIN a.tags t WHERE LOWER(t.name) = LOWER(:tagName) " +
+           "AND a.status = :status AND a.isPublicFlag = true " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Art> findByTagNameAndStatusAndIsPublicFlagTrueBefore(@Param("tagName") String tagName,
+                                                              @Param("status") ArtStatus status,
+                                                              @Param("createdAt") LocalDateTime createdAt,
+                                                              @Param("id") Long id,
+                                                              Pageable limit);
+    
     Page<Art> findByStatus(ArtStatus status, Pageable pageable);
 
     @Query("SELECT COUNT(a) FROM Art a WHERE a.status = :status")
     long countByStatus(@Param("status") ArtStatus status);
-}
\ No newline at end of file
+
+    // Условие по image отбрасывает результат обработки, если картинку успели заменить
+    @Modifying
+    @Transactional
+    @Query("UPDATE Art a SET a.thumbnailUrl = :thumbnailUrl, a.mediumUrl = :mediumUrl " +
+           "WHERE a.id = :id AND a.image = :imageUrl")
+    int updateImageVariants(@Param("id") Long id,
+                            @Param("imageUrl") String imageUrl,
+                            @Param("thumbnailUrl") String thumbnailUrl,
+                            @Param("mediumUrl") String mediumUrl);
+
+    // Пары (id, image) артов без уменьшенных копий, по возрастанию id после afterId
+    @Query("SELECT a.id, a.image FROM Art a WHERE a.thumbnailUrl IS NULL AND a.id > :afterId ORDER BY a.id")
+    List<Object[]> findImagesWithoutVariants(@Param("afterId") Long afterId, Pageable limit);
+}
@@ -72,6 +72,22 @@ public interface ArtTagRepository extends JpaRepository<ArtTag, ArtTag.ArtTagId>
     @Query("SELECT at FROM ArtTag at WHERE at.art.id IN :artIds")
     List<ArtTag> findByArtIds(@Param("artIds") List<Long> artIds);
     
+    // Пары (artId, тег) для страницы артов одним запросом
+    @Query("SELECT at.art.id, t FROM ArtTag at JOIN at.tag t WHERE at.art.id IN :artIds")
+    List<Object[]> findArtIdAndTagByArtIds(@Param("artIds") List<Long> artIds);
+    
+    // Количество артов по нескольким тегам (tagId, count)
+    @Query("SELECT at.tag.id, COUNT(at) FROM ArtTag at WHERE at.tag.id IN :tagIds GROUP BY at.tag.id")
+    List<Object[]> countByTagIds(@Param("tagIds") List<Long> tagIds);
+    
+    // Все пары (tagId, artId) — для построения индекса тегов
+    @Query("SELECT at.tag.id, at.art.id FROM ArtTag at")
+    List<Object[]> findAllTagIdArtIdPairs();
+    
+    // id тегов арта
+    @Query("SELECT at.tag.id FROM ArtTag at WHERE at.art.id = :artId")
+    List<Long> findTagIdsByArtId(@Param("artId") Long artId);
+    
     // Найти связи по нескольким tagId
     @Query("SELECT at FROM ArtTag at WHERE at.tag.id IN :tagIds")
     List<ArtTag> findByTagIds(@Param("tagIds") List<Long> tagIds);
@@ -19,10 +19,12 @@ public interface CollectionArtRepository extends JpaRepository<CollectionArt, Lo
     
     // Методы с пагинацией
     Page<CollectionArt> findByCollectionId(Long collectionId, Pageable pageable);
+    Page<CollectionArt> findByCollectionIdOrderByPositionAsc(Long collectionId, Pageable pageable);
     Page<CollectionArt> findByArtId(Long artId, Pageable pageable);
     
     // Методы без пагинации (для обратной совместимости)
     List<CollectionArt> findByCollectionId(Long collectionId);
+    List<CollectionArt> findByCollectionIdOrderByPositionAsc(Long collectionId);
     List<CollectionArt> findByArtId(Long artId);
     
     Optional<CollectionArt> findByCollectionIdAndArtId(Long collectionId, Long artId);
@@ -31,10 +33,86 @@ public interface CollectionArtRepository extends JpaRepository<CollectionArt, Lo
     @Modifying
     void deleteByCollectionIdAndArtId(Long collectionId, Long artId);
     
+    // Идемпотентное добавление в конец коллекции: 0, если арт уже в ней
+    @Modifying
+    @Query(value = "INSERT INTO collection_arts (collection_id, art_id, saved_at, position) " +
+                   "SELECT :collectionId, :artId, now(), COALESCE(MAX(position), 0) + " + CollectionArt.POSITION_GAP + " " +
+                   "FROM collection_arts WHERE collection_id = :collectionId " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("collectionId") Long collectionId, @Param("artId") Long artId);
+    
+    // ==================== ПОРЯДОК ====================
+    
+    @Query("SELECT MAX(ca.position) FROM CollectionArt ca WHERE ca.collection.id = :collectionId")
+    Double findMaxPosition(@Param("collectionId") Long collectionId);
+    
+    @Query("SELECT ca.position FROM CollectionArt ca WHERE ca.collection.id = :collectionId AND ca.art.id = :artId")
+    Optional<Double> findPosition(@Param("collectionId") Long collectionId, @Param("artId") Long artId);
+    
+    // Ближайшая позиция после :after без учета переставляемых артов (idx_collection_arts_position)
+    @Query("SELECT MIN(ca.position) FROM CollectionArt ca WHERE ca.collection.id = :collectionId " +
+           "AND ca.position > :after AND ca.art.id NOT IN :artIds")
+    Double findNextPosition(@Param("collectionId") Long collectionId,
+                            @Param("after") double after,
+                            @Param("artIds") java.util.Collection<Long> artIds);
+    
+    @Query("SELECT MIN(ca.position) FROM CollectionArt ca WHERE ca.collection.id = :collectionId " +
+           "AND ca.art.id NOT IN :artIds")
+    Double findFirstPosition(@Param("collectionId") Long collectionId,
+                             @Param("artIds") java.util.Collection<Long> artIds);
+    
+    @Query("SELECT ca.art.id FROM CollectionArt ca WHERE ca.collection.id = :collectionId AND ca.art.id IN :artIds")
+    List<Long> findArtIdsByCollectionIdAndArtIdIn(@Param("collectionId") Long collectionId,
+                                                  @Param("artIds") java.util.Collection<Long> artIds);
+    
+    @Modifying
+    @Query("DELETE FROM CollectionArt ca WHERE ca.collection.id = :collectionId AND ca.art.id IN :artIds")
+    int deleteByCollectionIdAndArtIdIn(@Param("collectionId") Long collectionId,
+                                       @Param("artIds") java.util.Collection<Long> artIds);
+    
+    // Перенумерация с шагом GAP, когда между соседями не осталось места
+    @Modifying
+    @Query(value = "UPDATE collection_arts ca SET position = r.rn * " + CollectionArt.POSITION_GAP + " FROM (" +
+                   "  SELECT art_id, ROW_NUMBER() OVER (ORDER BY position, art_id) AS rn " +
+                   "  FROM collection_arts WHERE collection_id = :collectionId" +
+                   ") r WHERE ca.collection_id = :collectionId AND ca.art_id = r.art_id", nativeQuery = true)
+    int rebalancePositions(@Param("collectionId") Long collectionId);
+    
+    // Начальные позиции для коллекций, созданных до появления колонки. Строки без позиции
+    // (0 по умолчанию) идут в порядке добавления, а уже расставленные сохраняют свой порядок —
+    // перенумерация коллекции с ручным порядком его не меняет. Признак нумерации — collections.positions_initialized
+    @Modifying
+    @Query(value = "UPDATE collection_arts ca SET position = r.rn * " + CollectionArt.POSITION_GAP + " FROM (" +
+                   "  SELECT collection_id, art_id, " +
+                   "         ROW_NUMBER() OVER (PARTITION BY collection_id ORDER BY position, saved_at, art_id) AS rn " +
+                   "  FROM collection_arts WHERE collection_id IN " +
+                   "    (SELECT id FROM collections WHERE positions_initialized = false)" +
+                   ") r WHERE ca.collection_id = r.collection_id AND ca.art_id = r.art_id", nativeQuery = true)
+    int backfillPositions();
+    
     @Modifying
     void deleteByCollectionId(Long collectionId);
     
     Long countByCollectionId(Long collectionId);
+
+    // Пары (collectionId, число ACTIVE артов) для страницы коллекций одним запросом
+    @Query("SELECT ca.collection.id, COUNT(ca) FROM CollectionArt ca " +
+           "WHERE ca.collection.id IN :collectionIds AND ca.art.status = :status GROUP BY ca.collection.id")
+    List<Object[]> countByCollectionIdsAndArtStatus(@Param("collectionIds") java.util.Collection<Long> collectionIds,
+                                                    @Param("status") ArtStatus status);
+
+    // Первые :limit картинок каждой коллекции (collectionId, url) — превью для списков
+    @Query(value = "SELECT collection_id, url FROM (" +
+                   "  SELECT ca.collection_id, COALESCE(a.thumbnail_url, a.image) AS url, " +
+                   "         ROW_NUMBER() OVER (PARTITION BY ca.collection_id ORDER BY ca.position, ca.art_id) AS rn " +
+                   "  FROM collection_arts ca JOIN arts a ON a.id = ca.art_id " +
+                   "  WHERE ca.collection_id IN (:collectionIds) AND a.status = 'ACTIVE'" +
+                   ") ranked WHERE rn <= :limit ORDER BY collection_id, rn", nativeQuery = true)
+    List<Object[]> findPreviewImages(@Param("collectionIds") java.util.Collection<Long> collectionIds,
+                                     @Param("limit") int limit);
+
+    @Query("SELECT ca.art.id FROM CollectionArt ca WHERE ca.collection.id = :collectionId")
+    List<Long> findArtIdsByCollectionId(@Param("collectionId") Long collectionId);
     
     @Query("SELECT CASE WHEN COUNT(ca) > 0 THEN true ELSE false END FROM CollectionArt ca " +
            "WHERE ca.art.id = :artId AND ca.collection.user.id != :userId")
@@ -45,9 +123,10 @@ public interface CollectionArtRepository extends JpaRepository<CollectionArt, Lo
     
     
     /**
-     * Получение артов коллекции с фильтром по статусу арта (с пагинацией)
+     * Получение артов коллекции с фильтром по статусу арта (с пагинацией), в порядке коллекции
      */
-    @Query("SELECT ca FROM CollectionArt ca WHERE ca.collection.id = :collectionId AND ca.art.status = :status")
+    @Query("SELECT ca FROM CollectionArt ca WHERE ca.collection.id = :collectionId AND ca.art.status = :status " +
+           "ORDER BY ca.position, ca.art.id")
     Page<CollectionArt> findByCollectionIdAndArtStatus(@Param("collectionId") Long collectionId, 
                                                         @Param("status") ArtStatus status, 
                                                         Pageable pageable);
@@ -1,13 +1,16 @@
 package com.example.artship.social.repository;
 
 import com.example.artship.social.model.Collection;
+import com.example.artship.social.model.enumclass.CollectionKind;
 
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,8 +23,11 @@ public interface CollectionRepository extends JpaRepository<Collection, Long> {
     
     Page<Collection> findByUserIdAndIsPublicTrueOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
+    // Коллекции разных авторов: владелец подгружается сразу, а не запросом на каждую
+    @EntityGraph(attributePaths = "user")
     Page<Collection> findByIsPublicTrueOrderByCreatedAtDesc(Pageable pageable);
     
+    @EntityGraph(attributePaths = "user")
     @Query("SELECT c FROM Collection c WHERE c.isPublic = true AND " +
            "(LOWER(c.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "LOWER(c.description) LIKE LOWER(CONCAT('%', :query, '%'))) " +
@@ -50,4 +56,53 @@ public interface CollectionRepository extends JpaRepository<Collection, Long> {
 
 
     Optional<Collection> findByUserIdAndTitle(Long userId, String title);
+
+    @Query("SELECT c.id FROM Collection c WHERE c.user.id = :userId AND c.kind = :kind")
+    Optional<Long> findIdByUserIdAndKind(@Param("userId") Long userId, @Param("kind") CollectionKind kind);
+
+    // Создание системной коллекции; конкурентный вызов упирается в уникальный индекс и ничего не делает
+    @Modifying
+    @Query(value = "INSERT INTO collections (title, user_id, kind, is_public, positions_initialized, created_at) " +
+                   "VALUES (:title, :userId, 'LIKED', true, true, now()) " +
+                   "ON CONFLICT (user_id) WHERE kind = 'LIKED' DO NOTHING", nativeQuery = true)
+    int insertLikedIfAbsent(@Param("userId") Long userId, @Param("title") String title);
+
+    @Modifying
+    @Query(value = "UPDATE collections SET positions_initialized = true WHERE positions_initialized = false",
+           nativeQuery = true)
+    int markPositionsInitialized();
+
+    // Обложка из картинки арта, только если у коллекции ее еще нет
+    @Modifying
+    @Query(value = "UPDATE collections SET cover_image_url = (SELECT image FROM arts WHERE id = :artId), cover_uploaded = false " +
+                   "WHERE id = :collectionId AND (cover_image_url IS NULL OR cover_image_url = '')",
+           nativeQuery = true)
+    int setCoverIfMissing(@Param("collectionId") Long collectionId, @Param("artId") Long artId);
+
+
+    // Картинка первого по позиции ACTIVE арта коллекции (idx_collection_arts_position)
+    String FIRST_ACTIVE_IMAGE = "(SELECT a.image FROM collection_arts ca JOIN arts a ON a.id = ca.art_id " +
+                                "WHERE ca.collection_id = collections.id AND a.status = 'ACTIVE' " +
+                                "ORDER BY ca.position, ca.art_id LIMIT 1)";
+
+    // Обложка была картинкой одного из убранных артов — берется следующий по порядку;
+    // загруженная пользователем обложка не трогается
+    @Modifying
+    @Query(value = "UPDATE collections SET cover_image_url = " + FIRST_ACTIVE_IMAGE + " " +
+                   "WHERE id = :collectionId AND cover_uploaded = false " +
+                   "AND cover_image_url IN (SELECT image FROM arts WHERE id IN (:artIds))",
+           nativeQuery = true)
+    int replaceCoverOfRemovedArts(@Param("collectionId") Long collectionId,
+                                  @Param("artIds") java.util.Collection<Long> artIds);
+
+    // После перестановки: обложка, взятая из артов коллекции (или пустая), следует за первым артом
+    @Modifying
+    @Query(value = "UPDATE collections SET cover_image_url = " + FIRST_ACTIVE_IMAGE + " " +
+                   "WHERE id = :collectionId AND cover_uploaded = false " +
+                   "AND (cover_image_url IS NULL OR cover_image_url = '' OR EXISTS (" +
+                   "  SELECT 1 FROM collection_arts ca JOIN arts a ON a.id = ca.art_id " +
+                   "  WHERE ca.collection_id = collections.id AND a.image = collections.cover_image_url)) " +
+                   "AND cover_image_url IS DISTINCT FROM " + FIRST_ACTIVE_IMAGE,
+           nativeQuery = true)
+    int refreshCoverFromFirstArt(@Param("collectionId") Long collectionId);
 }
\ No newline at end of file
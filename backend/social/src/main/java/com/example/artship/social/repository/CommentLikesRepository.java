@@ -9,6 +9,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CommentLikesRepository extends JpaRepository<CommentLikes, CommentLikes.CommentLikeId> {
 
@@ -32,4 +34,12 @@ public interface CommentLikesRepository extends JpaRepository<CommentLikes, Comm
     
     @Query("SELECT COUNT(cl) FROM CommentLikes cl WHERE cl.comment.id = :commentId")
     long countByCommentId(@Param("commentId") Long commentId);
+    
+    // Количество лайков по нескольким комментариям (commentId, count)
+    @Query("SELECT cl.comment.id, COUNT(cl) FROM CommentLikes cl WHERE cl.comment.id IN :commentIds GROUP BY cl.comment.id")
+    List<Object[]> countByCommentIds(@Param("commentIds") List<Long> commentIds);
+    
+    // Какие из комментариев лайкнул пользователь
+    @Query("SELECT cl.comment.id FROM CommentLikes cl WHERE cl.user.id = :userId AND cl.comment.id IN :commentIds")
+    List<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") List<Long> commentIds);
 }
\ No newline at end of file
@@ -25,6 +25,32 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     
     @Query("SELECT c FROM Comment c WHERE c.parentComment.id = :parentCommentId ORDER BY c.createdAt ASC")
     Page<Comment> findRepliesByParentCommentId(@Param("parentCommentId") Long parentCommentId, Pageable pageable);
+    
+    // Корневые комментарии вместе с авторами
+    @Query(value = "SELECT c FROM Comment c LEFT JOIN FETCH c.user " +
+                   "WHERE c.art.id = :artId AND c.parentComment IS NULL ORDER BY c.createdAt ASC",
+           countQuery = "SELECT COUNT(c) FROM Comment c WHERE c.art.id = :artId AND c.parentComment IS NULL")
+    Page<Comment> findRootCommentsWithUserByArtId(@Param("artId") Long artId, Pageable pageable);
+    
+    // Ответы на комментарий вместе с авторами
+    @Query(value = "SELECT c FROM Comment c LEFT JOIN FETCH c.user " +
+                   "WHERE c.parentComment.id = :parentCommentId ORDER BY c.createdAt ASC",
+           countQuery = "SELECT COUNT(c) FROM Comment c WHERE c.parentComment.id = :parentCommentId")
+    Page<Comment> findRepliesWithUserByParentCommentId(@Param("parentCommentId") Long parentCommentId, Pageable pageable);
+    
+    // id первых :limit ответов на каждый из комментариев одним запросом
+    @Query(value = "SELECT r.id FROM (" +
+                   "  SELECT c.id, ROW_NUMBER() OVER (PARTITION BY c.parent_comment_id ORDER BY c.created_at, c.id) AS rn " +
+                   "  FROM comments c WHERE c.parent_comment_id IN (:parentIds)" +
+                   ") r WHERE r.rn <= :limit", nativeQuery = true)
+    List<Long> findFirstReplyIdsByParentIds(@Param("parentIds") List<Long> parentIds, @Param("limit") int limit);
+    
+    @Query("SELECT c FROM Comment c LEFT JOIN FETCH c.user WHERE c.id IN :ids ORDER BY c.createdAt ASC, c.id ASC")
+    List<Comment> findAllWithUserByIdIn(@Param("ids") List<Long> ids);
+    
+    // Количество ответов по нескольким комментариям (parentId, count)
+    @Query("SELECT c.parentComment.id, COUNT(c) FROM Comment c WHERE c.parentComment.id IN :parentIds GROUP BY c.parentComment.id")
+    List<Object[]> countRepliesByParentIds(@Param("parentIds") List<Long> parentIds);
         
     // Поиск всех комментариев пользователя
     List<Comment> findByUserId(Long userId);
@@ -43,6 +69,10 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.user.id = :userId")
     Long countByUserId(@Param("userId") Long userId);
+
+    // Пары (artId, количество) комментариев пользователя — для корректировки счетчиков перед удалением
+    @Query("SELECT c.art.id, COUNT(c) FROM Comment c WHERE c.user.id = :userId GROUP BY c.art.id")
+    List<Object[]> countPerArtByUserId(@Param("userId") Long userId);
     
     // Удаление всех комментариев пользователя
     @Modifying
@@ -0,0 +1,125 @@
+package com.example.artship.social.repository;
+
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.FeedEntry;
+import com.example.artship.social.model.enumclass.ArtStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface FeedEntryRepository extends JpaRepository<FeedEntry, FeedEntry.FeedEntryId> {
+
+    /**
+     * Страница ленты: диапазон по индексу (user_id, art_created_at) + выборка артов по PK
+     */
+    @Query(value = "SELECT a FROM FeedEntry fe JOIN Art a ON a.id = fe.artId " +
+                   "WHERE fe.userId = :userId AND a.status = :status AND a.isPublicFlag = true " +
+                   "ORDER BY fe.artCreatedAt DESC, fe.artId DESC",
+           countQuery = "SELECT COUNT(fe) FROM FeedEntry fe JOIN Art a ON a.id = fe.artId " +
+                        "WHERE fe.userId = :userId AND a.status = :status AND a.isPublicFlag = true")
+    Page<Art> findFeedArts(@Param("userId") Long userId,
+                           @Param("status") ArtStatus status,
+                           Pageable pageable);
+
+    /**
+     * Сколько артов указанных авторов уже лежит в ленте — они же приходят из pull-части
+     */
+    @Query("SELECT COUNT(fe) FROM FeedEntry fe JOIN Art a ON a.id = fe.artId " +
+           "WHERE fe.userId = :userId AND fe.authorId IN :authorIds " +
+           "AND a.status = :status AND a.isPublicFlag = true")
+    long countFeedArtsByAuthors(@Param("userId") Long userId,
+                                @Param("status") ArtStatus status,
+                                @Param("authorIds") List<Long> authorIds);
+
+    /**
+     * Keyset-вариант ленты: продолжение после позиции (createdAt, id), без count-запроса
+     */
+    @Query("SELECT a FROM FeedEntry fe JOIN Art a ON a.id = fe.artId " +
+           "WHERE fe.userId = :userId AND a.status = :status AND a.isPublicFlag = true " +
+           "AND (fe.artCreatedAt < :createdAt OR (fe.artCreatedAt = :createdAt AND fe.artId < :id)) " +
+           "ORDER BY fe.artCreatedAt DESC, fe.artId DESC")
+    List<Art> findFeedArtsBefore(@Param("userId") Long userId,
+                                 @Param("status") ArtStatus status,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable limit);
+
+    /**
+     * Рассылка нового арта всем подписчикам автора одним запросом
+     */
+    @Modifying
+    @Query(value = "INSERT INTO feed_entries (user_id, art_id, author_id, art_created_at) " +
+                   "SELECT f.follower_id, :artId, :authorId, :createdAt FROM follows f " +
+                   "WHERE f.following_id = :authorId " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutToFollowers(@Param("artId") Long artId,
+                          @Param("authorId") Long authorId,
+                          @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Заполнение ленты последними артами автора после подписки
+     */
+    @Modifying
+    @Query(value = "INSERT INTO feed_entries (user_id, art_id, author_id, art_created_at) " +
+                   "SELECT :userId, a.id, a.author_id, a.created_at FROM arts a " +
+                   "WHERE a.author_id = :authorId AND a.status = 'ACTIVE' AND a.is_public_flag = true " +
+                   "ORDER BY a.created_at DESC LIMIT :limit " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int backfillFromAuthor(@Param("userId") Long userId,
+                           @Param("authorId") Long authorId,
+                           @Param("limit") int limit);
+
+    /**
+     * Первичное построение лент по текущему графу подписок (ограничено limit записей на пользователя)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO feed_entries (user_id, art_id, author_id, art_created_at) " +
+                   "SELECT r.follower_id, r.id, r.author_id, r.created_at FROM (" +
+                   "  SELECT f.follower_id, a.id, a.author_id, a.created_at, " +
+                   "         ROW_NUMBER() OVER (PARTITION BY f.follower_id ORDER BY a.created_at DESC, a.id DESC) AS rn " +
+                   "  FROM follows f JOIN arts a ON a.author_id = f.following_id " +
+                   "  WHERE a.status = 'ACTIVE' AND a.is_public_flag = true" +
+                   ") r WHERE r.rn <= :limit " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int rebuildAll(@Param("limit") int limit);
+
+    /**
+     * Обрезка лент, превысивших лимит: удаляются самые старые записи
+     */
+    @Modifying
+    @Query(value = "DELETE FROM feed_entries fe USING (" +
+                   "  SELECT user_id, art_id, " +
+                   "         ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY art_created_at DESC, art_id DESC) AS rn " +
+                   "  FROM feed_entries WHERE user_id IN (" +
+                   "    SELECT user_id FROM feed_entries GROUP BY user_id HAVING COUNT(*) > :limit)" +
+                   ") r WHERE fe.user_id = r.user_id AND fe.art_id = r.art_id AND r.rn > :limit",
+           nativeQuery = true)
+    int trimToLimit(@Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM FeedEntry fe WHERE fe.artId = :artId")
+    int deleteByArtId(@Param("artId") Long artId);
+
+    @Modifying
+    @Query("DELETE FROM FeedEntry fe WHERE fe.artId IN :artIds")
+    int deleteByArtIdIn(@Param("artIds") java.util.Collection<Long> artIds);
+
+    @Modifying
+    @Query("DELETE FROM FeedEntry fe WHERE fe.userId = :userId AND fe.authorId = :authorId")
+    int deleteByUserIdAndAuthorId(@Param("userId") Long userId, @Param("authorId") Long authorId);
+
+    @Modifying
+    @Query("DELETE FROM FeedEntry fe WHERE fe.userId = :userId OR fe.authorId = :userId")
+    int deleteAllForUser(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(fe) FROM FeedEntry fe WHERE fe.userId = :userId")
+    long countByUserId(@Param("userId") Long userId);
+}
@@ -59,5 +59,12 @@ public interface FollowRepository extends JpaRepository<Follow, Long> {
             @Param("userId") Long userId, 
             @Param("username") String username);
 
-
+    // Авторы, у которых не меньше threshold подписчиков (для гибридной ленты)
+    @Query("SELECT f.following.id FROM Follow f GROUP BY f.following.id HAVING COUNT(f) >= :threshold")
+    List<Long> findFollowingIdsWithFollowerCountAtLeast(@Param("threshold") long threshold);
+    
+    // На кого из переданных авторов подписан пользователь
+    @Query("SELECT f.following.id FROM Follow f WHERE f.follower.id = :userId AND f.following.id IN :followingIds")
+    List<Long> findFollowingIdsAmong(@Param("userId") Long userId, 
+                                     @Param("followingIds") List<Long> followingIds);
 }
\ No newline at end of file
@@ -32,9 +32,18 @@ public interface LikeRepository extends JpaRepository<ArtLikes, ArtLikes.LikeId>
     @Query("SELECT l FROM ArtLikes l WHERE l.user.id = :userId AND l.art.id = :artId")
     Optional<ArtLikes> findByUserIdAndArtId(@Param("userId") Long userId, @Param("artId") Long artId);
     
+    // Один INSERT без предварительных проверок: 1 — лайк поставлен, 0 — уже был
+    // (или арт удаляется вместе с аккаунтом автора)
+    @Modifying
+    @Query(value = "INSERT INTO art_likes (user_id, art_id, created_at) " +
+                   "SELECT :userId, :artId, now() WHERE NOT EXISTS (" +
+                   "  SELECT 1 FROM arts WHERE id = :artId AND status = 'DELETED_BY_USER') " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("artId") Long artId);
+    
     @Modifying
     @Query("DELETE FROM ArtLikes l WHERE l.user.id = :userId AND l.art.id = :artId")
-    void deleteByUserIdAndArtId(@Param("userId") Long userId, @Param("artId") Long artId);
+    int deleteByUserIdAndArtId(@Param("userId") Long userId, @Param("artId") Long artId);
     
     @Query("SELECT COUNT(l) FROM ArtLikes l WHERE l.art.id = :artId")
     Long countByArtId(@Param("artId") Long artId);
@@ -42,6 +51,10 @@ public interface LikeRepository extends JpaRepository<ArtLikes, ArtLikes.LikeId>
     @Query("SELECT COUNT(l) FROM ArtLikes l WHERE l.user.id = :userId")
     Long countByUserId(@Param("userId") Long userId);
 
+    // Пары (artId, количество) лайков пользователя — для корректировки счетчиков перед удалением
+    @Query("SELECT l.art.id, COUNT(l) FROM ArtLikes l WHERE l.user.id = :userId GROUP BY l.art.id")
+    List<Object[]> countPerArtByUserId(@Param("userId") Long userId);
+
     @Modifying
     @Query("DELETE FROM ArtLikes l WHERE l.art.id = :artId")
     void deleteByArtId(@Param("artId") Long artId);
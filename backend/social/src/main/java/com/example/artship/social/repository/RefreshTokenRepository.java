@@ -9,7 +9,6 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,11 +27,6 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Query("SELECT rt FROM RefreshToken rt WHERE rt.user.id = :userId")
     List<RefreshToken> findByUserId(@Param("userId") Long userId);
     
-    @Transactional
-    @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :now")
-    void deleteExpiredTokens(LocalDateTime now);
-    
     @Transactional
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
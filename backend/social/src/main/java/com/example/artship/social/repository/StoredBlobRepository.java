@@ -0,0 +1,60 @@
+package com.example.artship.social.repository;
+
+import com.example.artship.social.model.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    /**
+     * Новая ссылка на файл: создает запись с refCount = 1 или увеличивает счетчик.
+     * Путь берется из первой загрузки, у повторных он не меняется. Строка остается
+     * заблокированной до конца транзакции вызывающего — под этой блокировкой
+     * файл кладется на диск.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO stored_blobs (hash, path, size_bytes, ref_count, created_at) " +
+                   "VALUES (:hash, :path, :sizeBytes, 1, now()) " +
+                   "ON CONFLICT (hash) DO UPDATE SET ref_count = stored_blobs.ref_count + 1",
+           nativeQuery = true)
+    int acquire(@Param("hash") String hash,
+                @Param("path") String path,
+                @Param("sizeBytes") long sizeBytes);
+
+    @Query("SELECT b.path FROM StoredBlob b WHERE b.hash = :hash")
+    String findPathByHash(@Param("hash") String hash);
+
+    // Выполняется в транзакции удаления арта/пользователя и откатывается вместе с ней
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.hash = :hash AND b.refCount > 0")
+    int release(@Param("hash") String hash);
+
+    // Путь файла без ссылок; строка блокируется до конца транзакции, null — ссылки есть
+    @Query(value = "SELECT path FROM stored_blobs WHERE hash = :hash AND ref_count <= 0 FOR UPDATE",
+           nativeQuery = true)
+    String lockUnreferenced(@Param("hash") String hash);
+
+    @Query(value = "SELECT hash FROM stored_blobs WHERE hash = :hash FOR UPDATE", nativeQuery = true)
+    String lockByHash(@Param("hash") String hash);
+
+    // Строка-заглушка для файла без записи, чтобы сборщику было что блокировать
+    @Modifying
+    @Query(value = "INSERT INTO stored_blobs (hash, path, size_bytes, ref_count, created_at) " +
+                   "VALUES (:hash, :path, :sizeBytes, 0, now()) ON CONFLICT (hash) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash,
+                       @Param("path") String path,
+                       @Param("sizeBytes") long sizeBytes);
+
+    // Вызывается под блокировкой строки (lockUnreferenced / lockByHash)
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.hash = :hash")
+    int deleteByHash(@Param("hash") String hash);
+}
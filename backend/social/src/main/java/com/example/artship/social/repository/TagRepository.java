@@ -15,6 +15,9 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
     Optional<Tag> findByName(String name);
     
     List<Tag> findByNameContainingIgnoreCase(String name);
+
+    @Query("SELECT t.id FROM Tag t WHERE t.name IN :names")
+    List<Long> findIdsByNameIn(@Param("names") List<String> names);
     
     @Query("SELECT t FROM Tag t ORDER BY t.name ASC")
     List<Tag> findAllOrderByName();
@@ -29,6 +29,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
     
     Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
+
+    /**
+     * Поиск по подстроке username (trigram-индекс по lower(username)):
+     * сначала точное совпадение, затем более короткие имена
+     */
+    @Query(value = "SELECT u.* FROM users u WHERE lower(u.username) LIKE :pattern " +
+                   "ORDER BY (lower(u.username) = :exact) DESC, length(u.username), u.username",
+           countQuery = "SELECT COUNT(*) FROM users u WHERE lower(u.username) LIKE :pattern",
+           nativeQuery = true)
+    Page<User> searchByUsernamePattern(@Param("pattern") String pattern,
+                                       @Param("exact") String exact,
+                                       Pageable pageable);
     
     Page<User> findByUserRole(UserRole role, Pageable pageable);
 
@@ -52,4 +64,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     long countByUserRole(UserRole role);
 
     List<User> findByEmailVerifiedFalseAndCreatedAtBefore(LocalDateTime dateTime);
-}
\ No newline at end of file
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.avatarThumbnailUrl = :thumbnailUrl WHERE u.id = :id AND u.avatarUrl = :avatarUrl")
+    int updateAvatarThumbnail(@Param("id") Long id,
+                              @Param("avatarUrl") String avatarUrl,
+                              @Param("thumbnailUrl") String thumbnailUrl);
+
+    @Query("SELECT u.id, u.avatarUrl FROM User u WHERE u.avatarUrl IS NOT NULL " +
+           "AND u.avatarThumbnailUrl IS NULL AND u.id > :afterId ORDER BY u.id")
+    List<Object[]> findAvatarsWithoutThumbnail(@Param("afterId") Long afterId, Pageable limit);
+}
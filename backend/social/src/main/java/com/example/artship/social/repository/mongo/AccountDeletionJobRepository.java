@@ -0,0 +1,15 @@
+package com.example.artship.social.repository.mongo;
+
+import com.example.artship.social.model.mongo.AccountDeletionJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Optional;
+import java.util.Set;
+
+@Repository
+public interface AccountDeletionJobRepository extends MongoRepository<AccountDeletionJob, String> {
+
+    Optional<AccountDeletionJob> findFirstByUserIdAndStatusIn(Long userId, Set<AccountDeletionJob.Status> statuses);
+
+    long countByStatus(AccountDeletionJob.Status status);
+}
@@ -0,0 +1,11 @@
+package com.example.artship.social.repository.mongo;
+
+import com.example.artship.social.model.mongo.AdminBulkJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AdminBulkJobRepository extends MongoRepository<AdminBulkJob, String> {
+
+    long countByStatus(AdminBulkJob.Status status);
+}
@@ -0,0 +1,9 @@
+package com.example.artship.social.repository.mongo;
+
+import com.example.artship.social.model.mongo.ModerationTarget;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ModerationTargetRepository extends MongoRepository<ModerationTarget, String> {
+}
@@ -0,0 +1,18 @@
+package com.example.artship.social.repository.mongo;
+
+import com.example.artship.social.model.mongo.OutboundEmail;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+
+@Repository
+public interface OutboundEmailRepository extends MongoRepository<OutboundEmail, String> {
+    
+    long countByStatus(OutboundEmail.Status status);
+    
+    Page<OutboundEmail> findByStatusOrderByCreatedAtDesc(OutboundEmail.Status status, Pageable pageable);
+    
+    void deleteByStatusAndSentAtBefore(OutboundEmail.Status status, LocalDateTime before);
+}
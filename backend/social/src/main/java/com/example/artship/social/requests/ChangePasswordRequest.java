@@ -0,0 +1,11 @@
+package com.example.artship.social.requests;
+
+public class ChangePasswordRequest {
+    private String oldPassword;
+    private String newPassword;
+    
+    public String getOldPassword() { return oldPassword; }
+    public void setOldPassword(String oldPassword) { this.oldPassword = oldPassword; }
+    public String getNewPassword() { return newPassword; }
+    public void setNewPassword(String newPassword) { this.newPassword = newPassword; }
+}
@@ -1,14 +1,26 @@
 package com.example.artship.social.requests;
 
+import java.util.List;
+
 public class MoveArtRequest {
     private Long fromCollectionId;
         private Long toCollectionId;
         
+        // Для массового перемещения: арты в нужном порядке и арт, после которого их поставить (null — в начало)
+        private List<Long> artIds;
+        private Long afterArtId;
+        
         public Long getFromCollectionId() { return fromCollectionId; }
         public void setFromCollectionId(Long fromCollectionId) { this.fromCollectionId = fromCollectionId; }
         
         public Long getToCollectionId() { return toCollectionId; }
         public void setToCollectionId(Long toCollectionId) { this.toCollectionId = toCollectionId; }
+        
+        public List<Long> getArtIds() { return artIds; }
+        public void setArtIds(List<Long> artIds) { this.artIds = artIds; }
+        
+        public Long getAfterArtId() { return afterArtId; }
+        public void setAfterArtId(Long afterArtId) { this.afterArtId = afterArtId; }
     
     
 }
@@ -1,7 +1,7 @@
 package com.example.artship.social.security;
 
 import com.example.artship.social.model.User;
-import com.example.artship.social.repository.UserRepository;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -24,14 +25,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
     
+    // Атрибут запроса с уже загруженным User текущего пользователя
+    public static final String CURRENT_USER_ATTRIBUTE = "artship.currentUser";
+    
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
     
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    private UserPrincipalCache userPrincipalCache;
     
     @Autowired
-    private UserRepository userRepository;
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    // Картинки публичные, разбирать для них токен и искать пользователя незачем
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/uploads/images/") || path.startsWith("/api/files/images/");
+    }
     
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -41,18 +52,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = parseJwt(request);
             
-            if (jwt != null && jwtTokenUtil.validateToken(jwt)) {
-                String username = jwtTokenUtil.getUsernameFromToken(jwt);
+            Claims claims = jwt != null ? jwtTokenUtil.parseValidClaims(jwt).orElse(null) : null;
+            
+            // Токен, выданный до выхода со всех устройств, смены пароля или роли, отклоняется без запроса к БД
+            if (claims != null && !tokenVersionRegistry.isCurrent(
+                    jwtTokenUtil.getUserId(claims), jwtTokenUtil.getTokenVersion(claims))) {
+                logger.debug("JWT токен отозван (устаревшая версия) для пользователя: {}", claims.getSubject());
+                claims = null;
+            }
+            
+            if (claims != null) {
+                String username = claims.getSubject();
+                Long userId = jwtTokenUtil.getUserId(claims);
                 
                 logger.debug("JWT токен валиден для пользователя: {}", username);
                 
-                // Загружаем UserDetails
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                // Один поиск пользователя на запрос, чаще всего — из кэша
+                User user = userPrincipalCache.get(userId, username)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
                 
                 // НОВОЕ: Проверяем, подтвержден ли email пользователя
-                User user = userRepository.findByUsername(username).orElse(null);
-                
-                if (user != null && !user.isEmailVerified()) {
+                if (!user.isEmailVerified()) {
                     logger.warn("Попытка доступа с неподтвержденным email: {}", username);
                     response.setStatus(HttpServletResponse.SC_FORBIDDEN);
                     response.setContentType("application/json");
@@ -60,6 +80,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     return; // Прерываем выполнение, не пропускаем запрос
                 }
                 
+                UserDetails userDetails = new CustomUserDetails(user);
+                request.setAttribute(CURRENT_USER_ATTRIBUTE, user);
+                
                 // Создаем аутентификацию
                 UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(
@@ -1,10 +1,17 @@
 package com.example.artship.social.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -14,21 +21,39 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtTokenUtil {
     
+    private static final Logger logger = LoggerFactory.getLogger(JwtTokenUtil.class);
+    
     @Value("${jwt.secret}")
     private String secret;
     
     @Value("${jwt.access-token.expiration}")
     private Long accessTokenExpiration;
     
-    private Key getSigningKey() {
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    // Ключ и парсер неизменяемы и потокобезопасны — создаются один раз при старте
+    private Key signingKey;
+    private JwtParser jwtParser;
+    
+    @PostConstruct
+    void init() {
         byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+    
+    private Key getSigningKey() {
+        return signingKey;
     }
     
     // Существующий метод для CustomUserDetails
@@ -36,6 +61,7 @@ public class JwtTokenUtil {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userDetails.getId());
         claims.put("email", userDetails.getEmail());
+        claims.put(TokenVersionRegistry.CLAIM, tokenVersionRegistry.forIssue(userDetails.getId()));
         claims.put("jti", UUID.randomUUID().toString());
         claims.put("iat", System.currentTimeMillis());
         
@@ -55,6 +81,7 @@ public class JwtTokenUtil {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
         claims.put("email", user.getEmail());
+        claims.put(TokenVersionRegistry.CLAIM, tokenVersionRegistry.forIssue(user.getId()));
         claims.put("jti", UUID.randomUUID().toString());
         claims.put("iat", System.currentTimeMillis());
         
@@ -77,25 +104,35 @@ public class JwtTokenUtil {
                 .compact();
     }
     
-    public boolean validateToken(String token) {
+    /**
+     * Проверка подписи и срока действия за один разбор токена.
+     * Возвращает claims валидного токена или empty, если токен невалиден или истек.
+     */
+    public Optional<Claims> parseValidClaims(String token) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
-            
-            if (isTokenExpired(token)) {
-                System.out.println("Token validation: Token is expired!");
-                return false;
-            }
-            
-            return true;
-        } catch (Exception e) {
-            System.out.println("Token validation error: " + e.getMessage());
-            return false;
+            // parseClaimsJws сам отклоняет токены с истекшим exp
+            return Optional.of(jwtParser.parseClaimsJws(token).getBody());
+        } catch (ExpiredJwtException e) {
+            logger.debug("Token validation: token is expired");
+            return Optional.empty();
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Token validation error: {}", e.getMessage());
+            return Optional.empty();
         }
     }
     
+    public boolean validateToken(String token) {
+        return parseValidClaims(token).isPresent();
+    }
+    
+    public Long getUserId(Claims claims) {
+        return claims.get("userId", Long.class);
+    }
+    
+    public Integer getTokenVersion(Claims claims) {
+        return claims.get(TokenVersionRegistry.CLAIM, Integer.class);
+    }
+    
     public Boolean isTokenExpired(String token) {
         try {
             final Date expiration = getExpirationDateFromToken(token);
@@ -140,10 +177,6 @@ public class JwtTokenUtil {
     }
     
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+package com.example.artship.social.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Версии access token по пользователям: userId -> текущая версия.
+ *
+ * Версия попадает в claim "tv" при выдаче токена. Выход со всех устройств,
+ * смена пароля, роли или удаление аккаунта увеличивают users.token_version,
+ * и все ранее выданные токены перестают приниматься сразу, не дожидаясь
+ * истечения. Проверка в JwtAuthenticationFilter — поиск в ConcurrentHashMap
+ * без обращения к БД. В памяти лежат только пользователи с ненулевой версией.
+ *
+ * Изменения с других инстансов подтягиваются опросом users по
+ * token_version_changed_at раз в sync-interval-ms. Версии только растут,
+ * поэтому повторно прочитанные строки безопасны. Опрос идет в собственном
+ * потоке, а не в общем планировщике @Scheduled: долгая задача там (GC загрузок,
+ * перестройка индекса тегов) не должна задерживать отзыв токенов.
+ *
+ * Когда версия растет, запись пользователя в UserPrincipalCache сбрасывается:
+ * роль или бан, из-за которых версию подняли, должны сразу отражаться
+ * в authorities и на этом инстансе.
+ *
+ * Колонки не объявлены в сущности User намеренно: иначе сохранение
+ * загруженного ранее User перезаписало бы версию старым значением.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+
+    public static final String CLAIM = "tv";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserPrincipalCache userPrincipalCache;
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-version-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${security.token-version.sync-interval-ms:1000}")
+    private long syncIntervalMs;
+
+    // Перекрытие окна опроса: now() — время начала транзакции, коммит может быть позже
+    @Value("${security.token-version.sync-overlap-ms:30000}")
+    private long syncOverlapMs;
+
+    private volatile Timestamp syncedUntil;
+
+    public TokenVersionRegistry(JdbcTemplate jdbcTemplate, UserPrincipalCache userPrincipalCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userPrincipalCache = userPrincipalCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version integer NOT NULL DEFAULT 0");
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version_changed_at timestamp");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_token_version_changed " +
+                "ON users (token_version_changed_at) WHERE token_version_changed_at IS NOT NULL");
+
+        Timestamp loadedAt = jdbcTemplate.queryForObject("SELECT now()::timestamp", Timestamp.class);
+        jdbcTemplate.query("SELECT id, token_version FROM users WHERE token_version > 0",
+                rs -> { apply(rs.getLong(1), rs.getInt(2)); });
+        syncedUntil = loadedAt;
+
+        syncExecutor.scheduleWithFixedDelay(this::syncSafely, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Token versions loaded for {} users", versions.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdownNow();
+    }
+
+    // Исключение в задаче ScheduledExecutorService отменило бы все следующие запуски
+    private void syncSafely() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            logger.warn("Token version sync failed: {}", e.getMessage());
+        }
+    }
+
+    public void sync() {
+        Timestamp since = syncedUntil;
+        if (since == null) {
+            return; // еще не инициализирован
+        }
+
+        Timestamp from = new Timestamp(since.getTime() - syncOverlapMs);
+        List<Timestamp> changes = jdbcTemplate.query(
+                "SELECT id, token_version, token_version_changed_at FROM users " +
+                "WHERE token_version_changed_at > ? ORDER BY token_version_changed_at",
+                (rs, rowNum) -> {
+                    apply(rs.getLong(1), rs.getInt(2));
+                    return rs.getTimestamp(3);
+                }, from);
+
+        if (!changes.isEmpty()) {
+            Timestamp latest = changes.get(changes.size() - 1);
+            if (latest.after(since)) {
+                syncedUntil = latest;
+            }
+        }
+    }
+
+    public int current(Long userId) {
+        return userId == null ? 0 : versions.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Версия для нового токена — из users, а не из локальной карты: после отзыва
+     * на другом инстансе карта отстает до следующего опроса, и токен со старой
+     * версией сразу отклонялся бы там. Внутри транзакции отзыва видно новое значение.
+     */
+    public int forIssue(Long userId) {
+        if (userId == null) {
+            return 0;
+        }
+        List<Integer> found = jdbcTemplate.queryForList(
+                "SELECT token_version FROM users WHERE id = ?", Integer.class, userId);
+        if (found.isEmpty()) {
+            return current(userId);
+        }
+        int version = found.get(0);
+        return Math.max(version, current(userId));
+    }
+
+    // Токены без claim выданы до появления версий и считаются версией 0
+    public boolean isCurrent(Long userId, Integer tokenVersion) {
+        return (tokenVersion == null ? 0 : tokenVersion) >= current(userId);
+    }
+
+    /**
+     * Отзывает все выданные пользователю access token. Вызывается внутри транзакции
+     * изменения; локальная карта обновляется после коммита.
+     */
+    public void bump(Long userId) {
+        List<Integer> bumped = jdbcTemplate.queryForList(
+                "UPDATE users SET token_version = token_version + 1, token_version_changed_at = now() " +
+                "WHERE id = ? RETURNING token_version", Integer.class, userId);
+        if (!bumped.isEmpty()) {
+            int version = bumped.get(0);
+            afterCommit(() -> apply(userId, version));
+        }
+    }
+
+    public void bump(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        String placeholders = userIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        List<long[]> bumped = jdbcTemplate.query(
+                "UPDATE users SET token_version = token_version + 1, token_version_changed_at = now() " +
+                "WHERE id IN (" + placeholders + ") RETURNING id, token_version",
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getInt(2) }, userIds.toArray());
+        afterCommit(() -> bumped.forEach(row -> apply(row[0], (int) row[1])));
+    }
+
+    private void apply(long userId, int version) {
+        if (version <= 0) {
+            return;
+        }
+        boolean[] raised = new boolean[1];
+        versions.compute(userId, (id, current) -> {
+            if (current != null && current >= version) {
+                return current;
+            }
+            raised[0] = true;
+            return version;
+        });
+        if (raised[0]) {
+            userPrincipalCache.invalidate(userId);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
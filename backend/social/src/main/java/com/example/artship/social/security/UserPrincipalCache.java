@@ -0,0 +1,116 @@
+package com.example.artship.social.security;
+
+import com.example.artship.social.model.User;
+import com.example.artship.social.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальный кэш пользователей для JwtAuthenticationFilter, ключ — userId из JWT.
+ *
+ * Записи живут не дольше TTL и сбрасываются явно при смене роли, подтверждении
+ * email, изменении профиля и удалении аккаунта. На других инстансах изменения
+ * становятся видны по истечении TTL.
+ *
+ * Наружу всегда отдается копия: вызывающий код может менять User и сохранять его,
+ * не затрагивая общий экземпляр из кэша.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+    private final UserRepository userRepository;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${security.principal-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    public UserPrincipalCache(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Пользователь по id и username из токена. Username сверяется, чтобы
+     * токен, выданный до переименования, не получил чужую запись.
+     */
+    public Optional<User> get(Long userId, String username) {
+        long now = System.currentTimeMillis();
+
+        if (userId != null) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expiresAt > now && entry.user.getUsername().equals(username)) {
+                return Optional.of(copyOf(entry.user));
+            }
+        }
+
+        Optional<User> loaded = userRepository.findByUsername(username);
+        loaded.ifPresent(user -> put(user, now));
+        return loaded.map(UserPrincipalCache::copyOf);
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null && entries.remove(userId) != null) {
+            logger.debug("Principal cache entry evicted for user {}", userId);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private void put(User user, long now) {
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(user.getId(), new Entry(copyOf(user), now + ttlMs));
+    }
+
+    // Сначала удаляются истекшие записи, при переполнении — произвольные
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+
+        Iterator<Long> it = entries.keySet().iterator();
+        while (entries.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static User copyOf(User source) {
+        User copy = new User(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setEmail(source.getEmail());
+        copy.setPasswordHash(source.getPasswordHash());
+        copy.setUserRole(source.getUserRole());
+        copy.setDisplayName(source.getDisplayName());
+        copy.setAvatarUrl(source.getAvatarUrl());
+        copy.setAvatarThumbnailUrl(source.getAvatarThumbnailUrl());
+        copy.setBio(source.getBio());
+        copy.setEmailVerified(source.isEmailVerified());
+        copy.setIsPublic(source.getIsPublic());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        final User user;
+        final long expiresAt;
+
+        Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.model.mongo.AccountDeletionJob;
+import com.example.artship.social.repository.mongo.AccountDeletionJobRepository;
+import com.example.artship.social.repository.mongo.VerificationTokenRepository;
+import com.example.artship.social.security.TokenVersionRegistry;
+import com.example.artship.social.security.UserPrincipalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Фоновое удаление аккаунта вместо удаления в потоке запроса.
+ *
+ * Данные пользователя удаляются и анонимизируются set-based запросами в порядке
+ * зависимостей внешних ключей. Каждый шаг выполняется порциями по chunk-size
+ * строк, каждая порция — в своей короткой транзакции, так что удаление большого
+ * аккаунта не держит долгих блокировок и не упирается в таймаут запроса.
+ *
+ * Все шаги идемпотентны: после сбоя или рестарта задача забирается повторно
+ * (блокировка по времени, как у EmailDispatcher) и проходит шаги заново с первого.
+ * Файлы освобождаются в той же порции, а физически удаляются после ее коммита;
+ * то, что не удалось удалить, подберет UploadGarbageCollector.
+ */
+@Service
+public class AccountDeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountDeletionService.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final SecureRandom STATUS_TOKEN_RANDOM = new SecureRandom();
+
+    private static final EnumSet<AccountDeletionJob.Status> ACTIVE =
+            EnumSet.of(AccountDeletionJob.Status.PENDING, AccountDeletionJob.Status.RUNNING);
+
+    // ==================== ШАГИ ====================
+    // Везде первый параметр — id пользователя, второй — размер порции.
+    // Таблицы с составным ключом выбираются по ctid.
+
+    // Первым делом арты снимаются с публикации: на DELETED_BY_USER нельзя поставить
+    // лайк или написать комментарий, и новые строки не мешают удалению артов
+    private static final String WITHDRAW_ARTS =
+            "UPDATE arts SET is_public_flag = false, status = 'DELETED_BY_USER', updated_at = now() " +
+            "WHERE id IN (SELECT id FROM arts WHERE author_id = ? AND status <> 'DELETED_BY_USER' LIMIT ?) " +
+            "RETURNING id";
+
+    private static final String DELETE_REFRESH_TOKENS =
+            "DELETE FROM refresh_tokens WHERE id IN (" +
+            "SELECT id FROM refresh_tokens WHERE user_id = ? LIMIT ?)";
+
+    private static final String DELETE_OWN_COMMENT_LIKES =
+            "DELETE FROM comment_likes WHERE ctid = ANY(ARRAY(" +
+            "SELECT ctid FROM comment_likes WHERE user_id = ? LIMIT ?))";
+
+    private static final String DELETE_LIKES_ON_OWN_COMMENTS =
+            "DELETE FROM comment_likes WHERE ctid = ANY(ARRAY(" +
+            "SELECT cl.ctid FROM comment_likes cl JOIN comments c ON c.id = cl.comment_id " +
+            "WHERE c.user_id = ? LIMIT ?))";
+
+    // Ответы на удаляемые комментарии становятся корневыми, чужие ответы сохраняются
+    private static final String DETACH_REPLIES_TO_OWN_COMMENTS =
+            "UPDATE comments SET parent_comment_id = NULL WHERE id IN (" +
+            "SELECT r.id FROM comments r JOIN comments p ON p.id = r.parent_comment_id " +
+            "WHERE p.user_id = ? LIMIT ?)";
+
+    private static final String DELETE_OWN_COMMENTS =
+            "DELETE FROM comments WHERE id IN (" +
+            "SELECT id FROM comments WHERE user_id = ? LIMIT ?) RETURNING art_id";
+
+    private static final String DELETE_OWN_LIKES =
+            "DELETE FROM art_likes WHERE ctid = ANY(ARRAY(" +
+            "SELECT ctid FROM art_likes WHERE user_id = ? LIMIT ?)) RETURNING art_id";
+
+    private static final String DELETE_FOLLOWS =
+            "DELETE FROM follows WHERE ctid = ANY(ARRAY(" +
+            "SELECT ctid FROM follows WHERE ? IN (follower_id, following_id) LIMIT ?))";
+
+    // Своя лента и арты пользователя в чужих лентах
+    private static final String DELETE_FEED_ENTRIES =
+            "DELETE FROM feed_entries WHERE ctid = ANY(ARRAY(" +
+            "SELECT ctid FROM feed_entries WHERE ? IN (user_id, author_id) LIMIT ?))";
+
+    private static final String DELETE_COLLECTION_ITEMS =
+            "DELETE FROM collection_arts WHERE ctid = ANY(ARRAY(" +
+            "SELECT ca.ctid FROM collection_arts ca JOIN collections c ON c.id = ca.collection_id " +
+            "WHERE c.user_id = ? LIMIT ?)) RETURNING art_id";
+
+    // Загруженная обложка держит ссылку в stored_blobs — ее URL возвращается, чтобы ссылку
+    // отпустить. Обложка, взятая из арта, — просто URL его картинки, своей ссылки у нее нет
+    private static final String DELETE_COLLECTIONS =
+            "DELETE FROM collections WHERE id IN (" +
+            "SELECT id FROM collections WHERE user_id = ? LIMIT ?) " +
+            "RETURNING CASE WHEN cover_uploaded THEN cover_image_url END";
+
+    // Арты, сохраненные в чужих коллекциях, не удаляются, а теряют автора
+    private static final String ANONYMIZE_SHARED_ARTS =
+            "UPDATE arts SET author_id = NULL, is_public_flag = false, status = 'DELETED_BY_USER', " +
+            "title = '[Deleted User''s Art]', description = NULL, updated_at = now() " +
+            "WHERE id IN (SELECT a.id FROM arts a WHERE a.author_id = ? " +
+            "AND EXISTS (SELECT 1 FROM collection_arts ca WHERE ca.art_id = a.id) LIMIT ?) " +
+            "RETURNING id";
+
+    private static final String DELETE_ART_COMMENT_LIKES =
+            "DELETE FROM comment_likes WHERE ctid = ANY(ARRAY(" +
+            "SELECT cl.ctid FROM comment_likes cl JOIN comments c ON c.id = cl.comment_id " +
+            "JOIN arts a ON a.id = c.art_id WHERE a.author_id = ? LIMIT ?))";
+
+    // Чтобы порция не разрывала ветку между родителем и ответом
+    private static final String DETACH_ART_COMMENT_REPLIES =
+            "UPDATE comments SET parent_comment_id = NULL WHERE id IN (" +
+            "SELECT c.id FROM comments c JOIN arts a ON a.id = c.art_id " +
+            "WHERE a.author_id = ? AND c.parent_comment_id IS NOT NULL LIMIT ?)";
+
+    private static final String DELETE_ART_COMMENTS =
+            "DELETE FROM comments WHERE id IN (" +
+            "SELECT c.id FROM comments c JOIN arts a ON a.id = c.art_id WHERE a.author_id = ? LIMIT ?)";
+
+    private static final String DELETE_ART_LIKES =
+            "DELETE FROM art_likes WHERE ctid = ANY(ARRAY(" +
+            "SELECT l.ctid FROM art_likes l JOIN arts a ON a.id = l.art_id WHERE a.author_id = ? LIMIT ?))";
+
+    private static final String DELETE_ART_TAGS =
+            "DELETE FROM art_tags WHERE ctid = ANY(ARRAY(" +
+            "SELECT t.ctid FROM art_tags t JOIN arts a ON a.id = t.art_id WHERE a.author_id = ? LIMIT ?)) " +
+            "RETURNING art_id, tag_id";
+
+    // Сохранения, сделанные уже после анонимизации
+    private static final String DELETE_ART_COLLECTION_ITEMS =
+            "DELETE FROM collection_arts WHERE ctid = ANY(ARRAY(" +
+            "SELECT ca.ctid FROM collection_arts ca JOIN arts a ON a.id = ca.art_id WHERE a.author_id = ? LIMIT ?))";
+
+    private static final String DELETE_ARTS =
+            "DELETE FROM arts WHERE id IN (" +
+            "SELECT id FROM arts WHERE author_id = ? LIMIT ?) RETURNING image";
+
+    private static final String DELETE_SOCIAL_LINKS =
+            "DELETE FROM social_links WHERE id IN (" +
+            "SELECT id FROM social_links WHERE user_id = ? LIMIT ?)";
+
+    private static final String DELETE_USER =
+            "DELETE FROM users WHERE id = ? RETURNING avatar_url";
+
+    private final MongoTemplate mongoTemplate;
+    private final AccountDeletionJobRepository jobRepository;
+    private final VerificationTokenRepository verificationTokenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArtCounterService artCounterService;
+    private final TagIndexService tagIndexService;
+    private final LocalFileStorageService fileStorageService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final LikedArtService likedArtService;
+    private final List<Step> steps;
+    private final ExecutorService workerPool;
+    private final Semaphore freeWorkers;
+
+    @Value("${account-deletion.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${account-deletion.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${account-deletion.retry-delay-ms:60000}")
+    private long retryDelayMs;
+
+    @Value("${account-deletion.lock-timeout-ms:300000}")
+    private long lockTimeoutMs;
+
+    public AccountDeletionService(MongoTemplate mongoTemplate,
+                                  AccountDeletionJobRepository jobRepository,
+                                  VerificationTokenRepository verificationTokenRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  ArtCounterService artCounterService,
+                                  TagIndexService tagIndexService,
+                                  LocalFileStorageService fileStorageService,
+                                  UserPrincipalCache userPrincipalCache,
+                                  TokenVersionRegistry tokenVersionRegistry,
+                                  LikedArtService likedArtService,
+                                  @Value("${account-deletion.workers:1}") int workers) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobRepository = jobRepository;
+        this.verificationTokenRepository = verificationTokenRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.artCounterService = artCounterService;
+        this.tagIndexService = tagIndexService;
+        this.fileStorageService = fileStorageService;
+        this.userPrincipalCache = userPrincipalCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.likedArtService = likedArtService;
+        this.freeWorkers = new Semaphore(workers);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "account-deletion-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.steps = List.of(
+                new Step("arts_withdrawn", this::withdrawArts),
+                new Step("refresh_tokens", userId -> update(DELETE_REFRESH_TOKENS, userId)),
+                new Step("comment_likes", userId -> update(DELETE_OWN_COMMENT_LIKES, userId)),
+                new Step("comment_likes_received", userId -> update(DELETE_LIKES_ON_OWN_COMMENTS, userId)),
+                new Step("comment_replies_detached", userId -> update(DETACH_REPLIES_TO_OWN_COMMENTS, userId)),
+                new Step("comments", this::deleteOwnComments),
+                new Step("likes", this::deleteOwnLikes),
+                new Step("follows", userId -> update(DELETE_FOLLOWS, userId)),
+                new Step("feed_entries", userId -> update(DELETE_FEED_ENTRIES, userId)),
+                new Step("collection_items", this::deleteCollectionItems),
+                new Step("collections", this::deleteCollections),
+                new Step("arts_anonymized", this::anonymizeSharedArts),
+                new Step("art_comment_likes", userId -> update(DELETE_ART_COMMENT_LIKES, userId)),
+                new Step("art_comment_replies_detached", userId -> update(DETACH_ART_COMMENT_REPLIES, userId)),
+                new Step("art_comments", userId -> update(DELETE_ART_COMMENTS, userId)),
+                new Step("art_likes", userId -> update(DELETE_ART_LIKES, userId)),
+                new Step("art_tags", this::deleteArtTags),
+                new Step("art_collection_items", userId -> update(DELETE_ART_COLLECTION_ITEMS, userId)),
+                new Step("arts", this::deleteArts),
+                new Step("social_links", userId -> update(DELETE_SOCIAL_LINKS, userId)),
+                new Step("verification_tokens", this::deleteVerificationTokens),
+                new Step("user", this::deleteUser));
+    }
+
+    /**
+     * Колонка author_id создавалась как NOT NULL, а анонимизированные арты
+     * остаются без автора. ddl-auto=update ограничения не снимает.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void relaxArtAuthorConstraint() {
+        try {
+            jdbcTemplate.execute("ALTER TABLE arts ALTER COLUMN author_id DROP NOT NULL");
+        } catch (RuntimeException e) {
+            log.warn("Could not make arts.author_id nullable, shared arts cannot be anonymized: {}", e.getMessage());
+        }
+    }
+
+    // Запрос claimNext: PENDING по nextAttemptAt и зависшие RUNNING по lockedUntil
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        mongoTemplate.indexOps(AccountDeletionJob.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("nextAttemptAt", Sort.Direction.ASC)
+                .named("status_next_attempt"));
+        mongoTemplate.indexOps(AccountDeletionJob.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("lockedUntil", Sort.Direction.ASC)
+                .named("status_locked_until"));
+        mongoTemplate.indexOps(AccountDeletionJob.class).createIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .named("user_id"));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Прерванная задача останется в RUNNING и будет продолжена по истечении блокировки
+        workerPool.shutdown();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // ==================== ЗАПРОСЫ ====================
+
+    /**
+     * Ставит аккаунт в очередь на удаление. Refresh-токены отзываются сразу,
+     * чтобы пользователь не мог продлить сессию, пока задача выполняется.
+     * Повторный запрос возвращает уже созданную задачу.
+     */
+    public AccountDeletionJob requestDeletion(Long userId) {
+        Optional<AccountDeletionJob> existing = jobRepository.findFirstByUserIdAndStatusIn(userId, ACTIVE);
+        String statusToken = newStatusToken();
+        if (existing.isPresent()) {
+            // Новый секрет для повторного запроса: прежний хранится только в виде хэша
+            AccountDeletionJob job = existing.get();
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(job.getId())),
+                    new Update().set("statusTokenHash", sha256(statusToken)), AccountDeletionJob.class);
+            job.setStatusToken(statusToken);
+            return job;
+        }
+
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id = ?", userId);
+        tokenVersionRegistry.bump(userId);
+        userPrincipalCache.invalidate(userId);
+
+        AccountDeletionJob newJob = new AccountDeletionJob(userId);
+        newJob.setStatusTokenHash(sha256(statusToken));
+        AccountDeletionJob job = jobRepository.insert(newJob);
+        job.setStatusToken(statusToken);
+        log.info("Account deletion of user {} queued as job {}", userId, job.getId());
+        return job;
+    }
+
+    public Optional<AccountDeletionJob> findJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    // Задача владельца: нужен секрет из ответа на запрос удаления
+    public Optional<AccountDeletionJob> findJob(String jobId, String statusToken) {
+        if (statusToken == null || statusToken.isEmpty()) {
+            return Optional.empty();
+        }
+        byte[] presented = sha256(statusToken).getBytes(StandardCharsets.US_ASCII);
+        return jobRepository.findById(jobId)
+                .filter(job -> job.getStatusTokenHash() != null && MessageDigest.isEqual(
+                        job.getStatusTokenHash().getBytes(StandardCharsets.US_ASCII), presented));
+    }
+
+    /**
+     * Забирает задачи, пока есть свободные воркеры.
+     */
+    @Scheduled(fixedDelayString = "${account-deletion.poll-interval-ms:2000}")
+    public void drain() {
+        while (freeWorkers.tryAcquire()) {
+            AccountDeletionJob job;
+            try {
+                job = claimNext();
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.warn("Could not poll account deletion jobs: {}", e.getMessage());
+                return;
+            }
+
+            if (job == null) {
+                freeWorkers.release();
+                return;
+            }
+
+            workerPool.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (AccountDeletionJob.Status status : AccountDeletionJob.Status.values()) {
+            stats.put(status.name().toLowerCase(), jobRepository.countByStatus(status));
+        }
+        return stats;
+    }
+
+    // ==================== ВЫПОЛНЕНИЕ ====================
+
+    private AccountDeletionJob claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(AccountDeletionJob.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(AccountDeletionJob.Status.RUNNING).and("lockedUntil").lte(now)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+
+        Update update = new Update()
+                .set("status", AccountDeletionJob.Status.RUNNING)
+                .set("lockedUntil", lockExpiry())
+                .inc("attempts", 1);
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), AccountDeletionJob.class);
+    }
+
+    private void run(AccountDeletionJob job) {
+        long started = System.currentTimeMillis();
+        Long userId = job.getUserId();
+
+        if (job.getStartedAt() == null) {
+            update(job, new Update().set("startedAt", LocalDateTime.now()));
+        }
+
+        try {
+            // Каждая попытка проходит все шаги: строки, появившиеся после сбоя
+            // в уже пройденных таблицах, иначе сломали бы следующие удаления
+            for (Step step : steps) {
+                update(job, new Update().set("step", step.name).set("lockedUntil", lockExpiry()));
+
+                int affected;
+                do {
+                    Integer chunk = transactionTemplate.execute(status -> step.operation.apply(userId));
+                    affected = chunk != null ? chunk : 0;
+                    if (affected > 0) {
+                        update(job, new Update()
+                                .inc("processed." + step.name, affected)
+                                .set("lockedUntil", lockExpiry()));
+                    }
+                } while (affected >= chunkSize);
+            }
+
+            userPrincipalCache.invalidate(userId);
+            likedArtService.evict(userId);
+            update(job, new Update()
+                    .set("status", AccountDeletionJob.Status.COMPLETED)
+                    .set("finishedAt", LocalDateTime.now())
+                    .unset("lockedUntil")
+                    .unset("lastError"));
+            log.info("Account of user {} deleted by job {} in {} ms",
+                    userId, job.getId(), System.currentTimeMillis() - started);
+
+        } catch (RuntimeException e) {
+            String error = truncate(e.getMessage());
+
+            if (job.getAttempts() >= maxAttempts) {
+                update(job, new Update()
+                        .set("status", AccountDeletionJob.Status.FAILED)
+                        .set("finishedAt", LocalDateTime.now())
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.error("Account deletion job {} for user {} failed after {} attempts: {}",
+                        job.getId(), userId, job.getAttempts(), error);
+            } else {
+                update(job, new Update()
+                        .set("status", AccountDeletionJob.Status.PENDING)
+                        .set("nextAttemptAt", LocalDateTime.now().plusNanos(retryDelayMs * 1_000_000))
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.warn("Account deletion job {} for user {} failed (attempt {}/{}), will resume: {}",
+                        job.getId(), userId, job.getAttempts(), maxAttempts, error);
+            }
+        }
+    }
+
+    private int update(String sql, Long userId) {
+        return jdbcTemplate.update(sql, userId, chunkSize);
+    }
+
+    private int withdrawArts(Long userId) {
+        List<Long> artIds = jdbcTemplate.queryForList(WITHDRAW_ARTS, Long.class, userId, chunkSize);
+        artIds.forEach(artId -> tagIndexService.onArtStateChanged(artId, ArtStatus.DELETED_BY_USER, false));
+        return artIds.size();
+    }
+
+    private int deleteOwnComments(Long userId) {
+        List<Long> artIds = jdbcTemplate.queryForList(DELETE_OWN_COMMENTS, Long.class, userId, chunkSize);
+        artIds.forEach(artCounterService::commentRemoved);
+        return artIds.size();
+    }
+
+    private int deleteOwnLikes(Long userId) {
+        List<Long> artIds = jdbcTemplate.queryForList(DELETE_OWN_LIKES, Long.class, userId, chunkSize);
+        artIds.forEach(artCounterService::likeRemoved);
+        return artIds.size();
+    }
+
+    private int deleteCollectionItems(Long userId) {
+        List<Long> artIds = jdbcTemplate.queryForList(DELETE_COLLECTION_ITEMS, Long.class, userId, chunkSize);
+        artIds.forEach(artCounterService::collectionSaveRemoved);
+        return artIds.size();
+    }
+
+    private int deleteCollections(Long userId) {
+        List<String> coverUrls = jdbcTemplate.queryForList(DELETE_COLLECTIONS, String.class, userId, chunkSize);
+        coverUrls.stream()
+                .filter(Objects::nonNull)
+                .forEach(fileStorageService::deleteFile);
+        return coverUrls.size();
+    }
+
+    private int anonymizeSharedArts(Long userId) {
+        List<Long> artIds = jdbcTemplate.queryForList(ANONYMIZE_SHARED_ARTS, Long.class, userId, chunkSize);
+        artIds.forEach(artId -> tagIndexService.onArtStateChanged(artId, ArtStatus.DELETED_BY_USER, false));
+        return artIds.size();
+    }
+
+    private int deleteArtTags(Long userId) {
+        List<long[]> pairs = jdbcTemplate.query(DELETE_ART_TAGS,
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) }, userId, chunkSize);
+        pairs.forEach(pair -> tagIndexService.onTagRemoved(pair[0], pair[1]));
+        return pairs.size();
+    }
+
+    private int deleteArts(Long userId) {
+        List<String> imageUrls = jdbcTemplate.queryForList(DELETE_ARTS, String.class, userId, chunkSize);
+        imageUrls.forEach(fileStorageService::deleteFile);
+        return imageUrls.size();
+    }
+
+    private int deleteVerificationTokens(Long userId) {
+        verificationTokenRepository.deleteByUserId(userId);
+        return 0;
+    }
+
+    private int deleteUser(Long userId) {
+        List<String> avatarUrls = jdbcTemplate.queryForList(DELETE_USER, String.class, userId);
+        avatarUrls.forEach(fileStorageService::deleteFile);
+        return avatarUrls.size();
+    }
+
+    // Обновление только пока задача за нами: не истекла блокировка и ее не забрал другой инстанс
+    private void update(AccountDeletionJob job, Update update) {
+        Query query = new Query(Criteria.where("_id").is(job.getId())
+                .and("status").is(AccountDeletionJob.Status.RUNNING)
+                .and("attempts").is(job.getAttempts()));
+        mongoTemplate.updateFirst(query, update, AccountDeletionJob.class);
+    }
+
+    private LocalDateTime lockExpiry() {
+        return LocalDateTime.now().plusNanos(lockTimeoutMs * 1_000_000);
+    }
+
+    private static String newStatusToken() {
+        byte[] bytes = new byte[32];
+        STATUS_TOKEN_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "unknown error";
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static final class Step {
+        final String name;
+        // Одна порция; возвращает число затронутых строк
+        final Function<Long, Integer> operation;
+
+        Step(String name, Function<Long, Integer> operation) {
+            this.name = name;
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.UserRole;
+import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.model.enumclass.ReportStatus;
+import com.example.artship.social.model.enumclass.ReportTargetType;
+import com.example.artship.social.model.mongo.AdminBulkJob;
+import com.example.artship.social.model.mongo.ModerationTarget;
+import com.example.artship.social.model.mongo.Report;
+import com.example.artship.social.repository.mongo.AdminBulkJobRepository;
+import com.example.artship.social.security.TokenVersionRegistry;
+import com.example.artship.social.security.UserPrincipalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Массовые операции администратора (смена ролей, разбор жалоб, скрытие и бан артов)
+ * в фоне вместо цикла в потоке запроса.
+ *
+ * Список id обрабатывается порциями по chunk-size: для SQL — один UPDATE ... WHERE id IN (...)
+ * на порцию, для жалоб — один updateMany. После каждой порции в задаче сдвигается
+ * cursor и дописываются ошибки по отдельным id, так что прогресс виден через
+ * GET /api/admin/bulk-jobs/{id}, а после сбоя или рестарта задача продолжается
+ * с первой необработанной порции (блокировка по времени, как у AccountDeletionService).
+ */
+@Service
+public class AdminBulkJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminBulkJobService.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final AdminBulkJobRepository jobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final FeedService feedService;
+    private final TagIndexService tagIndexService;
+    private final ArtService artService;
+    private final CommentService commentService;
+    private final ModerationQueueService moderationQueueService;
+    private final Map<AdminBulkJob.Type, ChunkHandler> handlers = new EnumMap<>(AdminBulkJob.Type.class);
+    private final ExecutorService workerPool;
+    private final Semaphore freeWorkers;
+
+    @Value("${admin-bulk.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${admin-bulk.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${admin-bulk.retry-delay-ms:30000}")
+    private long retryDelayMs;
+
+    @Value("${admin-bulk.lock-timeout-ms:300000}")
+    private long lockTimeoutMs;
+
+    public AdminBulkJobService(MongoTemplate mongoTemplate,
+                               AdminBulkJobRepository jobRepository,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               UserPrincipalCache userPrincipalCache,
+                               TokenVersionRegistry tokenVersionRegistry,
+                               FeedService feedService,
+                               TagIndexService tagIndexService,
+                               ArtService artService,
+                               CommentService commentService,
+                               ModerationQueueService moderationQueueService,
+                               @Value("${admin-bulk.workers:1}") int workers) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobRepository = jobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userPrincipalCache = userPrincipalCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.feedService = feedService;
+        this.tagIndexService = tagIndexService;
+        this.artService = artService;
+        this.commentService = commentService;
+        this.moderationQueueService = moderationQueueService;
+        this.freeWorkers = new Semaphore(workers);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "admin-bulk-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        handlers.put(AdminBulkJob.Type.CHANGE_USER_ROLE, this::changeUserRoles);
+        handlers.put(AdminBulkJob.Type.RESOLVE_REPORTS, this::resolveReports);
+        handlers.put(AdminBulkJob.Type.HIDE_ARTS, (job, ids) -> moderateArts(ids, ArtStatus.HIDDEN));
+        handlers.put(AdminBulkJob.Type.BAN_ARTS, (job, ids) -> moderateArts(ids, ArtStatus.BANNED));
+    }
+
+    // Запрос claimNext: PENDING по nextAttemptAt и зависшие RUNNING по lockedUntil
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        mongoTemplate.indexOps(AdminBulkJob.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("nextAttemptAt", Sort.Direction.ASC)
+                .named("status_next_attempt"));
+        mongoTemplate.indexOps(AdminBulkJob.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("lockedUntil", Sort.Direction.ASC)
+                .named("status_locked_until"));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Прерванная задача останется в RUNNING и будет продолжена по истечении блокировки
+        workerPool.shutdown();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // ==================== ЗАПРОСЫ ====================
+
+    public AdminBulkJob submit(AdminBulkJob.Type type, List<?> ids, Map<String, String> params, String requestedBy) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RuntimeException("No ids given");
+        }
+
+        List<String> itemIds = ids.stream()
+                .map(String::valueOf)
+                .distinct()
+                .collect(Collectors.toList());
+
+        AdminBulkJob job = jobRepository.insert(new AdminBulkJob(type, itemIds, new LinkedHashMap<>(params), requestedBy));
+        log.info("Bulk job {} ({} items) queued as {} by {}", type, itemIds.size(), job.getId(), requestedBy);
+        return job;
+    }
+
+    public Optional<AdminBulkJob> findJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Прогресс задачи; список ошибок по отдельным id отдается, когда задача завершена.
+     */
+    public Map<String, Object> describe(AdminBulkJob job) {
+        int total = job.getItemIds().size();
+        boolean finished = job.getStatus() == AdminBulkJob.Status.COMPLETED
+                || job.getStatus() == AdminBulkJob.Status.FAILED;
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jobId", job.getId());
+        response.put("type", job.getType());
+        response.put("status", job.getStatus());
+        response.put("total", total);
+        response.put("processed", job.getCursor());
+        response.put("progress", total > 0 ? job.getCursor() * 100 / total : 100);
+        response.put("succeeded", job.getSucceeded());
+        response.put("failed", job.getFailures().size());
+        if (finished) {
+            response.put("failures", job.getFailures());
+            response.put("lastError", job.getLastError());
+        }
+        response.put("createdAt", job.getCreatedAt());
+        response.put("startedAt", job.getStartedAt());
+        response.put("finishedAt", job.getFinishedAt());
+        return response;
+    }
+
+    /**
+     * Забирает задачи, пока есть свободные воркеры.
+     */
+    @Scheduled(fixedDelayString = "${admin-bulk.poll-interval-ms:1000}")
+    public void drain() {
+        while (freeWorkers.tryAcquire()) {
+            AdminBulkJob job;
+            try {
+                job = claimNext();
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.warn("Could not poll admin bulk jobs: {}", e.getMessage());
+                return;
+            }
+
+            if (job == null) {
+                freeWorkers.release();
+                return;
+            }
+
+            workerPool.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (AdminBulkJob.Status status : AdminBulkJob.Status.values()) {
+            stats.put(status.name().toLowerCase(), jobRepository.countByStatus(status));
+        }
+        return stats;
+    }
+
+    // ==================== ВЫПОЛНЕНИЕ ====================
+
+    private AdminBulkJob claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(AdminBulkJob.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(AdminBulkJob.Status.RUNNING).and("lockedUntil").lte(now)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+
+        Update update = new Update()
+                .set("status", AdminBulkJob.Status.RUNNING)
+                .set("lockedUntil", lockExpiry())
+                .inc("attempts", 1);
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), AdminBulkJob.class);
+    }
+
+    private void run(AdminBulkJob job) {
+        long started = System.currentTimeMillis();
+        ChunkHandler handler = handlers.get(job.getType());
+        List<String> itemIds = job.getItemIds();
+
+        if (job.getStartedAt() == null) {
+            update(job, new Update().set("startedAt", LocalDateTime.now()));
+        }
+
+        try {
+            for (int from = job.getCursor(); from < itemIds.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, itemIds.size());
+                ChunkResult result = handler.process(job, itemIds.subList(from, to));
+
+                Update progress = new Update()
+                        .set("cursor", to)
+                        .inc("succeeded", result.succeeded)
+                        .set("lockedUntil", lockExpiry());
+                if (!result.failures.isEmpty()) {
+                    progress.push("failures").each(result.failures.toArray());
+                }
+                update(job, progress);
+            }
+
+            update(job, new Update()
+                    .set("status", AdminBulkJob.Status.COMPLETED)
+                    .set("finishedAt", LocalDateTime.now())
+                    .unset("lockedUntil")
+                    .unset("lastError"));
+            log.info("Bulk job {} {} ({} items) completed in {} ms",
+                    job.getType(), job.getId(), itemIds.size(), System.currentTimeMillis() - started);
+
+        } catch (RuntimeException e) {
+            String error = truncate(e.getMessage());
+
+            if (job.getAttempts() >= maxAttempts) {
+                update(job, new Update()
+                        .set("status", AdminBulkJob.Status.FAILED)
+                        .set("finishedAt", LocalDateTime.now())
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.error("Bulk job {} {} failed after {} attempts: {}",
+                        job.getType(), job.getId(), job.getAttempts(), error);
+            } else {
+                update(job, new Update()
+                        .set("status", AdminBulkJob.Status.PENDING)
+                        .set("nextAttemptAt", LocalDateTime.now().plusNanos(retryDelayMs * 1_000_000))
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.warn("Bulk job {} {} failed (attempt {}/{}), will resume: {}",
+                        job.getType(), job.getId(), job.getAttempts(), maxAttempts, error);
+            }
+        }
+    }
+
+    // ==================== ОПЕРАЦИИ ====================
+
+    private ChunkResult changeUserRoles(AdminBulkJob job, List<String> ids) {
+        ChunkResult result = new ChunkResult();
+        List<Long> userIds = parseIds(ids, result);
+        if (userIds.isEmpty()) {
+            return result;
+        }
+
+        UserRole role = UserRole.valueOf(job.getParams().get("role"));
+        List<Long> updated = transactionTemplate.execute(status -> {
+            List<Long> changed = jdbcTemplate.queryForList(
+                    "UPDATE users SET user_role = ?, updated_at = now() WHERE id IN (" + placeholders(userIds) + ") RETURNING id",
+                    Long.class, prepend(role.name(), userIds));
+            tokenVersionRegistry.bump(changed);
+            return changed;
+        });
+
+        updated.forEach(userPrincipalCache::invalidate);
+        result.collect(userIds, new HashSet<>(updated), "User not found");
+        return result;
+    }
+
+    private ChunkResult moderateArts(List<String> ids, ArtStatus status) {
+        ChunkResult result = new ChunkResult();
+        List<Long> artIds = parseIds(ids, result);
+        if (artIds.isEmpty()) {
+            return result;
+        }
+
+        List<Long> updated = transactionTemplate.execute(tx -> {
+            List<Long> changed = jdbcTemplate.queryForList(
+                    "UPDATE arts SET status = ?, is_public_flag = false, updated_at = now() " +
+                    "WHERE id IN (" + placeholders(artIds) + ") RETURNING id",
+                    Long.class, prepend(status.name(), artIds));
+            feedService.onArtsWithdrawn(changed);
+            changed.forEach(artId -> tagIndexService.onArtStateChanged(artId, status, false));
+            return changed;
+        });
+
+        result.collect(artIds, new HashSet<>(updated), "Art not found");
+        return result;
+    }
+
+    private ChunkResult resolveReports(AdminBulkJob job, List<String> ids) {
+        ChunkResult result = new ChunkResult();
+        String resolvedBy = job.getRequestedBy();
+        String resolutionNote = job.getParams().get("resolutionNote");
+        boolean deleteContent = Boolean.parseBoolean(job.getParams().get("deleteContent"));
+
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("targetType", "targetId", "status");
+        List<Report> reports = mongoTemplate.find(query, Report.class);
+
+        Set<String> found = reports.stream().map(Report::getId).collect(Collectors.toSet());
+        ids.stream().filter(id -> !found.contains(id)).forEach(id -> result.fail(id, "Report not found"));
+
+        // Уже обработанные жалобы (в том числе при повторе порции после сбоя) считаются успешными
+        List<Report> open = new ArrayList<>();
+        for (Report report : reports) {
+            if (report.getStatus() == ReportStatus.PENDING || report.getStatus() == ReportStatus.REVIEWED) {
+                open.add(report);
+            } else {
+                result.succeeded++;
+            }
+        }
+
+        Map<String, List<Report>> byTarget = open.stream()
+                .collect(Collectors.groupingBy(report -> ModerationTarget.idOf(report.getTargetType(), report.getTargetId()),
+                        LinkedHashMap::new, Collectors.toList()));
+
+        if (deleteContent) {
+            // Удаление контента остается каскадом сервисов, но выполняется один раз на объект
+            for (List<Report> targetReports : byTarget.values()) {
+                Report first = targetReports.get(0);
+                try {
+                    if (first.getTargetType() == ReportTargetType.ART) {
+                        artService.forceDeleteArt(first.getTargetId());
+                    } else {
+                        commentService.deleteComment(first.getTargetId());
+                    }
+                    moderationQueueService.onTargetResolved(first.getTargetType(), first.getTargetId(),
+                            resolvedBy, resolutionNote);
+                    result.succeeded += targetReports.size();
+                } catch (RuntimeException e) {
+                    targetReports.forEach(report -> result.fail(report.getId(), truncate(e.getMessage())));
+                }
+            }
+            return result;
+        }
+
+        if (!open.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(open.stream().map(Report::getId).toList())
+                            .and("status").in(ReportStatus.PENDING, ReportStatus.REVIEWED)),
+                    new Update()
+                            .set("status", ReportStatus.RESOLVED)
+                            .set("resolvedBy", resolvedBy)
+                            .set("resolutionNote", resolutionNote)
+                            .set("resolvedAt", now)
+                            .set("updatedAt", now),
+                    Report.class);
+
+            byTarget.values().forEach(targetReports -> moderationQueueService.onReportsProcessed(
+                    targetReports.get(0).getTargetType(), targetReports.get(0).getTargetId(),
+                    targetReports.size(), ReportStatus.RESOLVED));
+            result.succeeded += open.size();
+        }
+        return result;
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ ====================
+
+    private List<Long> parseIds(List<String> ids, ChunkResult result) {
+        List<Long> parsed = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            try {
+                parsed.add(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                result.fail(id, "Invalid id");
+            }
+        }
+        return parsed;
+    }
+
+    private static String placeholders(List<?> values) {
+        return String.join(", ", Collections.nCopies(values.size(), "?"));
+    }
+
+    private static Object[] prepend(Object first, List<Long> rest) {
+        Object[] args = new Object[rest.size() + 1];
+        args[0] = first;
+        for (int i = 0; i < rest.size(); i++) {
+            args[i + 1] = rest.get(i);
+        }
+        return args;
+    }
+
+    // Обновление только пока задача за нами: не истекла блокировка и ее не забрал другой инстанс
+    private void update(AdminBulkJob job, Update update) {
+        Query query = new Query(Criteria.where("_id").is(job.getId())
+                .and("status").is(AdminBulkJob.Status.RUNNING)
+                .and("attempts").is(job.getAttempts()));
+        mongoTemplate.updateFirst(query, update, AdminBulkJob.class);
+    }
+
+    private LocalDateTime lockExpiry() {
+        return LocalDateTime.now().plusNanos(lockTimeoutMs * 1_000_000);
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "unknown error";
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    @FunctionalInterface
+    private interface ChunkHandler {
+        // Одна порция id; транзакции и побочные эффекты — внутри обработчика
+        ChunkResult process(AdminBulkJob job, List<String> ids);
+    }
+
+    private static final class ChunkResult {
+        long succeeded;
+        final List<AdminBulkJob.Failure> failures = new ArrayList<>();
+
+        void fail(String itemId, String error) {
+            failures.add(new AdminBulkJob.Failure(itemId, error));
+        }
+
+        // Успешны id, вернувшиеся из UPDATE ... RETURNING, остальные — ошибка
+        void collect(List<Long> requested, Set<Long> updated, String missingError) {
+            for (Long id : requested) {
+                if (updated.contains(id)) {
+                    succeeded++;
+                } else {
+                    fail(String.valueOf(id), missingError);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.artship.social.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Денормализованные счетчики лайков, комментариев и сохранений в коллекции у арта.
+ *
+ * Изменения копятся в памяти (LongAdder на арт) и периодически сбрасываются
+ * в БД одним batch-UPDATE вида "like_count = like_count + ?", поэтому популярные
+ * арты не блокируют одну строку на каждый лайк. Изменение учитывается только
+ * после коммита транзакции, которая его сделала: откат не оставляет лишней единицы.
+ *
+ * Запись в буфер идет под read-lock, подмена буфера при сбросе и сверка — под
+ * write-lock. Поэтому снятый буфер полон: ни один поток уже не пишет в него.
+ *
+ * Сверка пересчитывает счетчики из исходных таблиц пачками по id арта. Для каждой
+ * пачки под write-lock из буфера убираются ее накопленные изменения (они уже
+ * закоммичены и попадут в COUNT) и выполняется UPDATE, так что одно изменение
+ * не учитывается дважды. Остается только окно между коммитом и afterCommit
+ * (микросекунды) — его исправит следующая сверка.
+ */
+@Service
+public class ArtCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArtCounterService.class);
+
+    private static final String FLUSH_SQL =
+            "UPDATE arts SET like_count = like_count + ?, " +
+            "comment_count = comment_count + ?, " +
+            "collection_count = collection_count + ? " +
+            "WHERE id = ?";
+
+    private static final String NEXT_BATCH_END_SQL =
+            "SELECT MAX(id) FROM (SELECT id FROM arts WHERE id > ? ORDER BY id LIMIT ?) batch";
+
+    private static final String RECONCILE_SQL =
+            "UPDATE arts a SET " +
+            "like_count = (SELECT COUNT(*) FROM art_likes l WHERE l.art_id = a.id), " +
+            "comment_count = (SELECT COUNT(*) FROM comments c WHERE c.art_id = a.id), " +
+            "collection_count = (SELECT COUNT(*) FROM collection_arts ca WHERE ca.art_id = a.id) " +
+            "WHERE a.id > ? AND a.id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private Map<Long, Deltas> active = new ConcurrentHashMap<>();
+
+    @Value("${counters.reconcile-batch-size:500}")
+    private int reconcileBatchSize;
+
+    public ArtCounterService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void likeAdded(Long artId) { record(artId, 1, 0, 0); }
+    public void likeRemoved(Long artId) { record(artId, -1, 0, 0); }
+    public void likesRemoved(Long artId, long count) { record(artId, -count, 0, 0); }
+
+    public void commentAdded(Long artId) { record(artId, 0, 1, 0); }
+    public void commentRemoved(Long artId) { record(artId, 0, -1, 0); }
+    public void commentsRemoved(Long artId, long count) { record(artId, 0, -count, 0); }
+
+    public void collectionSaveAdded(Long artId) { record(artId, 0, 0, 1); }
+    public void collectionSaveRemoved(Long artId) { record(artId, 0, 0, -1); }
+
+    @Scheduled(fixedDelayString = "${counters.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, Deltas> toWrite;
+        bufferLock.writeLock().lock();
+        try {
+            toWrite = active;
+            active = new ConcurrentHashMap<>();
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+
+        write(toWrite);
+    }
+
+    // Колонки счетчиков добавлены ddl-auto со значением 0 — при старте они заполняются
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    // Полный пересчет из исходных таблиц — исправляет дрейф после массовых удалений
+    @Scheduled(cron = "${counters.reconcile-cron:0 30 3 * * ?}")
+    public synchronized void reconcile() {
+        long started = System.currentTimeMillis();
+        int updated = 0;
+        long cursor = 0;
+
+        while (true) {
+            Long batchEnd = jdbcTemplate.queryForObject(NEXT_BATCH_END_SQL, Long.class, cursor, reconcileBatchSize);
+            if (batchEnd == null) {
+                break;
+            }
+
+            bufferLock.writeLock().lock();
+            try {
+                long from = cursor;
+                active.keySet().removeIf(artId -> artId > from && artId <= batchEnd);
+                updated += jdbcTemplate.update(RECONCILE_SQL, from, batchEnd);
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+            cursor = batchEnd;
+        }
+
+        log.info("Reconciled engagement counters for {} arts in {} ms", updated, System.currentTimeMillis() - started);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void record(Long artId, long likes, long comments, long saves) {
+        afterCommit(() -> apply(artId, likes, comments, saves));
+    }
+
+    private void apply(Long artId, long likes, long comments, long saves) {
+        bufferLock.readLock().lock();
+        try {
+            Deltas deltas = active.computeIfAbsent(artId, id -> new Deltas());
+            deltas.likes.add(likes);
+            deltas.comments.add(comments);
+            deltas.collectionSaves.add(saves);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    private void write(Map<Long, Deltas> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(pending.size());
+        pending.forEach((artId, deltas) -> {
+            long likes = deltas.likes.sum();
+            long comments = deltas.comments.sum();
+            long saves = deltas.collectionSaves.sum();
+            if (likes != 0 || comments != 0 || saves != 0) {
+                batch.add(new Object[] { likes, comments, saves, artId });
+            }
+        });
+
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            log.debug("Flushed engagement counters for {} arts", batch.size());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Deltas {
+        final LongAdder likes = new LongAdder();
+        final LongAdder comments = new LongAdder();
+        final LongAdder collectionSaves = new LongAdder();
+    }
+}
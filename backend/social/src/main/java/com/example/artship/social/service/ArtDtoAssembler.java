@@ -0,0 +1,163 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.dto.ArtDto;
+import com.example.artship.social.dto.TagDto;
+import com.example.artship.social.dto.UserDto;
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.Tag;
+import com.example.artship.social.model.User;
+import com.example.artship.social.repository.ArtTagRepository;
+import com.example.artship.social.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сборка ArtDto для целой страницы артов.
+ * Авторы, теги и количество артов по тегам загружаются тремя IN-запросами
+ * на страницу вместо отдельных запросов на каждый арт.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ArtDtoAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(ArtDtoAssembler.class);
+
+    private final ArtTagRepository artTagRepository;
+    private final UserRepository userRepository;
+
+    public ArtDtoAssembler(ArtTagRepository artTagRepository,
+                           UserRepository userRepository) {
+        this.artTagRepository = artTagRepository;
+        this.userRepository = userRepository;
+    }
+
+    public Page<ArtDto> toDtoPage(Page<Art> artsPage) {
+        List<ArtDto> dtos = toDtos(artsPage.getContent());
+        return new PageImpl<>(dtos, artsPage.getPageable(), artsPage.getTotalElements());
+    }
+
+    public ArtDto toDto(Art art) {
+        if (art == null) return null;
+        return toDtos(List.of(art)).get(0);
+    }
+
+    public List<ArtDto> toDtos(List<Art> arts) {
+        if (arts == null || arts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Art> nonNullArts = arts.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        List<Long> artIds = nonNullArts.stream()
+                .map(Art::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<Long, UserDto> authors = loadAuthors(nonNullArts);
+        Map<Long, List<TagDto>> tagsByArtId = loadTags(artIds);
+
+        log.debug("Assembled {} arts with {} authors", nonNullArts.size(), authors.size());
+
+        List<ArtDto> result = new ArrayList<>(nonNullArts.size());
+        for (Art art : nonNullArts) {
+            ArtDto dto = new ArtDto();
+            dto.setId(art.getId());
+            dto.setTitle(art.getTitle());
+            dto.setDescription(art.getDescription());
+            dto.setImage(art.getImageUrl());
+            dto.setThumbnailUrl(art.getThumbnailUrl());
+            dto.setMediumUrl(art.getMediumUrl());
+            dto.setProjectDataUrl(art.getProjectDataUrl());
+            dto.setPublicFlag(art.getIsPublicFlag() != null ? art.getIsPublicFlag() : true);
+            dto.setStatus(art.getStatus());
+            dto.setCreatedAt(art.getCreatedAt());
+            dto.setUpdatedAt(art.getUpdatedAt());
+            dto.setLikeCount(art.getLikeCount());
+            dto.setCommentCount(art.getCommentCount());
+            dto.setCollectionCount(art.getCollectionCount());
+
+            // getId() у lazy-прокси автора не инициализирует его
+            if (art.getAuthor() != null) {
+                dto.setAuthor(authors.get(art.getAuthor().getId()));
+            }
+
+            List<TagDto> tags = tagsByArtId.getOrDefault(art.getId(), Collections.emptyList());
+            dto.setTags(tags.stream().map(TagDto::new).collect(Collectors.toList()));
+
+            result.add(dto);
+        }
+
+        return result;
+    }
+
+    private Map<Long, UserDto> loadAuthors(List<Art> arts) {
+        Set<Long> authorIds = arts.stream()
+                .map(Art::getAuthor)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (authorIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return userRepository.findAllById(authorIds).stream()
+                .collect(Collectors.toMap(User::getId, UserDto::new));
+    }
+
+    private Map<Long, List<TagDto>> loadTags(List<Long> artIds) {
+        if (artIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Object[]> rows = artTagRepository.findArtIdAndTagByArtIds(artIds);
+        if (rows.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, TagDto> tagsById = new HashMap<>();
+        Map<Long, List<TagDto>> tagsByArtId = new HashMap<>();
+
+        for (Object[] row : rows) {
+            Long artId = (Long) row[0];
+            Tag tag = (Tag) row[1];
+
+            // TagDto(Tag) обращается к tag.getArts() и подгружает всю коллекцию,
+            // поэтому DTO собирается вручную, а artCount берется из группового запроса
+            TagDto tagDto = tagsById.computeIfAbsent(tag.getId(), id -> {
+                TagDto dto = new TagDto();
+                dto.setId(tag.getId());
+                dto.setName(tag.getName());
+                return dto;
+            });
+
+            tagsByArtId.computeIfAbsent(artId, id -> new ArrayList<>()).add(tagDto);
+        }
+
+        for (Object[] row : artTagRepository.countByTagIds(new ArrayList<>(tagsById.keySet()))) {
+            TagDto tagDto = tagsById.get((Long) row[0]);
+            if (tagDto != null) {
+                tagDto.setArtCount(((Long) row[1]).intValue());
+            }
+        }
+
+        return tagsByArtId;
+    }
+}
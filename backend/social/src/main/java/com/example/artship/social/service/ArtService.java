@@ -1,20 +1,27 @@
 package com.example.artship.social.service;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.artship.social.dto.ArtCursor;
 import com.example.artship.social.dto.ArtDto;
+import com.example.artship.social.dto.CursorPage;
 import com.example.artship.social.dto.TagDto;
-import com.example.artship.social.dto.UserDto;
 import com.example.artship.social.model.Art;
 import com.example.artship.social.model.enumclass.ArtStatus;
 import com.example.artship.social.model.User;
@@ -27,6 +34,8 @@ import com.example.artship.social.repository.UserRepository;
 @Service
 @Transactional
 public class ArtService {
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final ArtRepository artRepository;
     private final UserRepository userRepository;
     private final TagManagementService tagManagementService; 
@@ -35,6 +44,10 @@ public class ArtService {
     private final LikeRepository likeRepository;
     private final CollectionArtRepository collectionArtRepository;
     private final CommentService commentService;
+    private final ArtDtoAssembler artDtoAssembler;
+    private final FeedService feedService;
+    private final TagIndexService tagIndexService;
+    private final ImageDerivativeService imageDerivativeService;
 
     public ArtService(ArtRepository artRepository, 
                      UserRepository userRepository,
@@ -43,7 +56,11 @@ public class ArtService {
                      LocalFileStorageService fileStorageService, 
                      LikeRepository likeRepository,
                      CollectionArtRepository collectionArtRepository,
-                     CommentService commentService) {
+                     CommentService commentService,
+                     ArtDtoAssembler artDtoAssembler,
+                     FeedService feedService,
+                     TagIndexService tagIndexService,
+                     ImageDerivativeService imageDerivativeService) {
         this.artRepository = artRepository;
         this.userRepository = userRepository;
         this.tagManagementService = tagManagementService; 
@@ -52,6 +69,10 @@ public class ArtService {
         this.likeRepository = likeRepository;
         this.collectionArtRepository = collectionArtRepository;
         this.commentService = commentService;
+        this.artDtoAssembler = artDtoAssembler;
+        this.feedService = feedService;
+        this.tagIndexService = tagIndexService;
+        this.imageDerivativeService = imageDerivativeService;
     }
     
     private boolean isArtVisibleToUser(Art art, User viewer) {
@@ -87,7 +108,10 @@ public class ArtService {
     }
 
     public Art save(Art art) {
-        return artRepository.save(art);
+        Art savedArt = artRepository.save(art);
+        feedService.onArtChanged(savedArt);
+        tagIndexService.onArtStateChanged(savedArt);
+        return savedArt;
     }
 
     public ArtDto createArt(Art art, Long userId) { 
@@ -100,6 +124,9 @@ public class ArtService {
         art.setUpdatedAt(LocalDateTime.now());
         
         Art savedArt = artRepository.save(art);
+        feedService.onArtPublished(savedArt);
+        tagIndexService.onArtStateChanged(savedArt);
+        imageDerivativeService.onArtImageChanged(savedArt.getId(), savedArt.getImageUrl());
         return convertToDto(savedArt);
     }
 
@@ -107,14 +134,26 @@ public class ArtService {
         Art art = artRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Art not found with id: " + id));
         
+        boolean imageChanged = !Objects.equals(art.getImageUrl(), artDetails.getImageUrl());
+        
         art.setTitle(artDetails.getTitle());
         art.setDescription(artDetails.getDescription());
         art.setImageUrl(artDetails.getImageUrl());
+        if (imageChanged) {
+            // До готовности новых копий клиенты показывают оригинал
+            art.setThumbnailUrl(null);
+            art.setMediumUrl(null);
+        }
         art.setProjectDataUrl(artDetails.getProjectDataUrl());
         art.setIsPublicFlag(artDetails.getIsPublicFlag());
         art.setUpdatedAt(LocalDateTime.now());
         
         Art updatedArt = artRepository.save(art);
+        feedService.onArtChanged(updatedArt);
+        tagIndexService.onArtStateChanged(updatedArt);
+        if (imageChanged) {
+            imageDerivativeService.onArtImageChanged(updatedArt.getId(), updatedArt.getImageUrl());
+        }
         return convertToDto(updatedArt);
     }
 
@@ -124,6 +163,7 @@ public class ArtService {
                 .orElseThrow(() -> new RuntimeException("Art not found with id: " + id));
         
         collectionArtRepository.deleteByArtId(id);
+        feedService.onArtWithdrawn(id);
         likeRepository.deleteByArtId(id);
         commentService.deleteAllCommentsByArtId(id);
         tagManagementService.removeAllTagsFromArt(id);
@@ -165,7 +205,7 @@ public class ArtService {
 
     @Transactional(readOnly = true)
     public Page<ArtDto> getPublicArtsDtos(Pageable pageable, User viewer) {
-        return getVisibleArts(pageable, viewer).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(getVisibleArts(pageable, viewer));
     }
 
     @Transactional(readOnly = true)
@@ -181,7 +221,7 @@ public class ArtService {
                 author, ArtStatus.ACTIVE, pageable);
         }
         
-        return artsPage.map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(artsPage);
     }
 
     @Transactional(readOnly = true)
@@ -195,18 +235,133 @@ public class ArtService {
             artsPage = getVisibleArts(pageable, viewer);
         }
         
-        return artsPage.map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(artsPage);
     }
 
     @Transactional(readOnly = true)
     public Page<Art> getUserFeed(Long userId, Pageable pageable, User viewer) {
-        return artRepository.findFeedByUserIdAndStatus(userId, ArtStatus.ACTIVE, pageable);
+        return feedService.getFeed(userId, pageable);
     }
 
     @Transactional(readOnly = true)
     public Page<ArtDto> getUserFeedDtos(Long userId, Pageable pageable, User viewer) {
-        return artRepository.findFeedByUserIdAndStatus(userId, ArtStatus.ACTIVE, pageable)
-                .map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(feedService.getFeed(userId, pageable));
+    }
+
+    // ==================== KEYSET-ПАГИНАЦИЯ ====================
+
+    @Transactional(readOnly = true)
+    public CursorPage<ArtDto> getPublicArtsSlice(String cursor, int size, User viewer) {
+        ArtCursor position = ArtCursor.decode(cursor);
+        Pageable limit = sliceLimit(size);
+        
+        List<Art> arts;
+        if (isStaff(viewer)) {
+            arts = artRepository.findByStatusNotInBefore(
+                List.of(ArtStatus.DELETED_BY_USER, ArtStatus.BANNED),
+                position.getCreatedAt(), position.getId(), limit);
+        } else {
+            arts = artRepository.findByStatusAndIsPublicFlagTrueBefore(
+                ArtStatus.ACTIVE, position.getCreatedAt(), position.getId(), limit);
+        }
+        return toCursorPage(arts, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ArtDto> getArtsByAuthorSlice(User author, String cursor, int size, User viewer) {
+        ArtCursor position = ArtCursor.decode(cursor);
+        Pageable limit = sliceLimit(size);
+        
+        List<Art> arts;
+        if (viewer != null && viewer.getId().equals(author.getId())) {
+            arts = artRepository.findByAuthorAndStatusNotInBefore(
+                author, List.of(ArtStatus.DELETED_BY_USER),
+                position.getCreatedAt(), position.getId(), limit);
+        } else if (isStaff(viewer)) {
+            arts = artRepository.findByAuthorAndStatusNotInBefore(
+                author, List.of(ArtStatus.DELETED_BY_USER, ArtStatus.BANNED),
+                position.getCreatedAt(), position.getId(), limit);
+        } else {
+            arts = artRepository.findByAuthorAndStatusAndIsPublicFlagTrueBefore(
+                author, ArtStatus.ACTIVE, position.getCreatedAt(), position.getId(), limit);
+        }
+        return toCursorPage(arts, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ArtDto> getUserFeedSlice(Long userId, String cursor, int size) {
+        ArtCursor position = ArtCursor.decode(cursor);
+        Pageable limit = sliceLimit(size);
+        
+        List<Art> arts = feedService.getFeedBefore(
+            userId, position.getCreatedAt(), position.getId(), limit.getPageSize());
+        return toCursorPage(arts, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ArtDto> findDtosByTagNameSlice(String tagName, String cursor, int size, User viewer) {
+        ArtCursor position = ArtCursor.decode(cursor);
+        Pageable limit = sliceLimit(size);
+        
+        List<Art> arts;
+        if (isStaff(viewer)) {
+            arts = artRepository.findByTagNameAndStatusNotInBefore(
+                tagName, List.of(ArtStatus.DELETED_BY_USER, ArtStatus.BANNED),
+                position.getCreatedAt(), position.getId(), limit);
+        } else {
+            arts = artRepository.findByTagNameAndStatusAndIsPublicFlagTrueBefore(
+                tagName, ArtStatus.ACTIVE, position.getCreatedAt(), position.getId(), limit);
+        }
+        return toCursorPage(arts, limit);
+    }
+
+    // Запрашиваем на один элемент больше, чтобы узнать hasNext без COUNT(*)
+    private Pageable sliceLimit(int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        return PageRequest.of(0, pageSize + 1);
+    }
+
+    private CursorPage<ArtDto> toCursorPage(List<Art> arts, Pageable limit) {
+        int pageSize = limit.getPageSize() - 1;
+        boolean hasNext = arts.size() > pageSize;
+        List<Art> content = hasNext ? arts.subList(0, pageSize) : arts;
+        
+        String nextCursor = hasNext ? ArtCursor.after(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(artDtoAssembler.toDtos(content), nextCursor, hasNext);
+    }
+
+    private boolean isStaff(User viewer) {
+        return viewer != null && (viewer.getUserRole() == UserRole.ADMIN || 
+                                  viewer.getUserRole() == UserRole.MODERATOR);
+    }
+
+    // Индекс тегов отдает арты от новых к старым (id выдаются по времени создания),
+    // другие сортировки обслуживаются запросами к БД
+    private boolean canUseTagIndex(Pageable pageable) {
+        Sort sort = pageable.getSort();
+        return tagIndexService.isReady() && (sort.isUnsorted()
+                || sort.equals(Sort.by("createdAt").descending())
+                || sort.equals(Sort.by("id").descending()));
+    }
+
+    // Из БД загружается только страница id, найденных индексом. Видимость проверяется
+    // повторно по загруженным строкам: индекс обновляется после коммита и может отставать
+    private Page<Art> loadIndexedPage(long[] artIds, Pageable pageable, boolean staff) {
+        int from = (int) Math.min(pageable.getOffset(), artIds.length);
+        int to = Math.min(from + pageable.getPageSize(), artIds.length);
+        List<Long> pageIds = Arrays.stream(artIds, from, to).boxed().collect(Collectors.toList());
+        
+        Map<Long, Art> artsById = artRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Art::getId, Function.identity()));
+        List<Art> arts = pageIds.stream()
+                .map(artsById::get)
+                .filter(Objects::nonNull)
+                .filter(art -> staff
+                        ? art.getStatus() != ArtStatus.DELETED_BY_USER && art.getStatus() != ArtStatus.BANNED
+                        : art.getStatus() == ArtStatus.ACTIVE && Boolean.TRUE.equals(art.getIsPublicFlag()))
+                .collect(Collectors.toList());
+        
+        return new PageImpl<>(arts, pageable, artIds.length);
     }
 
     @Transactional(readOnly = true)
@@ -223,7 +378,7 @@ public class ArtService {
 
     @Transactional(readOnly = true)
     public Page<ArtDto> searchPublicArtDtosByTitle(String title, Pageable pageable, User viewer) {
-        return searchPublicArtsByTitle(title, pageable, viewer).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(searchPublicArtsByTitle(title, pageable, viewer));
     }
 
     @Transactional(readOnly = true)
@@ -240,7 +395,7 @@ public class ArtService {
 
     @Transactional(readOnly = true)
     public Page<ArtDto> findDtosByTagName(String tagName, Pageable pageable, User viewer) {
-        return findByTagName(tagName, pageable, viewer).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(findByTagName(tagName, pageable, viewer));
     }
 
     @Transactional(readOnly = true)
@@ -249,6 +404,16 @@ public class ArtService {
             return Page.empty(pageable);
         }
         
+        if (canUseTagIndex(pageable)) {
+            List<String> distinctNames = tagNames.stream().distinct().collect(Collectors.toList());
+            List<Long> tagIds = tagIndexService.resolveTagIds(distinctNames);
+            if (tagIds.size() < distinctNames.size()) {
+                return Page.empty(pageable); // одного из тегов не существует
+            }
+            boolean staff = isStaff(viewer);
+            return loadIndexedPage(tagIndexService.findAll(tagIds, staff), pageable, staff);
+        }
+        
         if (viewer != null && (viewer.getUserRole() == UserRole.ADMIN || 
                               viewer.getUserRole() == UserRole.MODERATOR)) {
             return artRepository.findByTagNamesAndStatusNotIn(
@@ -261,7 +426,7 @@ public class ArtService {
     
     @Transactional(readOnly = true)
     public Page<ArtDto> findDtosByTagNames(List<String> tagNames, Pageable pageable, User viewer) {
-        return findByTagNames(tagNames, pageable, viewer).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(findByTagNames(tagNames, pageable, viewer));
     }
 
     @Transactional(readOnly = true)
@@ -270,6 +435,13 @@ public class ArtService {
             return Page.empty(pageable);
         }
         
+        if (canUseTagIndex(pageable)) {
+            List<Long> tagIds = tagIndexService.resolveTagIds(
+                    tagNames.stream().distinct().collect(Collectors.toList()));
+            boolean staff = isStaff(viewer);
+            return loadIndexedPage(tagIndexService.findAny(tagIds, staff), pageable, staff);
+        }
+        
         if (viewer != null && (viewer.getUserRole() == UserRole.ADMIN || 
                               viewer.getUserRole() == UserRole.MODERATOR)) {
             return artRepository.findByAnyTagNamesAndStatusNotIn(
@@ -282,7 +454,7 @@ public class ArtService {
     
     @Transactional(readOnly = true)
     public Page<ArtDto> findDtosByAnyTagNames(List<String> tagNames, Pageable pageable, User viewer) {
-        return findByAnyTagNames(tagNames, pageable, viewer).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(findByAnyTagNames(tagNames, pageable, viewer));
     }
 
     public ArtDto addTagsToArt(Long artId, List<String> tagNames) {
@@ -317,42 +489,12 @@ public class ArtService {
                 .orElse(false);
     }
 
-    @Transactional
-    public void deleteAllUserArts(Long userId) {
-        List<Art> userArts = artRepository.findByAuthorId(userId);
-        
-        for (Art art : userArts) {
-            boolean isInOtherCollections = collectionArtRepository.existsByArtIdAndUserIdNot(art.getId(), userId);
-            
-            if (isInOtherCollections) {
-                art.setAuthor(null);  
-                art.setIsPublicFlag(false);
-                art.setStatus(ArtStatus.DELETED_BY_USER);
-                art.setTitle("[Deleted User's Art]");
-                art.setDescription(null);
-                art.setUpdatedAt(LocalDateTime.now());
-                artRepository.save(art);
-            } else {
-                likeRepository.deleteByArtId(art.getId());
-                commentService.deleteAllCommentsByArtId(art.getId());
-                tagManagementService.removeAllTagsFromArt(art.getId());
-                
-                if (art.getImageUrl() != null) {
-                    fileStorageService.deleteFile(art.getImageUrl());
-                }
-                
-                artRepository.delete(art);
-            }
-        }
-    }
-    
     @Transactional(readOnly = true)
     public Page<ArtDto> getArtsByStatus(ArtStatus status, Pageable pageable) {
         if (status != null) {
-            return artRepository.findByStatus(status, pageable)
-                    .map(this::convertToDto);
+            return artDtoAssembler.toDtoPage(artRepository.findByStatus(status, pageable));
         }
-        return artRepository.findAll(pageable).map(this::convertToDto);
+        return artDtoAssembler.toDtoPage(artRepository.findAll(pageable));
     }
 
     @Transactional(readOnly = true)
@@ -375,6 +517,8 @@ public class ArtService {
         art.setUpdatedAt(LocalDateTime.now());
         
         Art savedArt = artRepository.save(art);
+        feedService.onArtWithdrawn(artId);
+        tagIndexService.onArtStateChanged(savedArt);
         return convertToDto(savedArt);
     }
 
@@ -388,6 +532,8 @@ public class ArtService {
         art.setUpdatedAt(LocalDateTime.now());
         
         Art savedArt = artRepository.save(art);
+        feedService.onArtPublished(savedArt);
+        tagIndexService.onArtStateChanged(savedArt);
         return convertToDto(savedArt);
     }
     
@@ -401,6 +547,8 @@ public class ArtService {
         art.setUpdatedAt(LocalDateTime.now());
         
         Art savedArt = artRepository.save(art);
+        feedService.onArtWithdrawn(artId);
+        tagIndexService.onArtStateChanged(savedArt);
         return convertToDto(savedArt);
     }
     
@@ -410,6 +558,7 @@ public class ArtService {
                 .orElseThrow(() -> new RuntimeException("Art not found"));
         
         collectionArtRepository.deleteByArtId(artId);
+        feedService.onArtWithdrawn(artId);
         likeRepository.deleteByArtId(artId);
         commentService.deleteAllCommentsByArtId(artId);
         tagManagementService.removeAllTagsFromArt(artId);
@@ -423,26 +572,11 @@ public class ArtService {
 
     @Transactional(readOnly = true)
     public ArtDto convertToDto(Art art) {
-        if (art == null) return null;
-    
-        ArtDto artDto = new ArtDto();
-        artDto.setId(art.getId());
-        artDto.setTitle(art.getTitle());
-        artDto.setDescription(art.getDescription());
-        artDto.setImage(art.getImageUrl());
-        artDto.setProjectDataUrl(art.getProjectDataUrl());
-        artDto.setPublicFlag(art.getIsPublicFlag() != null ? art.getIsPublicFlag() : true);
-        artDto.setStatus(art.getStatus());
-        artDto.setCreatedAt(art.getCreatedAt());
-        artDto.setUpdatedAt(art.getUpdatedAt());
-    
-        if (art.getAuthor() != null) {
-            artDto.setAuthor(new UserDto(art.getAuthor()));
-        }
-    
-        List<TagDto> tags = tagManagementService.getTagsByArtId(art.getId());
-        artDto.setTags(tags);
-    
-        return artDto;
+        return artDtoAssembler.toDto(art);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ArtDto> convertToDtos(List<Art> arts) {
+        return artDtoAssembler.toDtos(arts);
     }
 }
\ No newline at end of file
@@ -27,14 +27,17 @@ public class ArtTagService {
     private final ArtRepository artRepository;
     private final TagRepository tagRepository;
     private final TagManagementService tagManagementService; 
+    private final TagIndexService tagIndexService;
     public ArtTagService(ArtTagRepository artTagRepository,
                         ArtRepository artRepository,
                         TagRepository tagRepository,
-                        TagManagementService tagManagementService) { // Убираем ArtService
+                        TagManagementService tagManagementService, // Убираем ArtService
+                        TagIndexService tagIndexService) {
         this.artTagRepository = artTagRepository;
         this.artRepository = artRepository;
         this.tagRepository = tagRepository;
         this.tagManagementService = tagManagementService;
+        this.tagIndexService = tagIndexService;
     }
     
     // Создание связи арт-тег (возвращает ArtTagDto)
@@ -53,6 +56,7 @@ public class ArtTagService {
         
         ArtTag artTag = new ArtTag(art, tag);
         ArtTag savedArtTag = artTagRepository.save(artTag);
+        tagIndexService.onTagAdded(artId, tagId);
         
         log.info("Art-tag relation created successfully");
         return new ArtTagDto(savedArtTag);
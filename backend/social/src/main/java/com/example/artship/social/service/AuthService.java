@@ -31,6 +31,8 @@ import com.example.artship.social.repository.UserRepository;
 import com.example.artship.social.repository.mongo.VerificationTokenRepository;
 import com.example.artship.social.security.CustomUserDetails;
 import com.example.artship.social.security.JwtTokenUtil;
+import com.example.artship.social.security.TokenVersionRegistry;
+import com.example.artship.social.security.UserPrincipalCache;
 
 @Service
 @Transactional
@@ -65,6 +67,12 @@ public class AuthService {
     
     @Autowired
     private EmailService emailService;
+    
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+    
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
 
 
     private void setRefreshTokenCookie(HttpServletResponse response, String refreshToken) {
@@ -252,24 +260,35 @@ public class AuthService {
         
         logger.debug("Refresh token получен из cookie, длина: {} символов", rawRefreshToken.length());
         
-        RefreshToken refreshToken = refreshTokenService.findByToken(rawRefreshToken)
-                .orElseThrow(() -> {
-                    logger.error("Refresh token не найден или невалиден");
-                    return new RuntimeException("Invalid refresh token");
-                });
-        
-        logger.debug("Refresh token найден в БД, ID: {}, user ID: {}", 
-            refreshToken.getId(), refreshToken.getUser().getId());
+        // Отзыв старого токена и выпуск нового: один UPDATE ... RETURNING и один INSERT
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(
+            rawRefreshToken,
+            extractDeviceInfo(request),
+            request.getRemoteAddr(),
+            request.getHeader("User-Agent")
+        );
         
-        if (!refreshToken.isValid()) {
-            logger.error("Refresh token истек или отозван. Expiry: {}, Revoked: {}", 
-                refreshToken.getExpiryDate(), refreshToken.isRevoked());
-            throw new RuntimeException("Refresh token is expired or revoked");
+        switch (rotation.getStatus()) {
+            case INVALID -> {
+                logger.error("Refresh token не найден или невалиден");
+                throw new RuntimeException("Invalid refresh token");
+            }
+            case EXPIRED -> {
+                logger.error("Refresh token истек или отозван");
+                throw new RuntimeException("Refresh token is expired or revoked");
+            }
+            case REUSED -> {
+                int revoked = refreshTokenService.revokeFamily(rotation.getFamilyId());
+                logger.warn("Повторное использование отозванного refresh token, цепочка {} отозвана ({} токенов)",
+                    rotation.getFamilyId(), revoked);
+                throw new RuntimeException("Refresh token is expired or revoked");
+            }
+            case GRACE -> logger.debug("Параллельное обновление токена, выдан еще один refresh token той же цепочки");
+            default -> logger.debug("Новый refresh token создан, ID: {}", rotation.getTokenId());
         }
         
-        refreshTokenService.revokeToken(rawRefreshToken);
-        
-        User user = refreshToken.getUser();
+        User user = userPrincipalCache.get(rotation.getUserId(), rotation.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
         
         if (!user.isEmailVerified()) {
             logger.error("Попытка обновления токена для неподтвержденного email: {}", user.getEmail());
@@ -290,18 +309,7 @@ public class AuthService {
         logger.info("Expires in (remaining): {} ms ({} minutes)", 
             expiresIn, expiresIn / 60000);
         
-        logger.info("Генерация нового refresh token...");
-        String deviceInfo = extractDeviceInfo(request);
-        RefreshToken newRefreshToken = refreshTokenService.createRefreshToken(
-            user,
-            deviceInfo,
-            request.getRemoteAddr(),
-            request.getHeader("User-Agent")
-        );
-        
-        setRefreshTokenCookie(response, newRefreshToken.getTokenHash());
-        
-        logger.debug("Новый refresh token создан, ID: {}", newRefreshToken.getId());
+        setRefreshTokenCookie(response, rotation.getRefreshToken());
         
         logger.info("Токены успешно обновлены для пользователя: {}", user.getUsername());
         logger.info("Response time: {}", new Date());
@@ -340,6 +348,7 @@ public class AuthService {
         logger.info("Выход со всех устройств для пользователя ID: {}", userId);
         try {
             refreshTokenService.revokeAllUserTokens(userId);
+            tokenVersionRegistry.bump(userId); // и уже выданные access token
             logger.info("✅ Все сессии пользователя ID: {} завершены", userId);
         } catch (Exception e) {
             logger.error("Ошибка при выходе со всех устройств: {}", e.getMessage());
@@ -425,7 +434,7 @@ public class AuthService {
         
         try {
             emailService.sendVerificationEmail(savedUser.getEmail(), savedUser.getUsername(), verificationToken);
-            logger.info("Письмо для подтверждения email отправлено на: {}", savedUser.getEmail());
+            logger.info("Письмо для подтверждения email поставлено в очередь: {}", savedUser.getEmail());
         } catch (Exception e) {
             logger.error("Не удалось отправить письмо подтверждения: {}", e.getMessage());
         }
@@ -475,6 +484,7 @@ public class AuthService {
         user.setEmailVerified(true);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getId());
         
         verificationToken.setUsed(true);
         verificationTokenRepository.save(verificationToken);
@@ -526,7 +536,7 @@ public class AuthService {
         
         try {
             emailService.sendVerificationEmail(user.getEmail(), user.getUsername(), tokenValue);
-            logger.info("Письмо подтверждения отправлено на: {}", email);
+            logger.info("Письмо подтверждения поставлено в очередь: {}", email);
         } catch (Exception e) {
             logger.error("Не удалось отправить письмо: {}", e.getMessage());
             throw new RuntimeException("Failed to send verification email");
@@ -559,7 +569,7 @@ public class AuthService {
         
         try {
             emailService.sendPasswordResetEmail(user.getEmail(), user.getUsername(), tokenValue);
-            logger.info("Письмо для сброса пароля отправлено на: {}", email);
+            logger.info("Письмо для сброса пароля поставлено в очередь: {}", email);
         } catch (Exception e) {
             logger.error("Не удалось отправить письмо: {}", e.getMessage());
             throw new RuntimeException("Failed to send password reset email");
@@ -599,6 +609,10 @@ public class AuthService {
         user.setPasswordHash(passwordEncoder.encode(newPassword));
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        // Восстановление доступа: все сессии и выданные access token отзываются
+        refreshTokenService.revokeAllUserTokens(user.getId());
+        tokenVersionRegistry.bump(user.getId());
+        userPrincipalCache.invalidate(user.getId());
         
         verificationToken.setUsed(true);
         verificationTokenRepository.save(verificationToken);
@@ -624,8 +638,13 @@ public class AuthService {
                 });
     }
     
+    /**
+     * Смена пароля: все сессии пользователя завершаются (refresh token удаляются,
+     * access token отзываются версией), текущей выдаются новые токены.
+     */
     @Transactional
-    public void changePassword(String username, String oldPassword, String newPassword) {
+    public AuthResponse changePassword(String username, String oldPassword, String newPassword,
+                                       HttpServletRequest request, HttpServletResponse response) {
         logger.info("Смена пароля для пользователя: {}", username);
         
         User user = userRepository.findByUsername(username)
@@ -648,7 +667,24 @@ public class AuthService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        refreshTokenService.revokeAllUserTokens(user.getId());
+        tokenVersionRegistry.bump(user.getId());
+        userPrincipalCache.invalidate(user.getId());
         logger.info("Пароль успешно изменен для пользователя: {}", username);
+        
+        // Версия уже увеличена в этой транзакции — новый access token получит ее
+        String accessToken = jwtTokenUtil.generateAccessToken(new CustomUserDetails(user));
+        long expiresIn = jwtTokenUtil.getExpirationDateFromToken(accessToken).getTime() - System.currentTimeMillis();
+        
+        RefreshToken refreshToken = refreshTokenService.createRefreshToken(
+            user,
+            extractDeviceInfo(request),
+            request.getRemoteAddr(),
+            request.getHeader("User-Agent")
+        );
+        setRefreshTokenCookie(response, refreshToken.getTokenHash());
+        
+        return new AuthResponse(accessToken, null, expiresIn, new UserDto(user));
     }
     
     public boolean checkPassword(String username, String password) {
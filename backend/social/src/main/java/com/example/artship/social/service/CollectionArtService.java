@@ -11,14 +11,23 @@ import com.example.artship.social.repository.CollectionArtRepository;
 import com.example.artship.social.repository.CollectionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,19 +36,51 @@ public class CollectionArtService {
     
     private static final Logger log = LoggerFactory.getLogger(CollectionArtService.class);
     
+    // Меньший шаг между позициями — повод перенумеровать коллекцию
+    private static final double MIN_POSITION_STEP = 1e-6;
+    
+    private static final String UPDATE_POSITION_SQL =
+            "UPDATE collection_arts SET position = ? WHERE collection_id = ? AND art_id = ?";
+    
+    // При переносе арт, уже лежащий в целевой коллекции, просто получает новую позицию
+    private static final String UPSERT_POSITION_SQL =
+            "INSERT INTO collection_arts (collection_id, art_id, saved_at, position) VALUES (?, ?, now(), ?) " +
+            "ON CONFLICT (collection_id, art_id) DO UPDATE SET position = EXCLUDED.position";
+    
     private final CollectionArtRepository collectionArtRepository;
     private final CollectionRepository collectionRepository;
     private final ArtRepository artRepository;
-    private final ArtService artService;
+    private final ArtDtoAssembler artDtoAssembler;
+    private final ArtCounterService artCounterService;
+    private final JdbcTemplate jdbcTemplate;
     
     public CollectionArtService(CollectionArtRepository collectionArtRepository,
                               CollectionRepository collectionRepository,
                               ArtRepository artRepository,
-                              ArtService artService) {
+                              ArtDtoAssembler artDtoAssembler,
+                              ArtCounterService artCounterService,
+                              JdbcTemplate jdbcTemplate) {
         this.collectionArtRepository = collectionArtRepository;
         this.collectionRepository = collectionRepository;
         this.artRepository = artRepository;
-        this.artService = artService;
+        this.artDtoAssembler = artDtoAssembler;
+        this.artCounterService = artCounterService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Коллекции, заполненные до появления position, получают порядок по saved_at — один раз:
+    // после нумерации коллекция помечается, и позиция 0 (арт, перенесенный в начало) ее не сбрасывает
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializePositions() {
+        try {
+            int updated = collectionArtRepository.backfillPositions();
+            collectionRepository.markPositionsInitialized();
+            if (updated > 0) {
+                log.info("Assigned positions to {} existing collection items", updated);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not backfill collection item positions: {}", e.getMessage());
+        }
     }
     
     public CollectionArtDto addArtToCollection(Long collectionId, Long artId) {
@@ -64,10 +105,13 @@ public class CollectionArtService {
         }
         
         CollectionArt collectionArt = new CollectionArt(collection, art);
+        collectionArt.setPosition(nextPosition(collectionId));
         CollectionArt savedCollectionArt = collectionArtRepository.save(collectionArt);
+        artCounterService.collectionSaveAdded(artId);
         
         if (collection.getCoverImageUrl() == null || collection.getCoverImageUrl().isEmpty()) {
             collection.setCoverImageUrl(art.getImageUrl());
+            collection.setCoverUploaded(false);
             collectionRepository.save(collection);
             log.info("Set cover image for collection {} from art {}", collectionId, artId);
         }
@@ -78,52 +122,131 @@ public class CollectionArtService {
     public void removeArtFromCollection(Long collectionId, Long artId) {
         log.info("Removing art {} from collection {}", artId, collectionId);
         
-        if (!collectionArtRepository.existsByCollectionIdAndArtId(collectionId, artId)) {
+        if (collectionArtRepository.deleteByCollectionIdAndArtIdIn(collectionId, List.of(artId)) == 0) {
             log.warn("Art {} not found in collection {}", artId, collectionId);
             return;
         }
         
-        collectionArtRepository.deleteByCollectionIdAndArtId(collectionId, artId);
-        updateCollectionCoverIfNeeded(collectionId);
+        artCounterService.collectionSaveRemoved(artId);
+        collectionRepository.replaceCoverOfRemovedArts(collectionId, List.of(artId));
     }
     
     public void removeAllArtsFromCollection(Long collectionId) {
         log.info("Removing all arts from collection {}", collectionId);
         
-        Long count = collectionArtRepository.countByCollectionId(collectionId);
+        List<Long> artIds = collectionArtRepository.findArtIdsByCollectionId(collectionId);
         collectionArtRepository.deleteByCollectionId(collectionId);
+        artIds.forEach(artCounterService::collectionSaveRemoved);
         
         Collection collection = collectionRepository.findById(collectionId)
                 .orElseThrow(() -> new RuntimeException("Collection not found with id: " + collectionId));
         
-        collection.setCoverImageUrl(null);
-        collectionRepository.save(collection);
+        // Загруженная обложка не зависит от артов и остается
+        if (!collection.isCoverUploaded()) {
+            collection.setCoverImageUrl(null);
+            collectionRepository.save(collection);
+        }
         
-        log.info("Removed {} arts from collection {}", count, collectionId);
+        log.info("Removed {} arts from collection {}", artIds.size(), collectionId);
     }
     
-    private void updateCollectionCoverIfNeeded(Long collectionId) {
-        Collection collection = collectionRepository.findById(collectionId)
-                .orElseThrow(() -> new RuntimeException("Collection not found with id: " + collectionId));
+    /**
+     * Перестановка нескольких артов в коллекцию toCollectionId сразу после afterArtId
+     * (null — в начало), в переданном порядке. Если fromCollectionId указан и отличается
+     * от целевой, арты переносятся из нее. Новые позиции берутся в промежутке между
+     * якорем и следующим артом и записываются одним batch-запросом.
+     *
+     * @return число переставленных артов
+     */
+    public int moveArts(Long fromCollectionId, Long toCollectionId, List<Long> artIds, Long afterArtId) {
+        if (toCollectionId == null || artIds == null || artIds.isEmpty()) {
+            throw new RuntimeException("Target collection and arts are required");
+        }
         
-        if (collection.getCoverImageUrl() == null) {
-            return;
+        Set<Long> moving = new LinkedHashSet<>(artIds);
+        boolean transfer = fromCollectionId != null && !fromCollectionId.equals(toCollectionId);
+        log.info("Moving {} arts from collection {} to collection {} after art {}",
+                moving.size(), fromCollectionId, toCollectionId, afterArtId);
+        
+        Collection target = collectionRepository.findById(toCollectionId)
+                .orElseThrow(() -> new RuntimeException("Collection not found with id: " + toCollectionId));
+        
+        Set<Long> alreadyInTarget = new HashSet<>(
+                collectionArtRepository.findArtIdsByCollectionIdAndArtIdIn(toCollectionId, moving));
+        if (transfer) {
+            Collection source = collectionRepository.findById(fromCollectionId)
+                    .orElseThrow(() -> new RuntimeException("Collection not found with id: " + fromCollectionId));
+            if (!source.getUser().getId().equals(target.getUser().getId())) {
+                throw new RuntimeException("Arts can only be moved between collections of the same user");
+            }
+        } else if (alreadyInTarget.size() != moving.size()) {
+            throw new RuntimeException("Art not found in collection");
         }
         
-        List<CollectionArt> arts = collectionArtRepository.findByCollectionId(collectionId);
+        double[] positions = allocatePositions(toCollectionId, afterArtId, moving);
+        if (positions == null) {
+            collectionArtRepository.rebalancePositions(toCollectionId);
+            positions = allocatePositions(toCollectionId, afterArtId, moving);
+        }
         
-        if (arts.isEmpty()) {
-            collection.setCoverImageUrl(null);
-            collectionRepository.save(collection);
-            log.info("Reset cover image for collection {}", collectionId);
-        } else {
-            String newCoverUrl = arts.get(0).getArt().getImageUrl();
-            if (!newCoverUrl.equals(collection.getCoverImageUrl())) {
-                collection.setCoverImageUrl(newCoverUrl);
-                collectionRepository.save(collection);
-                log.info("Updated cover image for collection {}", collectionId);
+        if (transfer) {
+            // Откат транзакции, если какого-то арта в исходной коллекции не было
+            if (collectionArtRepository.deleteByCollectionIdAndArtIdIn(fromCollectionId, moving) != moving.size()) {
+                throw new RuntimeException("Art not found in source collection");
             }
+            // Сохранение в целевой остается, а из исходной убрано — счетчик уменьшается
+            alreadyInTarget.forEach(artCounterService::collectionSaveRemoved);
+            collectionRepository.replaceCoverOfRemovedArts(fromCollectionId, moving);
+        }
+        
+        List<Object[]> batch = new ArrayList<>(moving.size());
+        int index = 0;
+        for (Long artId : moving) {
+            batch.add(transfer
+                    ? new Object[] { toCollectionId, artId, positions[index++] }
+                    : new Object[] { positions[index++], toCollectionId, artId });
         }
+        jdbcTemplate.batchUpdate(transfer ? UPSERT_POSITION_SQL : UPDATE_POSITION_SQL, batch);
+        
+        collectionRepository.refreshCoverFromFirstArt(toCollectionId);
+        return moving.size();
+    }
+    
+    // Позиция в конце коллекции
+    private double nextPosition(Long collectionId) {
+        Double max = collectionArtRepository.findMaxPosition(collectionId);
+        return (max != null ? max : 0) + CollectionArt.POSITION_GAP;
+    }
+    
+    // Равномерно распределенные позиции между якорем и следующим артом; null — места не хватило.
+    // Перед первым артом позиции уходят ниже его, в том числе в ноль и отрицательные значения
+    private double[] allocatePositions(Long collectionId, Long afterArtId, Set<Long> moving) {
+        Double lower = null;
+        if (afterArtId != null) {
+            if (moving.contains(afterArtId)) {
+                throw new RuntimeException("Anchor art cannot be one of the moved arts");
+            }
+            lower = collectionArtRepository.findPosition(collectionId, afterArtId)
+                    .orElseThrow(() -> new RuntimeException("Anchor art not found in collection"));
+        }
+        
+        Double upper = lower != null
+                ? collectionArtRepository.findNextPosition(collectionId, lower, moving)
+                : collectionArtRepository.findFirstPosition(collectionId, moving);
+        
+        int slots = moving.size() + 1;
+        double from = lower != null ? lower : (upper != null ? upper - CollectionArt.POSITION_GAP * slots : 0);
+        double to = upper != null ? upper : from + CollectionArt.POSITION_GAP * slots;
+        double step = (to - from) / slots;
+        if (step < MIN_POSITION_STEP) {
+            return null;
+        }
+        
+        double[] positions = new double[moving.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = from + step * (i + 1);
+        }
+        return positions;
     }
     
     @Transactional(readOnly = true)
@@ -131,11 +254,10 @@ public class CollectionArtService {
         Page<CollectionArt> collectionArtsPage = collectionArtRepository.findByCollectionIdAndArtStatus(
             collectionId, ArtStatus.ACTIVE, pageable);
         
-        List<ArtDto> artDtos = collectionArtsPage.getContent().stream()
+        List<ArtDto> artDtos = artDtoAssembler.toDtos(collectionArtsPage.getContent().stream()
                 .map(CollectionArt::getArt)
                 .filter(art -> art != null)
-                .map(art -> artService.convertToDto(art))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
         
         return new PageImpl<>(artDtos, pageable, collectionArtsPage.getTotalElements());
     }
@@ -153,7 +275,7 @@ public class CollectionArtService {
     
     @Transactional(readOnly = true)
     public Page<CollectionArtDto> getCollectionArtDtosByCollectionId(Long collectionId, Pageable pageable) {
-        Page<CollectionArt> collectionArtsPage = collectionArtRepository.findByCollectionId(collectionId, pageable);
+        Page<CollectionArt> collectionArtsPage = collectionArtRepository.findByCollectionIdOrderByPositionAsc(collectionId, pageable);
         
         List<CollectionArtDto> dtos = collectionArtsPage.getContent().stream()
                 .map(CollectionArtDto::new)
@@ -164,17 +286,16 @@ public class CollectionArtService {
     
     @Transactional(readOnly = true)
     public List<ArtDto> getAllArtsByCollectionId(Long collectionId) {
-        List<CollectionArt> collectionArts = collectionArtRepository.findByCollectionId(collectionId);
+        List<CollectionArt> collectionArts = collectionArtRepository.findByCollectionIdOrderByPositionAsc(collectionId);
         
         if (collectionArts == null || collectionArts.isEmpty()) {
             return Collections.emptyList();
         }
         
-        return collectionArts.stream()
+        return artDtoAssembler.toDtos(collectionArts.stream()
                 .map(CollectionArt::getArt)
                 .filter(art -> art != null && art.getStatus() == ArtStatus.ACTIVE)
-                .map(artService::convertToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
     
     @Transactional(readOnly = true)
@@ -187,7 +308,7 @@ public class CollectionArtService {
     
     @Transactional(readOnly = true)
     public List<CollectionArtDto> getCollectionArtDtosByCollectionId(Long collectionId) {
-        List<CollectionArt> collectionArts = collectionArtRepository.findByCollectionId(collectionId);
+        List<CollectionArt> collectionArts = collectionArtRepository.findByCollectionIdOrderByPositionAsc(collectionId);
         return collectionArts.stream()
                 .map(CollectionArtDto::new)
                 .collect(Collectors.toList());
@@ -198,6 +319,35 @@ public class CollectionArtService {
         return collectionArtRepository.countByCollectionIdAndArtStatus(collectionId, ArtStatus.ACTIVE);
     }
     
+    // Число ACTIVE артов по каждой коллекции; коллекций без артов в карте нет
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getArtCountsByCollectionIds(java.util.Collection<Long> collectionIds) {
+        if (collectionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : collectionArtRepository.countByCollectionIdsAndArtStatus(collectionIds, ArtStatus.ACTIVE)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+    
+    // Первые limit превью (thumbnail или оригинал) по каждой коллекции
+    @Transactional(readOnly = true)
+    public Map<Long, List<String>> getPreviewImagesByCollectionIds(java.util.Collection<Long> collectionIds, int limit) {
+        if (collectionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Map<Long, List<String>> previews = new HashMap<>();
+        for (Object[] row : collectionArtRepository.findPreviewImages(collectionIds, limit)) {
+            Long collectionId = ((Number) row[0]).longValue();
+            previews.computeIfAbsent(collectionId, id -> new ArrayList<>()).add((String) row[1]);
+        }
+        return previews;
+    }
+    
     @Transactional(readOnly = true)
     public boolean existsByCollectionIdAndArtId(Long collectionId, Long artId) {
         return collectionArtRepository.existsByCollectionIdAndArtId(collectionId, artId);
@@ -216,8 +366,9 @@ public class CollectionArtService {
             throw new RuntimeException("Art already exists in target collection");
         }
         
-        collectionArtRepository.deleteByCollectionIdAndArtId(fromCollectionId, artId);
-        updateCollectionCoverIfNeeded(fromCollectionId);
+        collectionArtRepository.deleteByCollectionIdAndArtIdIn(fromCollectionId, List.of(artId));
+        artCounterService.collectionSaveRemoved(artId);
+        collectionRepository.replaceCoverOfRemovedArts(fromCollectionId, List.of(artId));
         addArtToCollection(toCollectionId, artId);
     }
     
@@ -4,6 +4,7 @@ import com.example.artship.social.dto.ArtDto;
 import com.example.artship.social.dto.CollectionDto;
 import com.example.artship.social.model.Collection;
 import com.example.artship.social.model.User;
+import com.example.artship.social.model.enumclass.CollectionKind;
 import com.example.artship.social.repository.CollectionRepository;
 import com.example.artship.social.repository.UserRepository;
 import org.slf4j.Logger;
@@ -16,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -25,18 +27,22 @@ public class CollectionService {
     
     private static final Logger log = LoggerFactory.getLogger(CollectionService.class);
 
-    private static final String LIKED_COLLECTION_NAME = "Понравившиеся";
-    
+    // Картинок в мозаике на карточке коллекции
+    private static final int PREVIEW_SIZE = 4;
+
     private final CollectionRepository collectionRepository;
     private final UserRepository userRepository;
     private final CollectionArtService collectionArtService;
+    private final LocalFileStorageService fileStorageService;
     
     public CollectionService(CollectionRepository collectionRepository, 
                            UserRepository userRepository,
-                           CollectionArtService collectionArtService) {
+                           CollectionArtService collectionArtService,
+                           LocalFileStorageService fileStorageService) {
         this.collectionRepository = collectionRepository;
         this.userRepository = userRepository;
         this.collectionArtService = collectionArtService;
+        this.fileStorageService = fileStorageService;
     }
     
     // Создание коллекции
@@ -55,6 +61,7 @@ public class CollectionService {
         collection.setDescription(description);
         collection.setIsPublic(isPublic != null ? isPublic : true);
         collection.setCoverImageUrl(coverImageUrl);
+        collection.setCoverUploaded(coverImageUrl != null); // передается только загруженная обложка
         
         Collection savedCollection = collectionRepository.save(collection);
         log.info("Collection created with ID: {}", savedCollection.getId());
@@ -72,7 +79,7 @@ public class CollectionService {
     @Transactional(readOnly = true)
     public Optional<CollectionDto> getCollectionDtoById(Long id) {
         return collectionRepository.findById(id)
-                .map(this::convertToDtoWithoutArts);
+                .map(collection -> toSummaryDtos(List.of(collection)).get(0));
     }
     
     // Получение DTO коллекции по ID С артами
@@ -91,6 +98,7 @@ public class CollectionService {
                     dto.setDescription(collection.getDescription());
                     dto.setIsPublic(collection.getIsPublic());
                     dto.setCoverImageUrl(collection.getCoverImageUrl());
+                    dto.setKind(collection.getKind());
                     dto.setCreatedAt(collection.getCreatedAt());
                     dto.setUserId(collection.getUser() != null ? collection.getUser().getId() : null);
                     dto.setUsername(collection.getUser() != null ? collection.getUser().getUsername() : null);
@@ -125,8 +133,17 @@ public class CollectionService {
             collection.setIsPublic(isPublic);
         }
         
+        // coverImageUrl — только что загруженная обложка; ссылку на прежнюю отпускаем,
+        // если она тоже была загружена, а не взята из арта
         if (coverImageUrl != null) {
-            collection.setCoverImageUrl(coverImageUrl);
+            if (collection.isCoverUploaded() && coverImageUrl.equals(collection.getCoverImageUrl())) {
+                // Тот же файл загружен повторно — лишняя ссылка от новой загрузки
+                fileStorageService.deleteFile(coverImageUrl);
+            } else {
+                releaseUploadedCover(collection);
+                collection.setCoverImageUrl(coverImageUrl);
+                collection.setCoverUploaded(true);
+            }
         }
         
         Collection updatedCollection = collectionRepository.save(collection);
@@ -142,17 +159,24 @@ public class CollectionService {
         Collection collection = collectionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Collection not found with id: " + id));
         
-        if (LIKED_COLLECTION_NAME.equals(collection.getTitle())) {
+        if (collection.getKind() == CollectionKind.LIKED) {
             throw new RuntimeException("Cannot delete the 'Liked' collection. This is a system collection.");
         }
         
         collectionArtService.removeAllArtsFromCollection(id);
+        releaseUploadedCover(collection);
         collectionRepository.delete(collection);
         
         log.info("Collection {} deleted successfully", id);
     }
         
     
+    private void releaseUploadedCover(Collection collection) {
+        if (collection.isCoverUploaded() && collection.getCoverImageUrl() != null) {
+            fileStorageService.deleteFile(collection.getCoverImageUrl());
+        }
+    }
+    
     // Коллекции пользователя (с пагинацией)
     @Transactional(readOnly = true)
     public Page<CollectionDto> getCollectionsByUserId(Long userId, Pageable pageable) {
@@ -161,9 +185,7 @@ public class CollectionService {
         
         Page<Collection> collectionsPage = collectionRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
         
-        List<CollectionDto> dtos = collectionsPage.getContent().stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        List<CollectionDto> dtos = toSummaryDtos(collectionsPage.getContent());
         
         return new PageImpl<>(dtos, pageable, collectionsPage.getTotalElements());
     }
@@ -176,9 +198,7 @@ public class CollectionService {
         
         Page<Collection> collectionsPage = collectionRepository.findByUserIdAndIsPublicTrueOrderByCreatedAtDesc(userId, pageable);
         
-        List<CollectionDto> dtos = collectionsPage.getContent().stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        List<CollectionDto> dtos = toSummaryDtos(collectionsPage.getContent());
         
         return new PageImpl<>(dtos, pageable, collectionsPage.getTotalElements());
     }
@@ -191,9 +211,7 @@ public class CollectionService {
         
         Page<Collection> collectionsPage = collectionRepository.findByIsPublicTrueOrderByCreatedAtDesc(pageable);
         
-        List<CollectionDto> dtos = collectionsPage.getContent().stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        List<CollectionDto> dtos = toSummaryDtos(collectionsPage.getContent());
         
         return new PageImpl<>(dtos, pageable, collectionsPage.getTotalElements());
     }
@@ -206,68 +224,29 @@ public class CollectionService {
         
         Page<Collection> collectionsPage = collectionRepository.searchPublicCollections(query, pageable);
         
-        List<CollectionDto> dtos = collectionsPage.getContent().stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        List<CollectionDto> dtos = toSummaryDtos(collectionsPage.getContent());
         
         return new PageImpl<>(dtos, pageable, collectionsPage.getTotalElements());
     }
     
     @Transactional(readOnly = true)
     public List<CollectionDto> getCollectionsByUserId(Long userId) {
-        return collectionRepository.findByUserId(userId).stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        return toSummaryDtos(collectionRepository.findByUserId(userId));
     }
     
     @Transactional(readOnly = true)
     public List<CollectionDto> getPublicCollectionsByUserId(Long userId) {
-        return collectionRepository.findByUserIdAndIsPublicTrueOrderByCreatedAtDesc(userId).stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        return toSummaryDtos(collectionRepository.findByUserIdAndIsPublicTrueOrderByCreatedAtDesc(userId));
     }
     
     @Transactional(readOnly = true)
     public List<CollectionDto> getPublicCollections() {
-        return collectionRepository.findByIsPublicTrueOrderByCreatedAtDesc().stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
+        return toSummaryDtos(collectionRepository.findByIsPublicTrueOrderByCreatedAtDesc());
     }
     
     @Transactional(readOnly = true)
     public List<CollectionDto> searchPublicCollections(String query) {
-        return collectionRepository.searchPublicCollections(query).stream()
-                .map(this::convertToDtoWithoutArts)
-                .collect(Collectors.toList());
-    }
-    
-    // Коллекции пользователя С артами
-    @Transactional(readOnly = true)
-    public List<CollectionDto> getCollectionsWithArtsByUserId(Long userId) {
-        log.debug("Getting collections with arts for user {}", userId);
-        
-        List<Collection> collections = collectionRepository.findByUserId(userId);
-        
-        return collections.stream()
-                .map(collection -> {
-                    // Используем метод без пагинации
-                    List<ArtDto> arts = collectionArtService.getAllArtsByCollectionId(collection.getId());
-                    
-                    CollectionDto dto = new CollectionDto();
-                    dto.setId(collection.getId());
-                    dto.setTitle(collection.getTitle());
-                    dto.setDescription(collection.getDescription());
-                    dto.setIsPublic(collection.getIsPublic());
-                    dto.setCoverImageUrl(collection.getCoverImageUrl());
-                    dto.setCreatedAt(collection.getCreatedAt());
-                    dto.setUserId(collection.getUser() != null ? collection.getUser().getId() : null);
-                    dto.setUsername(collection.getUser() != null ? collection.getUser().getUsername() : null);
-                    dto.setArtCount(arts.size());
-                    dto.setArts(arts);
-                    
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        return toSummaryDtos(collectionRepository.searchPublicCollections(query));
     }
     
     // Проверка прав доступа
@@ -297,22 +276,34 @@ public class CollectionService {
         log.info("Successfully deleted {} collections for user ID: {}", userCollections.size(), userId);
     }
     
-    private CollectionDto convertToDtoWithoutArts(Collection collection) {
-        CollectionDto dto = new CollectionDto();
-        dto.setId(collection.getId());
-        dto.setTitle(collection.getTitle());
-        dto.setDescription(collection.getDescription());
-        dto.setIsPublic(collection.getIsPublic());
-        dto.setCoverImageUrl(collection.getCoverImageUrl());
-        dto.setCreatedAt(collection.getCreatedAt());
-        dto.setUserId(collection.getUser() != null ? collection.getUser().getId() : null);
-        dto.setUsername(collection.getUser() != null ? collection.getUser().getUsername() : null);
-        
-        Long artCount = collectionArtService.getArtCountByCollectionId(collection.getId());
-        dto.setArtCount(artCount != null ? artCount.intValue() : 0);
-        dto.setArts(Collections.emptyList());
+    /**
+     * DTO для списков: вместо артов — число видимых артов и первые картинки.
+     * Для всей страницы два запроса (групповой COUNT и «первые N в каждой
+     * коллекции» через ROW_NUMBER), независимо от числа коллекций.
+     */
+    private List<CollectionDto> toSummaryDtos(List<Collection> collections) {
+        List<Long> ids = collections.stream().map(Collection::getId).collect(Collectors.toList());
+        Map<Long, Long> artCounts = collectionArtService.getArtCountsByCollectionIds(ids);
+        Map<Long, List<String>> previews = collectionArtService.getPreviewImagesByCollectionIds(ids, PREVIEW_SIZE);
         
-        return dto;
+        return collections.stream()
+                .map(collection -> {
+                    CollectionDto dto = new CollectionDto();
+                    dto.setId(collection.getId());
+                    dto.setTitle(collection.getTitle());
+                    dto.setDescription(collection.getDescription());
+                    dto.setIsPublic(collection.getIsPublic());
+                    dto.setCoverImageUrl(collection.getCoverImageUrl());
+                    dto.setKind(collection.getKind());
+                    dto.setCreatedAt(collection.getCreatedAt());
+                    dto.setUserId(collection.getUser() != null ? collection.getUser().getId() : null);
+                    dto.setUsername(collection.getUser() != null ? collection.getUser().getUsername() : null);
+                    dto.setArtCount(artCounts.getOrDefault(collection.getId(), 0L).intValue());
+                    dto.setPreviewImages(previews.getOrDefault(collection.getId(), Collections.emptyList()));
+                    dto.setArts(Collections.emptyList());
+                    return dto;
+                })
+                .collect(Collectors.toList());
     }
     
     private CollectionDto convertToDtoWithArts(Collection collection) {
@@ -326,6 +317,7 @@ public class CollectionService {
         dto.setDescription(collection.getDescription());
         dto.setIsPublic(collection.getIsPublic());
         dto.setCoverImageUrl(collection.getCoverImageUrl());
+        dto.setKind(collection.getKind());
         dto.setCreatedAt(collection.getCreatedAt());
         dto.setUserId(collection.getUser() != null ? collection.getUser().getId() : null);
         dto.setUsername(collection.getUser() != null ? collection.getUser().getUsername() : null);
@@ -3,6 +3,7 @@ package com.example.artship.social.service;
 import com.example.artship.social.model.Comment;
 import com.example.artship.social.model.CommentLikes;
 import com.example.artship.social.model.User;
+import com.example.artship.social.model.enumclass.ArtStatus;
 import com.example.artship.social.repository.CommentLikesRepository;
 import com.example.artship.social.repository.CommentRepository;
 import com.example.artship.social.repository.UserRepository;
@@ -41,6 +42,7 @@ public class CommentLikeService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         Comment comment = commentRepository.findById(commentId)
+                .filter(found -> found.getArt().getStatus() != ArtStatus.DELETED_BY_USER)
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         
         CommentLikes like = new CommentLikes(user, comment);
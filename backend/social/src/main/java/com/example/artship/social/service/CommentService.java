@@ -3,13 +3,10 @@ package com.example.artship.social.service;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,6 +15,7 @@ import com.example.artship.social.dto.CommentDto;
 import com.example.artship.social.model.Art;
 import com.example.artship.social.model.Comment;
 import com.example.artship.social.model.User;
+import com.example.artship.social.model.enumclass.ArtStatus;
 import com.example.artship.social.repository.ArtRepository;
 import com.example.artship.social.repository.CommentRepository;
 import com.example.artship.social.repository.UserRepository;
@@ -28,19 +26,28 @@ public class CommentService {
     
     private static final Logger log = LoggerFactory.getLogger(CommentService.class);
     
+    // Сколько первых ответов показывать под каждым корневым комментарием
+    private static final int REPLIES_PREVIEW_SIZE = 3;
+    
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final ArtRepository artRepository;
     private final CommentLikeService commentLikeService;  // ← Добавить
+    private final ArtCounterService artCounterService;
+    private final CommentThreadLoader commentThreadLoader;
     
     public CommentService(CommentRepository commentRepository, 
                          UserRepository userRepository, 
                          ArtRepository artRepository,
-                         CommentLikeService commentLikeService) {  // ← Добавить
+                         CommentLikeService commentLikeService,  // ← Добавить
+                         ArtCounterService artCounterService,
+                         CommentThreadLoader commentThreadLoader) {
         this.commentRepository = commentRepository;
         this.userRepository = userRepository;
         this.artRepository = artRepository;
         this.commentLikeService = commentLikeService;
+        this.artCounterService = artCounterService;
+        this.commentThreadLoader = commentThreadLoader;
     }
 
     public Optional<Comment> getCommentEntityById(Long id) {
@@ -60,6 +67,7 @@ public class CommentService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
         
         Art art = artRepository.findById(artId)
+                .filter(found -> found.getStatus() != ArtStatus.DELETED_BY_USER)
                 .orElseThrow(() -> new RuntimeException("Art not found with id: " + artId));
 
         Comment comment = new Comment();
@@ -80,6 +88,7 @@ public class CommentService {
         }
         
         Comment savedComment = commentRepository.save(comment);
+        artCounterService.commentAdded(artId);
         log.info("Comment created successfully with ID: {}", savedComment.getId());
         
         return convertToDto(savedComment, null);
@@ -127,14 +136,17 @@ public class CommentService {
     public void deleteComment(Long id) {
         log.info("Deleting comment with ID: {}", id);
         
-        if (!commentRepository.existsById(id)) {
-            throw new RuntimeException("Comment not found with id: " + id);
-        }
+        Comment comment = commentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Comment not found with id: " + id));
+        Long artId = comment.getArt() != null ? comment.getArt().getId() : null;
         
         // Удаляем лайки комментария
         commentLikeService.deleteAllLikesByCommentId(id);
         
-        commentRepository.deleteById(id);
+        commentRepository.delete(comment);
+        if (artId != null) {
+            artCounterService.commentRemoved(artId);
+        }
         log.info("Comment {} deleted successfully", id);
     }
     
@@ -144,23 +156,7 @@ public class CommentService {
         log.debug("Getting root comments with replies for art ID: {} with pagination: page={}, size={}", 
                  artId, pageable.getPageNumber(), pageable.getPageSize());
         
-        Page<Comment> rootCommentsPage = commentRepository.findRootCommentsByArtId(artId, pageable);
-        
-        List<CommentDto> dtos = rootCommentsPage.getContent().stream()
-                .map(rootComment -> {
-                    CommentDto dto = convertToDto(rootComment, currentUserId);
-                    
-                    Pageable repliesPageable = PageRequest.of(0, 3); 
-                    Page<CommentDto> replies = getRepliesByCommentId(rootComment.getId(), repliesPageable, currentUserId);
-                    dto.setReplies(replies.getContent());
-                    dto.setTotalReplies(commentRepository.countByParentCommentId(rootComment.getId()));
-                    dto.setReplyCount(replies.getContent().size());
-                    
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(dtos, pageable, rootCommentsPage.getTotalElements());
+        return commentThreadLoader.loadThreads(artId, pageable, REPLIES_PREVIEW_SIZE, currentUserId);
     }
     
     // Получение ответов на комментарий (с пагинацией)
@@ -169,13 +165,8 @@ public class CommentService {
         log.debug("Getting replies for comment ID: {} with pagination: page={}, size={}", 
                  commentId, pageable.getPageNumber(), pageable.getPageSize());
         
-        Page<Comment> repliesPage = commentRepository.findRepliesByParentCommentId(commentId, pageable);
-        
-        List<CommentDto> dtos = repliesPage.getContent().stream()
-                .map(reply -> convertToDto(reply, currentUserId))
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(dtos, pageable, repliesPage.getTotalElements());
+        Page<Comment> repliesPage = commentRepository.findRepliesWithUserByParentCommentId(commentId, pageable);
+        return commentThreadLoader.toDtoPage(repliesPage, currentUserId);
     }
     
     // Получение комментариев пользователя (с пагинацией)
@@ -185,12 +176,7 @@ public class CommentService {
                  userId, pageable.getPageNumber(), pageable.getPageSize());
         
         Page<Comment> commentsPage = commentRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
-        
-        List<CommentDto> dtos = commentsPage.getContent().stream()
-                .map(comment -> convertToDto(comment, currentUserId))
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(dtos, pageable, commentsPage.getTotalElements());
+        return commentThreadLoader.toDtoPage(commentsPage, currentUserId);
     }
     
     @Transactional(readOnly = true)
@@ -223,6 +209,9 @@ public class CommentService {
         for (Comment comment : comments) {
             commentLikeService.deleteAllLikesByCommentId(comment.getId());
         }
+        for (Object[] row : commentRepository.countPerArtByUserId(userId)) {
+            artCounterService.commentsRemoved((Long) row[0], (Long) row[1]);
+        }
         commentRepository.deleteByUserId(userId);
     }
         
@@ -0,0 +1,127 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.dto.CommentDto;
+import com.example.artship.social.model.Comment;
+import com.example.artship.social.repository.CommentLikesRepository;
+import com.example.artship.social.repository.CommentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Загрузка веток комментариев фиксированным числом запросов на страницу:
+ * корни, первые ответы на все корни (ROW_NUMBER по parent), количество ответов,
+ * количество лайков и лайки текущего пользователя — по одному запросу.
+ */
+@Service
+@Transactional(readOnly = true)
+public class CommentThreadLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentThreadLoader.class);
+
+    private final CommentRepository commentRepository;
+    private final CommentLikesRepository commentLikesRepository;
+
+    public CommentThreadLoader(CommentRepository commentRepository,
+                               CommentLikesRepository commentLikesRepository) {
+        this.commentRepository = commentRepository;
+        this.commentLikesRepository = commentLikesRepository;
+    }
+
+    public Page<CommentDto> loadThreads(Long artId, Pageable pageable, int repliesPerRoot, Long currentUserId) {
+        Page<Comment> rootsPage = commentRepository.findRootCommentsWithUserByArtId(artId, pageable);
+        List<Comment> roots = rootsPage.getContent();
+        if (roots.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, rootsPage.getTotalElements());
+        }
+
+        List<Long> rootIds = roots.stream().map(Comment::getId).collect(Collectors.toList());
+
+        List<Comment> replies = Collections.emptyList();
+        if (repliesPerRoot > 0) {
+            List<Long> replyIds = commentRepository.findFirstReplyIdsByParentIds(rootIds, repliesPerRoot);
+            if (!replyIds.isEmpty()) {
+                replies = commentRepository.findAllWithUserByIdIn(replyIds);
+            }
+        }
+
+        Map<Long, Long> replyCounts = toCountMap(commentRepository.countRepliesByParentIds(rootIds));
+
+        List<Comment> all = new ArrayList<>(roots.size() + replies.size());
+        all.addAll(roots);
+        all.addAll(replies);
+        Map<Long, CommentDto> dtos = toDtoMap(all, currentUserId);
+
+        Map<Long, List<CommentDto>> repliesByRoot = new HashMap<>();
+        for (Comment reply : replies) {
+            // getId() у lazy-прокси родителя не инициализирует его
+            repliesByRoot.computeIfAbsent(reply.getParentComment().getId(), id -> new ArrayList<>())
+                    .add(dtos.get(reply.getId()));
+        }
+
+        List<CommentDto> result = new ArrayList<>(roots.size());
+        for (Comment root : roots) {
+            CommentDto dto = dtos.get(root.getId());
+            List<CommentDto> rootReplies = repliesByRoot.getOrDefault(root.getId(), Collections.emptyList());
+            dto.setReplies(rootReplies);
+            dto.setReplyCount(rootReplies.size());
+            dto.setTotalReplies(replyCounts.getOrDefault(root.getId(), 0L));
+            result.add(dto);
+        }
+
+        log.debug("Loaded {} comment threads with {} replies for art {}", roots.size(), replies.size(), artId);
+        return new PageImpl<>(result, pageable, rootsPage.getTotalElements());
+    }
+
+    public Page<CommentDto> toDtoPage(Page<Comment> comments, Long currentUserId) {
+        return new PageImpl<>(toDtos(comments.getContent(), currentUserId),
+                comments.getPageable(), comments.getTotalElements());
+    }
+
+    public List<CommentDto> toDtos(List<Comment> comments, Long currentUserId) {
+        Map<Long, CommentDto> dtos = toDtoMap(comments, currentUserId);
+        return comments.stream().map(comment -> dtos.get(comment.getId())).collect(Collectors.toList());
+    }
+
+    private Map<Long, CommentDto> toDtoMap(List<Comment> comments, Long currentUserId) {
+        if (comments.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> ids = comments.stream().map(Comment::getId).collect(Collectors.toList());
+        Map<Long, Long> likeCounts = toCountMap(commentLikesRepository.countByCommentIds(ids));
+        Set<Long> liked = currentUserId != null
+                ? new HashSet<>(commentLikesRepository.findLikedCommentIds(currentUserId, ids))
+                : Collections.emptySet();
+
+        Map<Long, CommentDto> dtos = new HashMap<>();
+        for (Comment comment : comments) {
+            CommentDto dto = new CommentDto(comment);
+            dto.setLikesCount(likeCounts.getOrDefault(comment.getId(), 0L));
+            dto.setLikedByCurrentUser(liked.contains(comment.getId()));
+            dtos.put(comment.getId(), dto);
+        }
+        return dtos;
+    }
+
+    private static Map<Long, Long> toCountMap(List<Object[]> rows) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.mongo.OutboundEmail;
+import com.example.artship.social.repository.mongo.OutboundEmailRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отправка писем из очереди outbound_emails.
+ *
+ * Письма забираются атомарным findAndModify (PENDING → SENDING с блокировкой
+ * по времени), поэтому несколько инстансов могут разбирать одну очередь.
+ * Число одновременных отправок ограничено числом воркеров. При ошибке письмо
+ * возвращается в PENDING с экспоненциальной задержкой, после max-attempts
+ * попыток помечается DEAD и больше не отправляется.
+ *
+ * Если отправка выключена (app.email.enabled=false) или JavaMailSender
+ * не настроен, письмо только пишется в лог — этот режим заменяет SMTP
+ * в локальном окружении и тестах. Для проверки настоящей отправки
+ * в docker-compose есть mailpit (профиль mail).
+ */
+@Service
+public class EmailDispatcher {
+    
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcher.class);
+    
+    private static final int MAX_ERROR_LENGTH = 500;
+    
+    private final MongoTemplate mongoTemplate;
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final ExecutorService senderPool;
+    private final Semaphore freeWorkers;
+    private final int workers;
+    
+    @Autowired(required = false)
+    private JavaMailSender mailSender;
+    
+    @Value("${app.email.from:noreply@artship.com}")
+    private String fromEmail;
+    
+    @Value("${app.email.enabled:true}")
+    private boolean emailEnabled;
+    
+    @Value("${app.email.queue.max-attempts:6}")
+    private int maxAttempts;
+    
+    @Value("${app.email.queue.backoff-base-ms:30000}")
+    private long backoffBaseMs;
+    
+    @Value("${app.email.queue.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+    
+    @Value("${app.email.queue.lock-timeout-ms:120000}")
+    private long lockTimeoutMs;
+    
+    @Value("${app.email.queue.sent-retention-days:7}")
+    private int sentRetentionDays;
+    
+    // Метрики с момента старта инстанса
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder sendLatencyTotalMs = new LongAdder();
+    private final LongAccumulator sendLatencyMaxMs = new LongAccumulator(Math::max, 0);
+    
+    public EmailDispatcher(MongoTemplate mongoTemplate,
+                           OutboundEmailRepository outboundEmailRepository,
+                           @Value("${app.email.queue.workers:4}") int workers) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.workers = workers;
+        this.freeWorkers = new Semaphore(workers);
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senderPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // claimNext, выборки DEAD для админки и очистка отправленных
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        mongoTemplate.indexOps(OutboundEmail.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("nextAttemptAt", Sort.Direction.ASC)
+                .named("status_next_attempt"));
+        mongoTemplate.indexOps(OutboundEmail.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("lockedUntil", Sort.Direction.ASC)
+                .named("status_locked_until"));
+        mongoTemplate.indexOps(OutboundEmail.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.DESC)
+                .named("status_created_at"));
+        mongoTemplate.indexOps(OutboundEmail.class).createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("sentAt", Sort.Direction.ASC)
+                .named("status_sent_at"));
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Недоотправленные письма останутся в SENDING и будут взяты повторно по истечении блокировки
+        senderPool.shutdown();
+        senderPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    public void enqueue(OutboundEmail email) {
+        outboundEmailRepository.insert(email);
+        log.debug("Email to {} queued: {}", email.getTo(), email.getSubject());
+    }
+    
+    /**
+     * Забирает письма, пока есть свободные воркеры и готовые к отправке письма.
+     */
+    @Scheduled(fixedDelayString = "${app.email.queue.poll-interval-ms:1000}")
+    public void drain() {
+        while (freeWorkers.tryAcquire()) {
+            OutboundEmail email;
+            try {
+                email = claimNext();
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.warn("Could not poll email queue: {}", e.getMessage());
+                return;
+            }
+            
+            if (email == null) {
+                freeWorkers.release();
+                return;
+            }
+            
+            senderPool.execute(() -> {
+                try {
+                    deliver(email);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+    
+    // Удаление давно отправленных писем; DEAD остаются для разбора
+    @Scheduled(cron = "${app.email.queue.cleanup-cron:0 0 4 * * ?}")
+    public void purgeSent() {
+        outboundEmailRepository.deleteByStatusAndSentAtBefore(
+                OutboundEmail.Status.SENT, LocalDateTime.now().minusDays(sentRetentionDays));
+    }
+    
+    public Map<String, Object> getStats() {
+        long sent = sentCount.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboundEmailRepository.countByStatus(OutboundEmail.Status.PENDING));
+        stats.put("sending", outboundEmailRepository.countByStatus(OutboundEmail.Status.SENDING));
+        stats.put("dead", outboundEmailRepository.countByStatus(OutboundEmail.Status.DEAD));
+        stats.put("busyWorkers", workers - freeWorkers.availablePermits());
+        stats.put("workers", workers);
+        stats.put("sent", sent);
+        stats.put("failedAttempts", failedAttempts.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("avgSendLatencyMs", sent > 0 ? sendLatencyTotalMs.sum() / sent : 0);
+        stats.put("maxSendLatencyMs", sendLatencyMaxMs.get());
+        return stats;
+    }
+    
+    private OutboundEmail claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(OutboundEmail.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(OutboundEmail.Status.SENDING).and("lockedUntil").lte(now)))
+                .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+        
+        Update update = new Update()
+                .set("status", OutboundEmail.Status.SENDING)
+                .set("lockedUntil", now.plusNanos(lockTimeoutMs * 1_000_000))
+                .inc("attempts", 1);
+        
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), OutboundEmail.class);
+    }
+    
+    private void deliver(OutboundEmail email) {
+        long started = System.nanoTime();
+        try {
+            send(email);
+            
+            long latencyMs = (System.nanoTime() - started) / 1_000_000;
+            sentCount.increment();
+            sendLatencyTotalMs.add(latencyMs);
+            sendLatencyMaxMs.accumulate(latencyMs);
+            
+            update(email, new Update()
+                    .set("status", OutboundEmail.Status.SENT)
+                    .set("sentAt", LocalDateTime.now())
+                    .unset("lockedUntil")
+                    .unset("lastError"));
+            log.info("✅ Email sent to {} in {} ms: {}", email.getTo(), latencyMs, email.getSubject());
+            
+        } catch (Exception e) {
+            failedAttempts.increment();
+            String error = truncate(e.getMessage());
+            
+            if (email.getAttempts() >= maxAttempts) {
+                deadLettered.increment();
+                update(email, new Update()
+                        .set("status", OutboundEmail.Status.DEAD)
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.error("❌ Email to {} dead-lettered after {} attempts: {}",
+                        email.getTo(), email.getAttempts(), error);
+            } else {
+                long delayMs = backoffMs(email.getAttempts());
+                update(email, new Update()
+                        .set("status", OutboundEmail.Status.PENDING)
+                        .set("nextAttemptAt", LocalDateTime.now().plusNanos(delayMs * 1_000_000))
+                        .set("lastError", error)
+                        .unset("lockedUntil"));
+                log.warn("Email to {} failed (attempt {}/{}), retry in {} ms: {}",
+                        email.getTo(), email.getAttempts(), maxAttempts, delayMs, error);
+            }
+        }
+    }
+    
+    private void send(OutboundEmail email) {
+        if (!emailEnabled || mailSender == null) {
+            log.info("=== EMAIL WOULD BE SENT (email sending disabled or mailSender is null) ===");
+            log.info("To: {}", email.getTo());
+            log.info("Subject: {}", email.getSubject());
+            log.info("{}", email.getBody());
+            log.info("================================================================");
+            return;
+        }
+        
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(fromEmail);
+        message.setTo(email.getTo());
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        mailSender.send(message);
+    }
+    
+    // Обновление только если письмо все еще за нами (блокировка не истекла и его не забрал другой воркер)
+    private void update(OutboundEmail email, Update update) {
+        Query query = new Query(Criteria.where("_id").is(email.getId())
+                .and("status").is(OutboundEmail.Status.SENDING)
+                .and("attempts").is(email.getAttempts()));
+        mongoTemplate.updateFirst(query, update, OutboundEmail.class);
+    }
+    
+    // base * 2^(attempt-1), не больше max, с разбросом ±20% чтобы повторы не шли пачкой
+    private long backoffMs(int attempt) {
+        long delay = backoffBaseMs << Math.min(attempt - 1, 20);
+        delay = Math.min(delay, backoffMaxMs);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+    
+    private static String truncate(String message) {
+        if (message == null) {
+            return "unknown error";
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.repository.ArtRepository;
+import com.example.artship.social.repository.FeedEntryRepository;
+import com.example.artship.social.repository.FollowRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Материализованная лента подписок (fan-out on write).
+ * Арты обычных авторов рассылаются в feed_entries подписчиков при публикации,
+ * арты авторов с большим числом подписчиков подмешиваются при чтении (pull).
+ *
+ * Кто из авторов "знаменитость", решает только кэш celebrityAuthorIds, который
+ * пересчитывается в maintain(): публикация и подписка не считают подписчиков.
+ * Автор, переваливший порог между пересчетами, до следующего пересчета еще
+ * рассылается — его арты в ленте и в pull-части схлопываются при слиянии.
+ */
+@Service
+@Transactional
+public class FeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedService.class);
+
+    private static final Comparator<Art> NEWEST_FIRST = Comparator
+            .comparing(Art::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Art::getId, Comparator.reverseOrder());
+
+    private final FeedEntryRepository feedEntryRepository;
+    private final FollowRepository followRepository;
+    private final ArtRepository artRepository;
+
+    @Value("${feed.max-entries-per-user:1000}")
+    private int maxEntriesPerUser;
+
+    @Value("${feed.celebrity-follower-threshold:10000}")
+    private long celebrityFollowerThreshold;
+
+    private volatile Set<Long> celebrityAuthorIds = Set.of();
+
+    public FeedService(FeedEntryRepository feedEntryRepository,
+                       FollowRepository followRepository,
+                       ArtRepository artRepository) {
+        this.feedEntryRepository = feedEntryRepository;
+        this.followRepository = followRepository;
+        this.artRepository = artRepository;
+    }
+
+    // Арт стал видимым в лентах (создан, восстановлен, сделан публичным)
+    public void onArtPublished(Art art) {
+        if (art == null || art.getAuthor() == null || !isFeedVisible(art)) {
+            return;
+        }
+
+        Long authorId = art.getAuthor().getId();
+        if (isCelebrity(authorId)) {
+            log.debug("Author {} is served in pull mode, skipping fan-out of art {}", authorId, art.getId());
+            return;
+        }
+
+        int inserted = feedEntryRepository.fanOutToFollowers(art.getId(), authorId, art.getCreatedAt());
+        log.debug("Fanned out art {} to {} feeds", art.getId(), inserted);
+    }
+
+    // Арт больше не должен показываться в лентах (скрыт, забанен, удален)
+    public void onArtWithdrawn(Long artId) {
+        int removed = feedEntryRepository.deleteByArtId(artId);
+        log.debug("Removed art {} from {} feeds", artId, removed);
+    }
+
+    // То же для массовой модерации — один DELETE на порцию артов
+    public void onArtsWithdrawn(java.util.Collection<Long> artIds) {
+        if (artIds.isEmpty()) {
+            return;
+        }
+        int removed = feedEntryRepository.deleteByArtIdIn(artIds);
+        log.debug("Removed {} arts from {} feed entries", artIds.size(), removed);
+    }
+
+    // Синхронизация после изменения статуса или приватности арта
+    public void onArtChanged(Art art) {
+        if (isFeedVisible(art)) {
+            onArtPublished(art);
+        } else {
+            onArtWithdrawn(art.getId());
+        }
+    }
+
+    public void onFollow(Long followerId, Long followingId) {
+        if (isCelebrity(followingId)) {
+            return;
+        }
+        int inserted = feedEntryRepository.backfillFromAuthor(followerId, followingId, maxEntriesPerUser);
+        log.debug("Backfilled {} arts of author {} into feed of user {}", inserted, followingId, followerId);
+    }
+
+    public void onUnfollow(Long followerId, Long followingId) {
+        int removed = feedEntryRepository.deleteByUserIdAndAuthorId(followerId, followingId);
+        log.debug("Removed {} arts of author {} from feed of user {}", removed, followingId, followerId);
+    }
+
+    public void onUserDeleted(Long userId) {
+        feedEntryRepository.deleteAllForUser(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<Art> getFeed(Long userId, Pageable pageable) {
+        long windowEnd = pageable.getOffset() + pageable.getPageSize();
+
+        // Глубже материализованного окна лента не хранится — читаем по графу подписок
+        if (windowEnd > maxEntriesPerUser) {
+            return artRepository.findFeedByUserIdAndStatus(userId, ArtStatus.ACTIVE, pageable);
+        }
+
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+
+        List<Long> followedCelebrities = findFollowedCelebrities(userId);
+
+        if (followedCelebrities.isEmpty()) {
+            return feedEntryRepository.findFeedArts(userId, ArtStatus.ACTIVE, unsorted);
+        }
+
+        Pageable head = PageRequest.of(0, (int) windowEnd);
+        Page<Art> pushed = feedEntryRepository.findFeedArts(userId, ArtStatus.ACTIVE, head);
+        Page<Art> pulled = artRepository.findByAuthorIdInAndStatusAndIsPublicFlagTrue(
+                followedCelebrities, ArtStatus.ACTIVE, head);
+
+        List<Art> ordered = mergeNewestFirst(pushed.getContent(), pulled.getContent());
+
+        int from = (int) Math.min(pageable.getOffset(), ordered.size());
+        int to = (int) Math.min(windowEnd, ordered.size());
+
+        // Арты знаменитостей, попавшие и в feed_entries, mergeNewestFirst показывает один раз
+        long duplicated = feedEntryRepository.countFeedArtsByAuthors(userId, ArtStatus.ACTIVE, followedCelebrities);
+
+        return new PageImpl<>(ordered.subList(from, to), pageable,
+                pushed.getTotalElements() + pulled.getTotalElements() - duplicated);
+    }
+
+    // Keyset-чтение ленты: до limit артов строго после позиции (createdAt, id)
+    @Transactional(readOnly = true)
+    public List<Art> getFeedBefore(Long userId, LocalDateTime createdAt, Long id, int limit) {
+        Pageable head = PageRequest.of(0, limit);
+        List<Art> pushed = feedEntryRepository.findFeedArtsBefore(userId, ArtStatus.ACTIVE, createdAt, id, head);
+
+        // Материализованное окно обрезано и закончилось — продолжаем по графу подписок
+        if (pushed.size() < limit && feedEntryRepository.countByUserId(userId) >= maxEntriesPerUser) {
+            return artRepository.findFeedByUserIdAndStatusBefore(userId, ArtStatus.ACTIVE, createdAt, id, head);
+        }
+
+        List<Long> followedCelebrities = findFollowedCelebrities(userId);
+        if (followedCelebrities.isEmpty()) {
+            return pushed;
+        }
+
+        List<Art> pulled = artRepository.findByAuthorIdInAndStatusAndIsPublicFlagTrueBefore(
+                followedCelebrities, ArtStatus.ACTIVE, createdAt, id, head);
+
+        List<Art> merged = mergeNewestFirst(pushed, pulled);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        refreshCelebrities();
+
+        if (feedEntryRepository.count() == 0 && followRepository.count() > 0) {
+            int inserted = feedEntryRepository.rebuildAll(maxEntriesPerUser);
+            log.info("Built materialized feeds: {} entries", inserted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${feed.maintenance-interval-ms:600000}",
+               initialDelayString = "${feed.maintenance-interval-ms:600000}")
+    public void maintain() {
+        refreshCelebrities();
+
+        int trimmed = feedEntryRepository.trimToLimit(maxEntriesPerUser);
+        if (trimmed > 0) {
+            log.info("Trimmed {} feed entries over the per-user limit of {}", trimmed, maxEntriesPerUser);
+        }
+    }
+
+    private List<Long> findFollowedCelebrities(Long userId) {
+        Set<Long> celebrities = celebrityAuthorIds;
+        if (celebrities.isEmpty()) {
+            return List.of();
+        }
+        return followRepository.findFollowingIdsAmong(userId, new ArrayList<>(celebrities));
+    }
+
+    // Арты могли попасть в feed_entries до того, как автор стал "знаменитостью"
+    private List<Art> mergeNewestFirst(List<Art> pushed, List<Art> pulled) {
+        Map<Long, Art> merged = new LinkedHashMap<>();
+        pushed.forEach(art -> merged.put(art.getId(), art));
+        pulled.forEach(art -> merged.putIfAbsent(art.getId(), art));
+
+        List<Art> ordered = new ArrayList<>(merged.values());
+        ordered.sort(NEWEST_FIRST);
+        return ordered;
+    }
+
+    private void refreshCelebrities() {
+        celebrityAuthorIds = Set.copyOf(
+                followRepository.findFollowingIdsWithFollowerCountAtLeast(celebrityFollowerThreshold));
+        log.debug("Authors served in pull mode: {}", celebrityAuthorIds.size());
+    }
+
+    private boolean isCelebrity(Long authorId) {
+        return celebrityAuthorIds.contains(authorId);
+    }
+
+    private boolean isFeedVisible(Art art) {
+        return art.getStatus() == ArtStatus.ACTIVE && Boolean.TRUE.equals(art.getIsPublicFlag());
+    }
+}
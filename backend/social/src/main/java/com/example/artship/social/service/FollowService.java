@@ -24,10 +24,14 @@ public class FollowService {
     
     private final FollowRepository followRepository;
     private final UserRepository userRepository;
+    private final FeedService feedService;
     
-    public FollowService(FollowRepository followRepository, UserRepository userRepository) {
+    public FollowService(FollowRepository followRepository, 
+                         UserRepository userRepository,
+                         FeedService feedService) {
         this.followRepository = followRepository;
         this.userRepository = userRepository;
+        this.feedService = feedService;
     }
     
     // Подписка на пользователя
@@ -50,6 +54,7 @@ public class FollowService {
         
         Follow follow = new Follow(follower, following);
         Follow savedFollow = followRepository.save(follow);
+        feedService.onFollow(followerId, followingId);
         
         log.info("Follow created successfully: {} -> {}", 
                  follower.getUsername(), following.getUsername());
@@ -66,6 +71,7 @@ public class FollowService {
                     "Follow relationship not found: " + followerId + " -> " + followingId));
         
         followRepository.delete(follow);
+        feedService.onUnfollow(followerId, followingId);
         log.info("Unfollowed successfully: {} -> {}", followerId, followingId);
     }
     
@@ -240,6 +246,8 @@ public class FollowService {
     @Transactional
     public void deleteAllUserFollows(Long userId) {
         
+        feedService.onUserDeleted(userId);
+        
         followRepository.deleteByFollowerId(userId);
         
         followRepository.deleteByFollowingId(userId);
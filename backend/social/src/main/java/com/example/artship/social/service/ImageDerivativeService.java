@@ -0,0 +1,344 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.repository.ArtRepository;
+import com.example.artship.social.repository.UserRepository;
+import com.example.artship.social.security.UserPrincipalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновое построение уменьшенных копий загруженных изображений.
+ *
+ * Для артов строятся thumbnail и medium фиксированной ширины, для аватаров —
+ * только thumbnail. Обработка идет на ограниченном пуле с ограниченной очередью:
+ * при переполнении задача отбрасывается и позже подбирается backfill'ом,
+ * который понемногу обходит записи без копий (в том числе старые загрузки).
+ *
+ * Картинки уже не шире целевой ширины не масштабируются — вместо копии
+ * записывается URL оригинала. Так же помечаются внешние и нечитаемые файлы,
+ * чтобы backfill не возвращался к ним повторно.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private final ArtRepository artRepository;
+    private final UserRepository userRepository;
+    private final LocalFileStorageService fileStorageService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final ThreadPoolExecutor executor;
+
+    @Value("${images.derivatives.thumbnail-width:320}")
+    private int thumbnailWidth;
+
+    @Value("${images.derivatives.medium-width:960}")
+    private int mediumWidth;
+
+    @Value("${images.derivatives.avatar-width:160}")
+    private int avatarWidth;
+
+    @Value("${images.derivatives.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${images.backfill.batch-size:10}")
+    private int backfillBatchSize;
+
+    // Курсоры backfill'а: id последней обработанной записи
+    private volatile long artBackfillCursor;
+    private volatile long avatarBackfillCursor;
+
+    public ImageDerivativeService(ArtRepository artRepository,
+                                  UserRepository userRepository,
+                                  LocalFileStorageService fileStorageService,
+                                  UserPrincipalCache userPrincipalCache,
+                                  @Value("${images.derivatives.workers:2}") int workers,
+                                  @Value("${images.derivatives.queue-capacity:200}") int queueCapacity) {
+        this.artRepository = artRepository;
+        this.userRepository = userRepository;
+        this.fileStorageService = fileStorageService;
+        this.userPrincipalCache = userPrincipalCache;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                },
+                (task, pool) -> log.warn("Image derivative queue is full, task left for backfill"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== ЗАПУСК ОБРАБОТКИ ====================
+
+    public void onArtImageChanged(Long artId, String imageUrl) {
+        afterCommit(() -> executor.execute(() -> processArt(artId, imageUrl)));
+    }
+
+    public void onAvatarChanged(Long userId, String avatarUrl) {
+        if (avatarUrl == null) {
+            return;
+        }
+        afterCommit(() -> executor.execute(() -> processAvatar(userId, avatarUrl)));
+    }
+
+    /**
+     * Обработка записей без копий небольшими порциями. Новая порция ставится,
+     * только когда очередь пуста, чтобы backfill не задерживал свежие загрузки.
+     */
+    @Scheduled(fixedDelayString = "${images.backfill.interval-ms:30000}",
+               initialDelayString = "${images.backfill.interval-ms:30000}")
+    public void backfill() {
+        if (!executor.getQueue().isEmpty()) {
+            return;
+        }
+
+        PageRequest batch = PageRequest.of(0, backfillBatchSize);
+
+        List<Object[]> arts = artRepository.findImagesWithoutVariants(artBackfillCursor, batch);
+        for (Object[] row : arts) {
+            Long artId = (Long) row[0];
+            String imageUrl = (String) row[1];
+            executor.execute(() -> processArt(artId, imageUrl));
+            artBackfillCursor = artId;
+        }
+
+        List<Object[]> avatars = userRepository.findAvatarsWithoutThumbnail(avatarBackfillCursor, batch);
+        for (Object[] row : avatars) {
+            Long userId = (Long) row[0];
+            String avatarUrl = (String) row[1];
+            executor.execute(() -> processAvatar(userId, avatarUrl));
+            avatarBackfillCursor = userId;
+        }
+
+        // Проход завершен — следующий начнется сначала и подберет отброшенные задачи
+        if (arts.isEmpty()) {
+            artBackfillCursor = 0;
+        }
+        if (avatars.isEmpty()) {
+            avatarBackfillCursor = 0;
+        }
+
+        if (!arts.isEmpty() || !avatars.isEmpty()) {
+            log.debug("Image backfill queued {} arts and {} avatars", arts.size(), avatars.size());
+        }
+    }
+
+    // ==================== ОБРАБОТКА ====================
+
+    private void processArt(Long artId, String imageUrl) {
+        String thumbnailUrl = imageUrl;
+        String mediumUrl = imageUrl;
+
+        Path original = fileStorageService.resolveLocalFile(imageUrl);
+        if (original != null) {
+            try {
+                Source source = decode(original, mediumWidth);
+                if (source != null) {
+                    thumbnailUrl = writeDerivative(source, original, imageUrl, thumbnailWidth);
+                    mediumUrl = writeDerivative(source, original, imageUrl, mediumWidth);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not build derivatives for art {} ({}): {}", artId, imageUrl, e.getMessage());
+            }
+        }
+
+        artRepository.updateImageVariants(artId, imageUrl, thumbnailUrl, mediumUrl);
+    }
+
+    private void processAvatar(Long userId, String avatarUrl) {
+        String thumbnailUrl = avatarUrl;
+
+        Path original = fileStorageService.resolveLocalFile(avatarUrl);
+        if (original != null) {
+            try {
+                Source source = decode(original, avatarWidth);
+                if (source != null) {
+                    thumbnailUrl = writeDerivative(source, original, avatarUrl, avatarWidth);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not build avatar thumbnail for user {} ({}): {}", userId, avatarUrl, e.getMessage());
+            }
+        }
+
+        // Кэшированный User иначе отдавал бы avatarThumbnailUrl = null до истечения записи
+        if (userRepository.updateAvatarThumbnail(userId, avatarUrl, thumbnailUrl) > 0) {
+            afterCommit(() -> userPrincipalCache.invalidate(userId));
+        }
+    }
+
+    /**
+     * Декодирует изображение с прореживанием строк/столбцов, если оригинал
+     * намного шире нужного: полноразмерный 10MB-файл в память не поднимается.
+     * Возвращает null, если формат не поддерживается или файла нет.
+     */
+    private Source decode(Path file, int maxTargetWidth) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int originalWidth = reader.getWidth(0);
+                int subsampling = Math.max(1, originalWidth / (maxTargetWidth * 2));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Source(reader.read(0, param), originalWidth);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // URL копии нужной ширины или URL оригинала, если он не шире
+    private String writeDerivative(Source source, Path original, String originalUrl, int width)
+            throws IOException {
+        if (source.originalWidth <= width) {
+            return originalUrl;
+        }
+
+        boolean alpha = source.image.getColorModel().hasAlpha();
+        String extension = alpha ? "png" : "jpg";
+        String fileName = LocalFileStorageService.derivativeFileName(
+                original.getFileName().toString(), width, extension);
+        Path target = original.resolveSibling(fileName);
+
+        if (!Files.exists(target)) {
+            BufferedImage scaled = scale(source.image, width, alpha);
+            Path temp = Files.createTempFile(original.getParent(), ".derivative-", ".tmp");
+            try {
+                if (alpha) {
+                    ImageIO.write(scaled, "png", temp.toFile());
+                } else {
+                    writeJpeg(scaled, temp);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        return LocalFileStorageService.derivativeUrl(originalUrl, fileName);
+    }
+
+    // Уменьшение в несколько шагов вдвое: билинейная интерполяция за один шаг дает «лесенку»
+    private static BufferedImage scale(BufferedImage source, int targetWidth, boolean alpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = width == targetWidth ? targetHeight : Math.max(targetHeight, height / 2);
+
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!alpha) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, width, height);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width > targetWidth);
+
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Source {
+        final BufferedImage image;
+        // Ширина до прореживания, чтобы не увеличивать маленькие картинки
+        final int originalWidth;
+
+        Source(BufferedImage image, int originalWidth) {
+            this.image = image;
+            this.originalWidth = originalWidth;
+        }
+    }
+}
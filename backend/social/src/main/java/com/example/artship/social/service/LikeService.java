@@ -1,14 +1,11 @@
 package com.example.artship.social.service;
 
 import com.example.artship.social.dto.LikeDto;
-import com.example.artship.social.model.Art;
 import com.example.artship.social.model.ArtLikes;
-import com.example.artship.social.model.User;
-import com.example.artship.social.repository.ArtRepository;
 import com.example.artship.social.repository.LikeRepository;
-import com.example.artship.social.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -25,63 +22,49 @@ public class LikeService {
     private static final Logger log = LoggerFactory.getLogger(LikeService.class);
     
     private final LikeRepository likeRepository;
-    private final UserRepository userRepository;
-    private final ArtRepository artRepository;
     private final LikedArtService likedArtService;  
+    private final ArtCounterService artCounterService;
     
     public LikeService(LikeRepository likeRepository, 
-                       UserRepository userRepository, 
-                       ArtRepository artRepository,
-                       LikedArtService likedArtService) {
+                       LikedArtService likedArtService,
+                       ArtCounterService artCounterService) {
         this.likeRepository = likeRepository;
-        this.userRepository = userRepository;
-        this.artRepository = artRepository;
         this.likedArtService = likedArtService;
+        this.artCounterService = artCounterService;
     }
     
-    // Добавление лайка
-    public LikeDto addLike(Long userId, Long artId) {
-        log.info("User {} likes art {}", userId, artId);
-        
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
-        Art art = artRepository.findById(artId)
-                .orElseThrow(() -> new RuntimeException("Art not found with id: " + artId));
-        
-        if (likeRepository.existsByUserIdAndArtId(userId, artId)) {
-            throw new RuntimeException("Like already exists");
-        }
-        
-        ArtLikes like = new ArtLikes(user, art);
-        ArtLikes savedLike = likeRepository.save(like);
-        
+    /**
+     * Лайк одним INSERT ... ON CONFLICT DO NOTHING: повторный клик и гонка двух
+     * запросов не дают ошибки дубликата. Возвращает true, если лайк поставлен
+     * этим вызовом, false — если он уже был.
+     */
+    public boolean addLike(Long userId, Long artId) {
+        boolean added;
         try {
-            likedArtService.addArtToLiked(userId, artId);
-            log.info("Art {} automatically added to user {} liked collection", artId, userId);
-        } catch (RuntimeException e) {
-            log.warn("Could not add art to liked collection: {}", e.getMessage());
+            added = likeRepository.insertIfAbsent(userId, artId) > 0;
+        } catch (DataIntegrityViolationException e) {
+            // Нарушен внешний ключ — арта (или пользователя) нет
+            throw new RuntimeException("Art not found with id: " + artId);
         }
         
-        return new LikeDto(savedLike);
+        if (added) {
+            log.info("User {} likes art {}", userId, artId);
+            artCounterService.likeAdded(artId);
+            likedArtService.onLikeChanged(userId, artId);
+        }
+        return added;
     }
     
-    // Удаление лайка
-    public void removeLike(Long userId, Long artId) {
-        log.info("User {} unlikes art {}", userId, artId);
+    // Снятие лайка одним DELETE; true, если лайк был
+    public boolean removeLike(Long userId, Long artId) {
+        boolean removed = likeRepository.deleteByUserIdAndArtId(userId, artId) > 0;
         
-        if (!likeRepository.existsByUserIdAndArtId(userId, artId)) {
-            throw new RuntimeException("Like does not exist");
-        }
-        
-        likeRepository.deleteByUserIdAndArtId(userId, artId);
-        
-        // 👇 АВТОМАТИЧЕСКИ УДАЛЯЕМ ИЗ "ПОНРАВИВШИХСЯ"
-        try {
-            likedArtService.removeArtFromLiked(userId, artId);
-            log.info("Art {} automatically removed from user {} liked collection", artId, userId);
-        } catch (RuntimeException e) {
-            log.warn("Could not remove art from liked collection: {}", e.getMessage());
+        if (removed) {
+            log.info("User {} unlikes art {}", userId, artId);
+            artCounterService.likeRemoved(artId);
+            likedArtService.onLikeChanged(userId, artId);
         }
+        return removed;
     }
     
     // Проверка существования лайка
@@ -119,6 +102,9 @@ public class LikeService {
     public void deleteAllUserLikes(Long userId) {
         log.info("Deleting all likes for user ID: {}", userId);
         
+        for (Object[] row : likeRepository.countPerArtByUserId(userId)) {
+            artCounterService.likesRemoved((Long) row[0], (Long) row[1]);
+        }
         likeRepository.deleteByUserId(userId);
         
         try {
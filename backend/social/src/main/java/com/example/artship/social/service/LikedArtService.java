@@ -1,15 +1,34 @@
 package com.example.artship.social.service;
 
 import com.example.artship.social.dto.ArtDto;
-import com.example.artship.social.model.Collection;
-import com.example.artship.social.model.User;
+import com.example.artship.social.model.enumclass.CollectionKind;
+import com.example.artship.social.repository.CollectionArtRepository;
 import com.example.artship.social.repository.CollectionRepository;
+import com.example.artship.social.repository.LikeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class LikedArtService {
@@ -21,66 +40,156 @@ public class LikedArtService {
     private final CollectionService collectionService;
     private final CollectionArtService collectionArtService;
     private final CollectionRepository collectionRepository;
+    private final CollectionArtRepository collectionArtRepository;
+    private final LikeRepository likeRepository;
+    private final ArtCounterService artCounterService;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolExecutor executor;
+    
+    // userId -> id системной коллекции; id коллекции не меняется, пока она существует
+    private final Map<Long, Long> likedCollectionIds = new ConcurrentHashMap<>();
+    
+    @Value("${likes.liked-collection-cache.max-size:50000}")
+    private int cacheMaxSize;
     
     public LikedArtService(CollectionService collectionService,
                            CollectionArtService collectionArtService,
-                           CollectionRepository collectionRepository) {
+                           CollectionRepository collectionRepository,
+                           CollectionArtRepository collectionArtRepository,
+                           LikeRepository likeRepository,
+                           ArtCounterService artCounterService,
+                           TransactionTemplate transactionTemplate,
+                           JdbcTemplate jdbcTemplate,
+                           @Value("${likes.liked-sync.workers:2}") int workers,
+                           @Value("${likes.liked-sync.queue-capacity:1000}") int queueCapacity) {
         this.collectionService = collectionService;
         this.collectionArtService = collectionArtService;
         this.collectionRepository = collectionRepository;
+        this.collectionArtRepository = collectionArtRepository;
+        this.likeRepository = likeRepository;
+        this.artCounterService = artCounterService;
+        // Задача может выполниться и в afterCommit потока запроса, где прежняя транзакция
+        // еще привязана к потоку, поэтому всегда в новой
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jdbcTemplate = jdbcTemplate;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "liked-sync-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Очередь полна — синхронизация выполняется в потоке запроса: он замедляется,
+                // но обновление коллекции не теряется
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
     
-    //Получить или создать коллекцию "Понравившиеся" для пользователя
-    private Collection getOrCreateLikedCollection(Long userId) {
-        return collectionRepository.findByUserIdAndTitle(userId, LIKED_COLLECTION_NAME)
-            .orElseGet(() -> {
-                log.info("Creating 'Liked' collection for user ID: {}", userId);
-                return collectionRepository.save(
-                    new Collection(LIKED_COLLECTION_NAME, new User(userId))
-                );
-            });
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
     }
     
-    // Добавить арт в "Понравившиеся"
-    @Transactional
-    public void addArtToLiked(Long userId, Long artId) {
-        log.info("User {} likes art {}", userId, artId);
-        
-        Collection likedCollection = getOrCreateLikedCollection(userId);
-        
+    /**
+     * Таблица в коллекции уже есть (ddl-auto добавляет колонку kind), здесь —
+     * перенос старых коллекций, найденных по названию, и уникальный индекс
+     * "одна LIKED на пользователя", на котором держится атомарное создание.
+     * Из дубликатов, созданных гонкой первых лайков, системной становится самая ранняя.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSchema() {
         try {
-            collectionArtService.addArtToCollection(likedCollection.getId(), artId);
-            log.info("Art {} added to user {} liked collection", artId, userId);
-        } catch (RuntimeException e) {
-            if (e.getMessage().contains("already exists")) {
-                log.warn("Art {} already in liked collection", artId);
-                throw new RuntimeException("Art already liked");
+            int migrated = jdbcTemplate.update(
+                    "UPDATE collections c SET kind = 'LIKED' WHERE c.title = ? AND c.kind <> 'LIKED' " +
+                    "AND c.id = (SELECT min(d.id) FROM collections d WHERE d.user_id = c.user_id AND d.title = ?) " +
+                    "AND NOT EXISTS (SELECT 1 FROM collections e WHERE e.user_id = c.user_id AND e.kind = 'LIKED')",
+                    LIKED_COLLECTION_NAME, LIKED_COLLECTION_NAME);
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS ux_collections_liked_per_user " +
+                    "ON collections (user_id) WHERE kind = 'LIKED'");
+            if (migrated > 0) {
+                log.info("Marked {} existing collections as system 'Liked' collections", migrated);
             }
-            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Could not prepare liked collections schema: {}", e.getMessage());
         }
     }
     
-    // Удалить арт из "Понравившихся"
-    @Transactional
-    public void removeArtFromLiked(Long userId, Long artId) {
-        log.info("User {} unlikes art {}", userId, artId);
-        
-        Collection likedCollection = getOrCreateLikedCollection(userId);
+    // id коллекции "Понравившиеся", если она уже создана
+    private Optional<Long> findLikedCollectionId(Long userId) {
+        Long cached = likedCollectionIds.get(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         
-        if (collectionArtService.existsByCollectionIdAndArtId(likedCollection.getId(), artId)) {
-            collectionArtService.removeArtFromCollection(likedCollection.getId(), artId);
-            log.info("Art {} removed from user {} liked collection", artId, userId);
+        Optional<Long> collectionId = collectionRepository.findIdByUserIdAndKind(userId, CollectionKind.LIKED);
+        collectionId.ifPresent(id -> remember(userId, id));
+        return collectionId;
+    }
+    
+    // Получить или создать коллекцию "Понравившиеся": INSERT ... ON CONFLICT DO NOTHING и повторное чтение
+    private Long getOrCreateLikedCollectionId(Long userId) {
+        return findLikedCollectionId(userId).orElseGet(() -> {
+            if (collectionRepository.insertLikedIfAbsent(userId, LIKED_COLLECTION_NAME) > 0) {
+                log.info("Created 'Liked' collection for user ID: {}", userId);
+            }
+            Long collectionId = collectionRepository.findIdByUserIdAndKind(userId, CollectionKind.LIKED)
+                    .orElseThrow(() -> new RuntimeException("Liked collection not found for user: " + userId));
+            // В кэш только после коммита: при откате коллекции не будет
+            afterCommit(() -> remember(userId, collectionId));
+            return collectionId;
+        });
+    }
+    
+    public void evict(Long userId) {
+        likedCollectionIds.remove(userId);
+    }
+    
+    private void remember(Long userId, Long collectionId) {
+        if (likedCollectionIds.size() >= cacheMaxSize) {
+            likedCollectionIds.clear();
+        }
+        likedCollectionIds.put(userId, collectionId);
+    }
+    
+    /**
+     * Зеркалирование лайка в "Понравившиеся" после коммита, в фоне
+     * (если очередь переполнена — в потоке запроса).
+     * Задача не доверяет переданному действию, а сверяется с текущим состоянием
+     * лайка: быстрые like/unlike подряд могут выполниться в любом порядке,
+     * последняя задача все равно приведет коллекцию к итоговому состоянию.
+     */
+    public void onLikeChanged(Long userId, Long artId) {
+        afterCommit(() -> executor.execute(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> syncLiked(userId, artId));
+            } catch (RuntimeException e) {
+                log.warn("Could not sync liked collection of user {} for art {}: {}", userId, artId, e.getMessage());
+            }
+        }));
+    }
+    
+    private void syncLiked(Long userId, Long artId) {
+        if (likeRepository.existsByUserIdAndArtId(userId, artId)) {
+            Long collectionId = getOrCreateLikedCollectionId(userId);
+            if (collectionArtRepository.insertIfAbsent(collectionId, artId) > 0) {
+                artCounterService.collectionSaveAdded(artId);
+                collectionRepository.setCoverIfMissing(collectionId, artId);
+                log.debug("Art {} added to user {} liked collection", artId, userId);
+            }
         } else {
-            log.warn("Art {} not in liked collection", artId);
-            throw new RuntimeException("Art not in liked collection");
+            findLikedCollectionId(userId)
+                .ifPresent(collectionId -> collectionArtService.removeArtFromCollection(collectionId, artId));
         }
     }
     
     // Проверить, добавлен ли арт в "Понравившиеся"
     @Transactional(readOnly = true)
     public boolean isArtLikedByUser(Long userId, Long artId) {
-        return collectionRepository.findByUserIdAndTitle(userId, LIKED_COLLECTION_NAME)
-            .map(collection -> collectionArtService.existsByCollectionIdAndArtId(collection.getId(), artId))
+        return findLikedCollectionId(userId)
+            .map(collectionId -> collectionArtService.existsByCollectionIdAndArtId(collectionId, artId))
             .orElse(false);
     }
     
@@ -89,16 +198,16 @@ public class LikedArtService {
     public Page<ArtDto> getLikedArtsByUser(Long userId, Pageable pageable) {
         log.debug("Getting liked arts for user ID: {}", userId);
         
-        return collectionRepository.findByUserIdAndTitle(userId, LIKED_COLLECTION_NAME)
-            .map(collection -> collectionArtService.getArtsByCollectionId(collection.getId(), pageable))
+        return findLikedCollectionId(userId)
+            .map(collectionId -> collectionArtService.getArtsByCollectionId(collectionId, pageable))
             .orElse(Page.empty(pageable));
     }
     
     //Получить количество "Понравившихся" артов пользователя
     @Transactional(readOnly = true)
     public long getLikedArtsCount(Long userId) {
-        return collectionRepository.findByUserIdAndTitle(userId, LIKED_COLLECTION_NAME)
-            .map(collection -> collectionArtService.getArtCountByCollectionId(collection.getId()))
+        return findLikedCollectionId(userId)
+            .map(collectionId -> collectionArtService.getArtCountByCollectionId(collectionId))
             .orElse(0L);
     }
     
@@ -108,11 +217,25 @@ public class LikedArtService {
     public void deleteAllLikedArtsByUser(Long userId) {
         log.info("Deleting all liked arts for user ID: {}", userId);
         
-        collectionRepository.findByUserIdAndTitle(userId, LIKED_COLLECTION_NAME)
-            .ifPresent(collection -> {
-                collectionArtService.removeAllArtsFromCollection(collection.getId());
-                collectionRepository.delete(collection);
+        findLikedCollectionId(userId)
+            .ifPresent(collectionId -> {
+                collectionArtService.removeAllArtsFromCollection(collectionId);
+                collectionRepository.deleteById(collectionId);
+                afterCommit(() -> evict(userId));
                 log.info("Deleted liked collection for user ID: {}", userId);
             });
     }
-}
\ No newline at end of file
+    
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
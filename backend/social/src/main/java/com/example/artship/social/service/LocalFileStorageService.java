@@ -1,120 +1,455 @@
 package com.example.artship.social.service;
 
+import com.example.artship.social.repository.StoredBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Хранилище загрузок в uploads/images.
+ *
+ * Новые файлы адресуются по содержимому: SHA-256 считается при записи,
+ * файл кладется в ab/cd/abcd...{ext}, и повторная загрузка тех же байтов
+ * только увеличивает счетчик ссылок в stored_blobs. deleteFile уменьшает
+ * счетчик, а сам файл удаляется после коммита, когда ссылок не осталось.
+ *
+ * Загрузка, удаление файла и сборщик мусора для одного хэша сериализуются
+ * блокировкой строки stored_blobs, а не локами JVM: инстансов несколько,
+ * а uploads/images у них общий. Файл кладется и удаляется, пока строка
+ * заблокирована, поэтому параллельная загрузка того же содержимого на другом
+ * инстансе не может сослаться на файл, который сейчас удаляется.
+ *
+ * Старые загрузки (UUID-имена в корне директории) удаляются без счетчика,
+ * тоже после коммита. Файлы, на которые не осталось ссылок, убирает
+ * UploadGarbageCollector.
+ */
 @Service
 public class LocalFileStorageService {
-    
+
+    private static final String UPLOADS_URL_PREFIX = "/uploads/images/";
+    private static final String API_URL_PREFIX = "/api/files/images/";
+    private static final String DERIVATIVE_MARKER = "_w";
+
+    // ab/cd/{64 hex}{ext}
+    private static final Pattern BLOB_PATH = Pattern.compile("([0-9a-f]{2})/([0-9a-f]{2})/(\\1\\2[0-9a-f]{60})(\\.[a-z0-9]{1,10})?");
+
+    // Оригинал или уменьшенная копия в content-addressed хранилище: имя определяет содержимое
+    private static final Pattern CONTENT_ADDRESSED_PATH =
+            Pattern.compile("([0-9a-f]{2})/([0-9a-f]{2})/(\\1\\2[0-9a-f]{60}(?:_w[0-9]+)?)(\\.[a-z0-9]{1,10})?");
+
+    private static final int MAX_CACHED_HASHES = 10_000;
+
+    private static final Logger log = LoggerFactory.getLogger(LocalFileStorageService.class);
+
     private final Path uploadDir;
-    
-    public LocalFileStorageService() {
-        // Сохраняем в uploads/images/
-        this.uploadDir = Paths.get("uploads/images").toAbsolutePath().normalize();
-        
-        System.out.println("=== FILE STORAGE SERVICE INIT ===");
-        System.out.println("Upload directory: " + this.uploadDir);
-        System.out.println("Directory exists: " + Files.exists(this.uploadDir));
-        
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Удаление после коммита идет в новой транзакции: прежняя уже завершена
+    private final TransactionTemplate purgeTransactionTemplate;
+
+    // Хэши старых файлов для ETag: путь -> (размер, mtime, хэш)
+    private final Map<Path, CachedHash> legacyHashes = new ConcurrentHashMap<>();
+
+    public LocalFileStorageService(StoredBlobRepository storedBlobRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${uploads.images-dir:uploads/images}") String uploadDir) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.purgeTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.purgeTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+
         try {
             Files.createDirectories(this.uploadDir);
-            System.out.println("Directory created/verified");
-            
-            // Показываем файлы в директории для отладки
-            if (Files.exists(this.uploadDir)) {
-                System.out.println("Files in directory:");
-                Files.list(this.uploadDir)
-                     .limit(10)
-                     .forEach(path -> System.out.println("  - " + path.getFileName()));
-            }
+            log.info("Upload directory: {}", this.uploadDir);
         } catch (IOException e) {
             throw new RuntimeException("Не удалось создать директорию для загрузки файлов", e);
         }
     }
-    
+
+    /**
+     * Сохраняет файл и берет на него ссылку в stored_blobs. Если вызов идет внутри
+     * транзакции, ссылка откатывается вместе с ней; иначе вызывающий, не сохранивший
+     * запись с возвращенным URL, должен вернуть ссылку через deleteFile.
+     */
     public String uploadFile(MultipartFile file) {
+        Path tempFile = null;
         try {
             String originalFileName = file.getOriginalFilename();
-            String fileExtension = getFileExtension(originalFileName);
-            String fileName = UUID.randomUUID() + fileExtension;
-            
-            Path targetLocation = this.uploadDir.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            System.out.println("=== FILE UPLOADED ===");
-            System.out.println("Original filename: " + originalFileName);
-            System.out.println("Saved to: " + targetLocation);
-            System.out.println("File size: " + Files.size(targetLocation) + " bytes");
-            System.out.println("File exists: " + Files.exists(targetLocation));
-
-            return "/uploads/images/" + fileName;
-            
-        } catch (IOException ex) {
+            String fileExtension = getFileExtension(originalFileName).toLowerCase(Locale.ROOT);
+
+            // Хэш считается по ходу записи во временный файл, без второго чтения
+            tempFile = Files.createTempFile(this.uploadDir, ".upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            long size = Files.size(tempFile);
+            Path uploaded = tempFile;
+
+            // acquire блокирует строку до конца транзакции: файл кладется под этой блокировкой,
+            // а если положить его не удалось, счетчик откатывается
+            String blobPath = transactionTemplate.execute(status -> {
+                storedBlobRepository.acquire(hash, toBlobPath(hash, fileExtension), size);
+                String path = storedBlobRepository.findPathByHash(hash);
+                storeBlob(uploaded, this.uploadDir.resolve(path));
+                return path;
+            });
+
+            log.debug("Stored {} ({} bytes) as {}", originalFileName, size, blobPath);
+            return UPLOADS_URL_PREFIX + blobPath;
+
+        } catch (IOException | UncheckedIOException ex) {
             throw new RuntimeException("Не удалось сохранить файл: " + ex.getMessage(), ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("SHA-256 недоступен", ex);
+        } finally {
+            deleteTempFile(tempFile);
         }
     }
-    
+
     public void deleteFile(String fileUrl) {
         if (fileUrl == null || fileUrl.isEmpty()) {
             return;
         }
-        
+
         try {
-            String fileName = extractFileNameFromUrl(fileUrl);
-            if (fileName == null || fileName.isEmpty()) {
-                System.err.println("Cannot extract filename from URL: " + fileUrl);
+            String relativePath = extractRelativePath(fileUrl);
+            if (relativePath == null || relativePath.isEmpty()) {
+                log.warn("Cannot extract filename from URL: {}", fileUrl);
+                return;
+            }
+
+            Matcher blob = BLOB_PATH.matcher(relativePath);
+            if (blob.matches()) {
+                releaseBlob(blob.group(3));
                 return;
             }
-            
-            Path filePath = this.uploadDir.resolve(fileName);
-            
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-                System.out.println("File deleted: " + filePath);
+
+            Path filePath = this.uploadDir.resolve(relativePath).normalize();
+            if (!filePath.startsWith(this.uploadDir)) {
+                log.warn("Refusing to delete file outside upload directory: {}", fileUrl);
+                return;
+            }
+
+            // Старый файл тоже удаляется только после коммита: при откате ссылка на него остается
+            afterCommit(() -> deleteLegacyFile(filePath));
+
+        } catch (RuntimeException e) {
+            log.warn("Не удалось удалить файл {}: {}", fileUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * Удаление файла, на который не нашлось ссылок (UploadGarbageCollector).
+     * Файл не трогается, если менялся позже notModifiedSince: повторная загрузка
+     * того же содержимого обновляет mtime, и новая ссылка могла еще не попасть в БД.
+     * Возвращает число освобожденных байт.
+     */
+    public long deleteOrphan(Path file, Instant notModifiedSince) throws IOException {
+        if (!file.startsWith(this.uploadDir)) {
+            return 0;
+        }
+
+        Matcher blob = BLOB_PATH.matcher(toSlashPath(this.uploadDir.relativize(file)));
+        try {
+            if (!blob.matches()) {
+                return deleteIfNotModifiedSince(file, notModifiedSince);
+            }
+            if (!Files.isRegularFile(file)) {
+                return 0;
+            }
+
+            // Строка нужна и для файла без записи: ее блокировка не дает загрузке того же
+            // содержимого на другом инстансе сослаться на файл между проверкой mtime и удалением
+            String hash = blob.group(3);
+            long size = Files.size(file);
+            Long freed = purgeTransactionTemplate.execute(status -> {
+                boolean placeholder = storedBlobRepository.insertIfAbsent(hash, blob.group(0), size) > 0;
+                if (storedBlobRepository.lockByHash(hash) == null) {
+                    return 0L;
+                }
+                long deleted = deleteIfNotModifiedSince(file, notModifiedSince);
+                if (deleted > 0 || placeholder) {
+                    storedBlobRepository.deleteByHash(hash);
+                }
+                return deleted;
+            });
+            return freed != null ? freed : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Path getUploadDir() {
+        return uploadDir;
+    }
+
+    public boolean fileExists(String fileUrl) {
+        Path filePath = resolveLocalFile(fileUrl);
+        return filePath != null && Files.exists(filePath);
+    }
+
+    /**
+     * Путь к файлу на диске по URL загрузки; null для внешних URL
+     * и имен, выходящих за пределы директории загрузок.
+     */
+    public Path resolveLocalFile(String fileUrl) {
+        if (fileUrl == null || !(fileUrl.startsWith(UPLOADS_URL_PREFIX) || fileUrl.startsWith(API_URL_PREFIX))) {
+            return null;
+        }
+
+        String relativePath = extractRelativePath(fileUrl);
+        if (relativePath.isEmpty()) {
+            return null;
+        }
+
+        Path filePath = this.uploadDir.resolve(relativePath).normalize();
+        return filePath.startsWith(this.uploadDir) ? filePath : null;
+    }
+
+    /**
+     * Файл адресован по содержимому и никогда не меняется под тем же именем.
+     */
+    public boolean isContentAddressed(Path file) {
+        return file.startsWith(this.uploadDir)
+                && CONTENT_ADDRESSED_PATH.matcher(toSlashPath(this.uploadDir.relativize(file))).matches();
+    }
+
+    /**
+     * Идентификатор содержимого файла для ETag. Для content-addressed файлов
+     * берется из имени, для старых загрузок считается SHA-256 и кэшируется,
+     * пока не изменились размер и время модификации.
+     */
+    public String contentHash(Path file) throws IOException {
+        if (file.startsWith(this.uploadDir)) {
+            Matcher matcher = CONTENT_ADDRESSED_PATH.matcher(toSlashPath(this.uploadDir.relativize(file)));
+            if (matcher.matches()) {
+                return matcher.group(3);
+            }
+        }
+
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        CachedHash cached = legacyHashes.get(file);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached.hash;
+        }
+
+        String hash;
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, read);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+
+        if (legacyHashes.size() >= MAX_CACHED_HASHES) {
+            legacyHashes.clear();
+        }
+        legacyHashes.put(file, new CachedHash(size, modified, hash));
+        return hash;
+    }
+
+    /**
+     * Имя уменьшенной копии: {имя оригинала без расширения}_w{ширина}.{ext}.
+     * Копии лежат рядом с оригиналом и удаляются вместе с ним.
+     */
+    public static String derivativeFileName(String originalFileName, int width, String extension) {
+        int dot = originalFileName.lastIndexOf('.');
+        String baseName = dot > 0 ? originalFileName.substring(0, dot) : originalFileName;
+        return baseName + DERIVATIVE_MARKER + width + "." + extension;
+    }
+
+    // URL копии с тем же префиксом, что и у оригинала
+    public static String derivativeUrl(String originalUrl, String derivativeFileName) {
+        return originalUrl.substring(0, originalUrl.lastIndexOf('/') + 1) + derivativeFileName;
+    }
+
+    // Счетчик уменьшается в текущей транзакции; файл удаляется только после ее коммита
+    private void releaseBlob(String hash) {
+        storedBlobRepository.release(hash);
+        afterCommit(() -> purgeIfUnreferenced(hash));
+    }
+
+    // Вызывается под блокировкой строки stored_blobs этого хэша
+    private static void storeBlob(Path uploaded, Path targetLocation) {
+        try {
+            if (Files.exists(targetLocation)) {
+                // Свежий mtime защищает файл от сборщика, пока новая ссылка не сохранена
+                Files.setLastModifiedTime(targetLocation, FileTime.from(Instant.now()));
             } else {
-                System.out.println("File not found for deletion: " + filePath);
+                Files.createDirectories(targetLocation.getParent());
+                Files.move(uploaded, targetLocation, StandardCopyOption.ATOMIC_MOVE);
             }
-            
         } catch (IOException e) {
-            System.err.println("Не удалось удалить файл: " + e.getMessage());
+            throw new UncheckedIOException(e);
         }
     }
-    
-    public boolean fileExists(String fileUrl) {
-        if (fileUrl == null || fileUrl.isEmpty()) {
-            return false;
+
+    private void deleteLegacyFile(Path filePath) {
+        try {
+            if (Files.deleteIfExists(filePath)) {
+                log.debug("File deleted: {}", filePath);
+            } else {
+                log.debug("File not found for deletion: {}", filePath);
+            }
+
+            deleteDerivatives(filePath);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл {}: {}", filePath, e.getMessage());
         }
-        
-        String fileName = extractFileNameFromUrl(fileUrl);
-        if (fileName == null || fileName.isEmpty()) {
-            return false;
+    }
+
+    private static long deleteIfNotModifiedSince(Path file, Instant notModifiedSince) {
+        try {
+            if (!Files.isRegularFile(file)
+                    || Files.getLastModifiedTime(file).toInstant().isAfter(notModifiedSince)) {
+                return 0;
+            }
+            long size = Files.size(file);
+            return Files.deleteIfExists(file) ? size : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
-        
-        Path filePath = this.uploadDir.resolve(fileName);
-        return Files.exists(filePath);
     }
-    
+
+    // Проверка счетчика, удаление файла и строки — под блокировкой строки: загрузка того же
+    // содержимого ждет коммита и затем создает строку и файл заново
+    private void purgeIfUnreferenced(String hash) {
+        purgeTransactionTemplate.executeWithoutResult(status -> {
+            String blobPath = storedBlobRepository.lockUnreferenced(hash);
+            if (blobPath == null) {
+                return;
+            }
+
+            Path filePath = this.uploadDir.resolve(blobPath);
+            try {
+                Files.deleteIfExists(filePath);
+                deleteDerivatives(filePath);
+                log.debug("Blob deleted, no references left: {}", blobPath);
+            } catch (IOException e) {
+                // Строка остается с нулевым счетчиком: следующая загрузка положит файл заново
+                log.warn("Не удалось удалить файл {}: {}", blobPath, e.getMessage());
+                return;
+            }
+            storedBlobRepository.deleteByHash(hash);
+        });
+    }
+
+    private void deleteDerivatives(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+        try (DirectoryStream<Path> derivatives =
+                     Files.newDirectoryStream(file.getParent(), baseName + DERIVATIVE_MARKER + "*")) {
+            for (Path derivative : derivatives) {
+                Files.deleteIfExists(derivative);
+            }
+        }
+    }
+
+    private static String toSlashPath(Path relativePath) {
+        return relativePath.toString().replace('\\', '/');
+    }
+
+    private static String toBlobPath(String hash, String extension) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension;
+    }
+
+    private static void deleteTempFile(Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл: {}", e.getMessage());
+        }
+    }
+
     private String getFileExtension(String fileName) {
         if (fileName == null || !fileName.contains(".")) {
-            return ".jpg"; 
+            return ".jpg";
         }
-        return fileName.substring(fileName.lastIndexOf("."));
+        String extension = fileName.substring(fileName.lastIndexOf("."));
+        // Расширение попадает в путь на диске, поэтому только безопасные символы
+        return extension.matches("\\.[A-Za-z0-9]{1,10}") ? extension : ".jpg";
     }
-    
-    private String extractFileNameFromUrl(String fileUrl) {
+
+    // Путь внутри uploads/images: для ab/cd/hash.ext — с подкаталогами, для старых файлов — имя
+    private String extractRelativePath(String fileUrl) {
         if (fileUrl == null || fileUrl.isEmpty()) {
             return "";
         }
 
-        
+        for (String prefix : new String[] { UPLOADS_URL_PREFIX, API_URL_PREFIX }) {
+            int start = fileUrl.indexOf(prefix);
+            if (start >= 0) {
+                return fileUrl.substring(start + prefix.length());
+            }
+        }
+
         String[] parts = fileUrl.split("/");
         return parts[parts.length - 1];
     }
-}
\ No newline at end of file
+
+    private static final class CachedHash {
+        final long size;
+        final long modified;
+        final String hash;
+
+        CachedHash(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
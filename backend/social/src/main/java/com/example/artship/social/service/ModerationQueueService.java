@@ -0,0 +1,317 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.enumclass.ReportStatus;
+import com.example.artship.social.model.enumclass.ReportTargetType;
+import com.example.artship.social.model.mongo.ModerationTarget;
+import com.example.artship.social.model.mongo.Report;
+import com.example.artship.social.repository.mongo.ModerationTargetRepository;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Очередь модерации: по документу ModerationTarget на каждый объект, на который жалуются.
+ *
+ * Каждая жалоба — один атомарный upsert ($inc счетчиков, $addToSet причины), поэтому
+ * параллельные жалобы на популярный арт не теряют обновления. Дубликаты жалоб
+ * отсекает уникальный индекс reports (reporterId, targetType, targetId). Автоскрытие
+ * срабатывает ровно один раз: флаг autoHidden ставится условным updateFirst,
+ * и только вызов, который его изменил, скрывает контент.
+ *
+ * Страница очереди выбирается покрытым запросом: фильтр, сортировка и возвращаемый _id
+ * есть в индексе status_priority_last_reported_id, документы не читаются. Затем
+ * по найденным _id загружаются только документы этой страницы. Весь документ
+ * индекс покрыть не может: reasons — массив, а multikey-индекс не покрывающий.
+ */
+@Service
+public class ModerationQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModerationQueueService.class);
+
+    private static final int TITLE_MAX_LENGTH = 200;
+
+    private static final String REPORTER_TARGET_INDEX = "reporter_target_unique";
+
+    private static final String QUEUE_INDEX = "status_priority_last_reported_id";
+    // Прежний индекс без _id: запрос страницы по нему читал документы
+    private static final String LEGACY_QUEUE_INDEX = "status_priority_last_reported";
+
+    private static final Sort QUEUE_ORDER = Sort.by(Sort.Order.desc("priority"), Sort.Order.desc("lastReportedAt"),
+            Sort.Order.asc("_id"));
+
+    private final MongoTemplate mongoTemplate;
+    private final ModerationTargetRepository moderationTargetRepository;
+    private final long artAutoHideThreshold;
+    private final long commentAutoHideThreshold;
+
+    public ModerationQueueService(MongoTemplate mongoTemplate,
+                                  ModerationTargetRepository moderationTargetRepository,
+                                  @Value("${reports.auto-hide.art-threshold:10}") long artAutoHideThreshold,
+                                  @Value("${reports.auto-hide.comment-threshold:5}") long commentAutoHideThreshold) {
+        this.mongoTemplate = mongoTemplate;
+        this.moderationTargetRepository = moderationTargetRepository;
+        this.artAutoHideThreshold = artAutoHideThreshold;
+        this.commentAutoHideThreshold = commentAutoHideThreshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        IndexOperations queueIndexes = mongoTemplate.indexOps(ModerationTarget.class);
+        queueIndexes.createIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("priority", Sort.Direction.DESC)
+                .on("lastReportedAt", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.ASC)
+                .named(QUEUE_INDEX));
+        if (queueIndexes.getIndexInfo().stream().anyMatch(index -> LEGACY_QUEUE_INDEX.equals(index.getName()))) {
+            queueIndexes.dropIndex(LEGACY_QUEUE_INDEX);
+        }
+
+        // Без уникального индекса повторные жалобы проходят: ReportService полагается только на него
+        boolean uniqueIndexExists = mongoTemplate.indexOps(Report.class).getIndexInfo().stream()
+                .anyMatch(index -> REPORTER_TARGET_INDEX.equals(index.getName()));
+        if (!uniqueIndexExists) {
+            removeDuplicateReports();
+            try {
+                mongoTemplate.indexOps(Report.class).createIndex(new Index()
+                        .on("reporterId", Sort.Direction.ASC)
+                        .on("targetType", Sort.Direction.ASC)
+                        .on("targetId", Sort.Direction.ASC)
+                        .unique()
+                        .named(REPORTER_TARGET_INDEX));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Could not create unique index " + REPORTER_TARGET_INDEX
+                        + " on reports", e);
+            }
+        }
+
+        if (moderationTargetRepository.count() == 0 && mongoTemplate.estimatedCount(Report.class) > 0) {
+            backfill();
+        }
+    }
+
+    /**
+     * Учитывает новую жалобу в сводке объекта.
+     *
+     * @return true, если этим вызовом пройден порог автоскрытия и контент нужно скрыть
+     */
+    public boolean recordReport(ReportTargetType targetType, Long targetId, String reason,
+                                String title, String authorUsername) {
+        String id = ModerationTarget.idOf(targetType, targetId);
+        LocalDateTime now = LocalDateTime.now();
+
+        Update update = new Update()
+                .inc("reportCount", 1)
+                .inc("priority", 1)
+                .addToSet("reasons", reason)
+                .set("status", ReportStatus.PENDING)
+                .set("lastReportedAt", now)
+                .setOnInsert("targetType", targetType)
+                .setOnInsert("targetId", targetId)
+                .setOnInsert("title", truncate(title))
+                .setOnInsert("authorUsername", authorUsername)
+                .setOnInsert("autoHidden", false)
+                .setOnInsert("firstReportedAt", now);
+
+        ModerationTarget target = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), ModerationTarget.class);
+
+        long threshold = targetType == ReportTargetType.ART ? artAutoHideThreshold : commentAutoHideThreshold;
+        if (target == null || target.isAutoHidden() || target.getReportCount() < threshold) {
+            return false;
+        }
+
+        // Из нескольких параллельных жалоб, переваливших порог, флаг изменит только одна
+        Query unclaimed = Query.query(Criteria.where("_id").is(id).and("autoHidden").is(false));
+        return mongoTemplate.updateFirst(unclaimed,
+                new Update().set("autoHidden", true).set("autoHiddenAt", now),
+                ModerationTarget.class).getModifiedCount() == 1;
+    }
+
+    // Одна жалоба обработана: объект уходит из очереди, когда необработанных не осталось
+    public void onReportProcessed(ReportTargetType targetType, Long targetId, ReportStatus outcome) {
+        onReportsProcessed(targetType, targetId, 1, outcome);
+    }
+
+    public void onReportsProcessed(ReportTargetType targetType, Long targetId, int count, ReportStatus outcome) {
+        String id = ModerationTarget.idOf(targetType, targetId);
+
+        long decremented = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id).and("priority").gte(count)),
+                new Update().inc("priority", -count), ModerationTarget.class).getModifiedCount();
+        if (decremented == 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                    new Update().set("priority", 0), ModerationTarget.class);
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)
+                        .and("priority").lte(0)
+                        .and("status").is(ReportStatus.PENDING)),
+                new Update().set("status", outcome).set("resolvedAt", LocalDateTime.now()),
+                ModerationTarget.class);
+    }
+
+    // Контент удален — все жалобы на него закрываются разом
+    public void onTargetResolved(ReportTargetType targetType, Long targetId, String resolvedBy, String resolutionNote) {
+        LocalDateTime now = LocalDateTime.now();
+
+        mongoTemplate.updateMulti(Query.query(Criteria.where("targetType").is(targetType)
+                        .and("targetId").is(targetId)
+                        .and("status").in(ReportStatus.PENDING, ReportStatus.REVIEWED)),
+                new Update()
+                        .set("status", ReportStatus.RESOLVED)
+                        .set("resolvedBy", resolvedBy)
+                        .set("resolutionNote", resolutionNote)
+                        .set("resolvedAt", now)
+                        .set("updatedAt", now),
+                Report.class);
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(ModerationTarget.idOf(targetType, targetId))),
+                new Update().set("status", ReportStatus.RESOLVED).set("priority", 0).set("resolvedAt", now),
+                ModerationTarget.class);
+    }
+
+    // Сколько жалоб на объект уже было — чтение одного документа по _id
+    public long reportCountOf(ReportTargetType targetType, Long targetId) {
+        return moderationTargetRepository.findById(ModerationTarget.idOf(targetType, targetId))
+                .map(ModerationTarget::getReportCount)
+                .orElse(0L);
+    }
+
+    public Page<ModerationTarget> getQueue(ReportStatus status, Pageable pageable) {
+        Query byStatus = Query.query(Criteria.where("status").is(status));
+
+        // Только _id: запрос покрывается индексом QUEUE_INDEX
+        Query pageIds = Query.of(byStatus).with(QUEUE_ORDER).skip(pageable.getOffset()).limit(pageable.getPageSize());
+        pageIds.fields().include("_id");
+        pageIds.withHint(QUEUE_INDEX);
+        List<String> ids = mongoTemplate.find(pageIds, Document.class, mongoTemplate.getCollectionName(ModerationTarget.class))
+                .stream()
+                .map(document -> document.getString("_id"))
+                .toList();
+
+        Map<String, ModerationTarget> targets = mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)),
+                        ModerationTarget.class).stream()
+                .collect(Collectors.toMap(ModerationTarget::getId, Function.identity()));
+        List<ModerationTarget> content = ids.stream()
+                .map(targets::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        return new PageImpl<>(content, pageable, mongoTemplate.count(byStatus, ModerationTarget.class));
+    }
+
+    /**
+     * Однократное построение очереди из уже накопленных жалоб ($group + $merge на стороне Mongo).
+     */
+    private void backfill() {
+        long started = System.currentTimeMillis();
+
+        Document pending = new Document("$cond", List.of(
+                new Document("$in", List.of("$status", List.of(ReportStatus.PENDING.name(), ReportStatus.REVIEWED.name()))),
+                1, 0));
+        Document threshold = new Document("$cond", List.of(
+                new Document("$eq", List.of("$_id.targetType", ReportTargetType.ART.name())),
+                artAutoHideThreshold, commentAutoHideThreshold));
+
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", new Document("targetType", "$targetType")
+                                .append("targetId", "$targetId"))
+                        .append("reportCount", new Document("$sum", 1))
+                        .append("priority", new Document("$sum", pending))
+                        .append("reasons", new Document("$addToSet", "$reason"))
+                        .append("title", new Document("$first", new Document("$ifNull", List.of("$artTitle", "$commentText"))))
+                        .append("authorUsername", new Document("$first",
+                                new Document("$ifNull", List.of("$artAuthorUsername", "$commentAuthorUsername"))))
+                        .append("firstReportedAt", new Document("$min", "$createdAt"))
+                        .append("lastReportedAt", new Document("$max", "$createdAt"))
+                        .append("resolvedAt", new Document("$max", "$resolvedAt"))),
+                new Document("$project", new Document("_id", new Document("$concat", List.of(
+                                "$_id.targetType", ":", new Document("$toString", "$_id.targetId"))))
+                        .append("targetType", "$_id.targetType")
+                        .append("targetId", "$_id.targetId")
+                        .append("status", new Document("$cond", List.of(
+                                new Document("$gt", List.of("$priority", 0)),
+                                ReportStatus.PENDING.name(), ReportStatus.RESOLVED.name())))
+                        .append("reportCount", 1)
+                        .append("priority", 1)
+                        .append("reasons", 1)
+                        .append("title", 1)
+                        .append("authorUsername", 1)
+                        .append("autoHidden", new Document("$gte", List.of("$reportCount", threshold)))
+                        .append("firstReportedAt", 1)
+                        .append("lastReportedAt", 1)
+                        .append("resolvedAt", 1)),
+                new Document("$merge", new Document("into", mongoTemplate.getCollectionName(ModerationTarget.class))
+                        .append("on", "_id")
+                        .append("whenMatched", "keepExisting")
+                        .append("whenNotMatched", "insert")));
+
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Report.class))
+                .aggregate(pipeline)
+                .toCollection();
+
+        logger.info("Moderation queue built from existing reports in {} ms", System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Удаляет повторные жалобы одного пользователя на один объект, оставляя самую раннюю,
+     * и уменьшает reportCount в очереди на число удаленных. Выполняется один раз —
+     * до создания уникального индекса.
+     */
+    private void removeDuplicateReports() {
+        List<Document> pipeline = List.of(
+                new Document("$sort", new Document("createdAt", 1).append("_id", 1)),
+                new Document("$group", new Document("_id", new Document("reporterId", "$reporterId")
+                                .append("targetType", "$targetType")
+                                .append("targetId", "$targetId"))
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1))));
+
+        MongoCollection<Document> reports = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Report.class));
+        long removed = 0;
+        for (Document group : reports.aggregate(pipeline).allowDiskUse(true)) {
+            List<?> ids = group.getList("ids", Object.class);
+            List<?> duplicates = ids.subList(1, ids.size());
+            removed += reports.deleteMany(new Document("_id", new Document("$in", duplicates))).getDeletedCount();
+
+            Document key = group.get("_id", Document.class);
+            ReportTargetType targetType = ReportTargetType.valueOf(key.getString("targetType"));
+            Long targetId = ((Number) key.get("targetId")).longValue();
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(ModerationTarget.idOf(targetType, targetId))),
+                    new Update().inc("reportCount", -duplicates.size()),
+                    ModerationTarget.class);
+        }
+
+        if (removed > 0) {
+            logger.warn("Removed {} duplicate reports before creating {}", removed, REPORTER_TARGET_INDEX);
+        }
+    }
+
+    private static String truncate(String text) {
+        return text == null || text.length() <= TITLE_MAX_LENGTH ? text : text.substring(0, TITLE_MAX_LENGTH);
+    }
+}
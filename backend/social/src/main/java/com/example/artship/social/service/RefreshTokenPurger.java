@@ -0,0 +1,134 @@
+package com.example.artship.social.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Постепенное удаление истекших и давно отозванных refresh token.
+ *
+ * Вместо одного ночного DELETE по всей таблице каждые interval-ms удаляется
+ * не больше batches-per-run пачек по batch-size строк. Каждая пачка — отдельный
+ * короткий запрос в autocommit, строки берутся по индексу в порядке ключа
+ * (expiry_date или issued_at) от курсора, так что уже удаленные, но еще
+ * не вычищенные VACUUM записи индекса повторно не просматриваются. Курсор
+ * переносится между запусками и сбрасывается, когда проход дошел до конца.
+ *
+ * Отозванные токены хранятся revoked-retention-hours, но не меньше срока жизни
+ * refresh token: по ним распознается повторное использование украденного токена
+ * после ротации, и пока украденный токен не истек, запись о нем должна оставаться.
+ */
+@Service
+public class RefreshTokenPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenPurger.class);
+
+    private static final Timestamp START = new Timestamp(0);
+
+    private static final String PURGE_EXPIRED_SQL =
+            "DELETE FROM refresh_tokens WHERE id IN (" +
+            "  SELECT id FROM refresh_tokens WHERE expiry_date < ? AND expiry_date >= ?" +
+            "  ORDER BY expiry_date LIMIT ? FOR UPDATE SKIP LOCKED" +
+            ") RETURNING expiry_date";
+
+    private static final String PURGE_REVOKED_SQL =
+            "DELETE FROM refresh_tokens WHERE id IN (" +
+            "  SELECT id FROM refresh_tokens WHERE is_revoked = true AND issued_at < ? AND issued_at >= ?" +
+            "  ORDER BY issued_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+            ") RETURNING issued_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${auth.refresh.purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${auth.refresh.purge.batches-per-run:4}")
+    private int batchesPerRun;
+
+    @Value("${auth.refresh.purge.revoked-retention-hours:720}")
+    private long revokedRetentionHours;
+
+    private volatile Timestamp expiredCursor = START;
+    private volatile Timestamp revokedCursor = START;
+
+    public RefreshTokenPurger(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Индекс по expiry_date объявлен в сущности; для отозванных нужен частичный
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        try {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_refresh_token_revoked_issued " +
+                    "ON refresh_tokens (issued_at) WHERE is_revoked = true");
+        } catch (RuntimeException e) {
+            log.warn("Could not create refresh token purge index: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.refresh.purge.interval-ms:5000}",
+               initialDelayString = "${auth.refresh.purge.interval-ms:5000}")
+    public void purge() {
+        Instant now = Instant.now();
+        int budget = batchesPerRun;
+
+        Pass expired = purge(PURGE_EXPIRED_SQL, Timestamp.from(now), expiredCursor, budget);
+        expiredCursor = expired.cursor;
+        budget -= expired.batches;
+
+        int deletedRevoked = 0;
+        if (budget > 0) {
+            Duration retention = Duration.ofHours(revokedRetentionHours);
+            Duration lifetime = Duration.ofDays(RefreshTokenService.REFRESH_TOKEN_DAYS);
+            Timestamp revokedBefore = Timestamp.from(now.minus(retention.compareTo(lifetime) < 0 ? lifetime : retention));
+            Pass revoked = purge(PURGE_REVOKED_SQL, revokedBefore, revokedCursor, budget);
+            revokedCursor = revoked.cursor;
+            deletedRevoked = revoked.deleted;
+        }
+
+        if (expired.deleted > 0 || deletedRevoked > 0) {
+            log.debug("Refresh tokens purged: {} expired, {} revoked", expired.deleted, deletedRevoked);
+        }
+    }
+
+    private Pass purge(String sql, Timestamp before, Timestamp cursor, int maxBatches) {
+        int deleted = 0;
+        int batches = 0;
+
+        while (batches < maxBatches) {
+            List<Timestamp> keys = jdbcTemplate.queryForList(sql, Timestamp.class, before, cursor, batchSize);
+            batches++;
+            deleted += keys.size();
+
+            if (keys.size() < batchSize) {
+                // Проход завершен — следующий начнется сначала и подберет пропущенные заблокированные строки
+                return new Pass(START, deleted, batches);
+            }
+            cursor = Collections.max(keys);
+        }
+        return new Pass(cursor, deleted, batches);
+    }
+
+    private static final class Pass {
+        final Timestamp cursor;
+        final int deleted;
+        final int batches;
+
+        Pass(Timestamp cursor, int deleted, int batches) {
+            this.cursor = cursor;
+            this.deleted = deleted;
+            this.batches = batches;
+        }
+    }
+}
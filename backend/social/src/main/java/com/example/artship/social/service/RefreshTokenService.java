@@ -4,15 +4,22 @@ import com.example.artship.social.model.RefreshToken;
 import com.example.artship.social.model.User;
 import com.example.artship.social.repository.RefreshTokenRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @Transactional
@@ -21,6 +28,38 @@ public class RefreshTokenService {
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Сколько старый токен после ротации еще обменивается на новый (параллельные запросы одного клиента)
+    @Value("${auth.refresh.grace-period-ms:10000}")
+    private long gracePeriodMs;
+    
+    static final int REFRESH_TOKEN_DAYS = 30;
+    
+    // Отзыв текущего токена и данные для нового одним запросом; строка блокируется,
+    // поэтому из двух одновременных ротаций одного токена успешна только одна
+    private static final String ROTATE_SQL =
+            "UPDATE refresh_tokens rt SET is_revoked = true, rotated_at = ? FROM users u " +
+            "WHERE u.id = rt.user_id AND rt.token_hash = ? AND rt.is_revoked = false AND rt.expiry_date > ? " +
+            "RETURNING rt.user_id, rt.family_id, u.username";
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, issued_at, device_info, ip_address, " +
+            "user_agent, is_revoked, family_id) VALUES (?, ?, ?, ?, ?, ?, ?, false, ?) RETURNING id";
+    
+    private static final String LINK_SUCCESSOR_SQL =
+            "UPDATE refresh_tokens SET replaced_by = ? WHERE token_hash = ?";
+    
+    // Токен отозван ротацией не раньше ?, а выданный взамен — той же цепочки и еще действует.
+    // Состояние в БД, поэтому параллельный запрос на другой инстанс распознается так же
+    private static final String GRACE_SQL =
+            "SELECT rt.user_id, rt.family_id, u.username FROM refresh_tokens rt " +
+            "JOIN refresh_tokens successor ON successor.id = rt.replaced_by " +
+            "JOIN users u ON u.id = rt.user_id " +
+            "WHERE rt.token_hash = ? AND rt.is_revoked = true AND rt.rotated_at > ? " +
+            "AND successor.family_id = rt.family_id AND successor.is_revoked = false AND successor.expiry_date > ?";
+    
     
     private static final SecureRandom secureRandom = new SecureRandom();
     private static final Base64.Encoder base64Encoder = Base64.getUrlEncoder();
@@ -58,17 +97,14 @@ public class RefreshTokenService {
         String rawToken = generateSecureRandomToken();
         String tokenHash = hashWithSHA256(rawToken);
         
-        if (refreshTokenRepository.existsByTokenHash(tokenHash)) {
-            throw new RuntimeException("Token hash collision detected");
-        }
-        
- 
+        // Коллизию 512-битного случайного токена отсекает уникальный индекс token_hash
         RefreshToken refreshToken = new RefreshToken();
         refreshToken.setTokenHash(tokenHash);
         refreshToken.setUser(user);
         refreshToken.setExpiryDate(
-            LocalDateTime.now().plusDays(30) // 30 дней
+            LocalDateTime.now().plusDays(REFRESH_TOKEN_DAYS)
         );
+        refreshToken.setFamilyId(UUID.randomUUID().toString()); // новый вход — новая цепочка
         refreshToken.setDeviceInfo(deviceInfo);
         refreshToken.setIpAddress(ipAddress);
         refreshToken.setUserAgent(userAgent);
@@ -91,6 +127,114 @@ public class RefreshTokenService {
         return result;
     }
     
+    // ==================== РОТАЦИЯ ====================
+    
+    /**
+     * Обменивает refresh token на новый: условный UPDATE ... RETURNING отзывает старый
+     * и возвращает владельца, затем один INSERT нового токена той же цепочки.
+     *
+     * Если токен отозван ротацией не дольше grace-периода назад, а выданный взамен
+     * токен той же цепочки еще действует (две вкладки обновились одновременно, возможно
+     * через разные инстансы), выдается еще один токен этой цепочки со статусом GRACE.
+     * Иначе результат со статусом REUSED — вызывающий должен отозвать цепочку.
+     */
+    public Rotation rotate(String rawToken, String deviceInfo, String ipAddress, String userAgent) {
+        String tokenHash = hashWithSHA256(rawToken);
+        LocalDateTime now = LocalDateTime.now();
+        
+        List<Object[]> rows = jdbcTemplate.query(ROTATE_SQL, RefreshTokenService::readSource,
+                Timestamp.valueOf(now), tokenHash, Timestamp.valueOf(now));
+        
+        if (rows.isEmpty()) {
+            List<Object[]> grace = jdbcTemplate.query(GRACE_SQL, RefreshTokenService::readSource,
+                    tokenHash, Timestamp.valueOf(now.minusNanos(gracePeriodMs * 1_000_000)), Timestamp.valueOf(now));
+            if (grace.isEmpty()) {
+                return rejected(tokenHash);
+            }
+            return issue(Rotation.Status.GRACE, grace.get(0), now, deviceInfo, ipAddress, userAgent);
+        }
+        
+        Rotation rotation = issue(Rotation.Status.ROTATED, rows.get(0), now, deviceInfo, ipAddress, userAgent);
+        jdbcTemplate.update(LINK_SUCCESSOR_SQL, rotation.getTokenId(), tokenHash);
+        return rotation;
+    }
+    
+    // Новый токен цепочки старого
+    private Rotation issue(Rotation.Status status, Object[] row, LocalDateTime now,
+                           String deviceInfo, String ipAddress, String userAgent) {
+        Long userId = (Long) row[0];
+        // У токенов, выданных до появления цепочек, family_id пуст — цепочка начинается с них
+        String familyId = row[1] != null ? (String) row[1] : UUID.randomUUID().toString();
+        String username = (String) row[2];
+        
+        String newRawToken = generateSecureRandomToken();
+        Long newId = jdbcTemplate.queryForObject(INSERT_SQL, Long.class,
+                hashWithSHA256(newRawToken), userId, Timestamp.valueOf(now.plusDays(REFRESH_TOKEN_DAYS)),
+                Timestamp.valueOf(now), deviceInfo, ipAddress, userAgent, familyId);
+        
+        return new Rotation(status, newId, userId, username, familyId, newRawToken);
+    }
+    
+    // Отзыв всей цепочки при повторном использовании отозванного токена.
+    // Отдельная транзакция: вызывающий после этого бросает исключение и откатывает свою
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int revokeFamily(String familyId) {
+        return jdbcTemplate.update(
+                "UPDATE refresh_tokens SET is_revoked = true WHERE family_id = ? AND is_revoked = false", familyId);
+    }
+    
+    private Rotation rejected(String tokenHash) {
+        Optional<RefreshToken> existing = refreshTokenRepository.findByTokenHash(tokenHash);
+        if (existing.isEmpty()) {
+            return Rotation.failed(Rotation.Status.INVALID, null);
+        }
+        RefreshToken token = existing.get();
+        // Отозванный токен предъявлен повторно — вероятно, он украден
+        if (token.isRevoked() && token.getFamilyId() != null) {
+            return Rotation.failed(Rotation.Status.REUSED, token.getFamilyId());
+        }
+        return Rotation.failed(Rotation.Status.EXPIRED, token.getFamilyId());
+    }
+    
+    // (user_id, family_id, username) токена, от которого выдается следующий
+    private static Object[] readSource(ResultSet rs, int rowNum) throws SQLException {
+        return new Object[] { rs.getLong(1), rs.getString(2), rs.getString(3) };
+    }
+    
+    public static final class Rotation {
+        
+        public enum Status { ROTATED, GRACE, REUSED, EXPIRED, INVALID }
+        
+        private final Status status;
+        private final Long tokenId;
+        private final Long userId;
+        private final String username;
+        private final String familyId;
+        private final String refreshToken;
+        
+        private Rotation(Status status, Long tokenId, Long userId, String username,
+                         String familyId, String refreshToken) {
+            this.status = status;
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.username = username;
+            this.familyId = familyId;
+            this.refreshToken = refreshToken;
+        }
+        
+        private static Rotation failed(Status status, String familyId) {
+            return new Rotation(status, null, null, null, familyId, null);
+        }
+        
+        public boolean isSuccessful() { return status == Status.ROTATED || status == Status.GRACE; }
+        public Status getStatus() { return status; }
+        public Long getTokenId() { return tokenId; }
+        public Long getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getFamilyId() { return familyId; }
+        public String getRefreshToken() { return refreshToken; }
+    }
+    
     // Поиск refresh token по токену (клиент предоставляет raw token)
     public Optional<RefreshToken> findByToken(String token) {
         String tokenHash = hashWithSHA256(token);
@@ -132,12 +276,7 @@ public class RefreshTokenService {
     }
     
 
-    @Scheduled(cron = "0 0 2 * * ?") 
-    @Transactional
-    public void cleanupExpiredTokens() {
-        refreshTokenRepository.deleteExpiredTokens(LocalDateTime.now());
-        logger.info("Expired refresh tokens cleaned up");
-    }
+    // Истекшие и отозванные токены удаляются пачками в RefreshTokenPurger
 
     public java.util.List<RefreshToken> getUserActiveTokens(Long userId) {
         return refreshTokenRepository.findByUserIdAndRevokedFalse(userId);
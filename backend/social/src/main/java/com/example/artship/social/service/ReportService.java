@@ -4,11 +4,13 @@ import com.example.artship.social.model.Art;
 import com.example.artship.social.model.Comment;
 import com.example.artship.social.model.enumclass.ReportStatus;
 import com.example.artship.social.model.enumclass.ReportTargetType;
+import com.example.artship.social.model.mongo.ModerationTarget;
 import com.example.artship.social.model.mongo.Report;
 
 import com.example.artship.social.repository.mongo.ReportRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -21,17 +23,23 @@ public class ReportService {
     
     private static final Logger logger = LoggerFactory.getLogger(ReportService.class);
     
+    // Приоритет жалобы в списке — ее номер среди жалоб на объект, но не выше 5
+    private static final int MAX_REPORT_PRIORITY = 5;
+    
     private final ReportRepository reportRepository;
     private final ArtService artService;
     private final CommentService commentService;
+    private final ModerationQueueService moderationQueueService;
     
     public ReportService(ReportRepository reportRepository,
                         ArtService artService,
-                        CommentService commentService
+                        CommentService commentService,
+                        ModerationQueueService moderationQueueService
                     ) {
         this.reportRepository = reportRepository;
         this.artService = artService;
         this.commentService = commentService;
+        this.moderationQueueService = moderationQueueService;
     }
     
     // Создание жалобы на арт
@@ -39,10 +47,6 @@ public class ReportService {
     public Report createArtReport(Long reporterId, Long artId, String reason, String description) {
         logger.info("Creating report on art {} by user {}", artId, reporterId);
         
-        if (reportRepository.existsByReporterIdAndTargetIdAndTargetType(reporterId, artId, ReportTargetType.ART)) {
-            throw new RuntimeException("You have already reported this art");
-        }
-        
         Art art = artService.getArtById(artId)
                 .orElseThrow(() -> new RuntimeException("Art not found"));
         
@@ -59,14 +63,15 @@ public class ReportService {
             report.setArtAuthorUsername(art.getAuthor().getUsername());
         }
         
-        long reportCount = reportRepository.countByTargetIdAndTargetType(artId, ReportTargetType.ART);
-        report.setPriority((int) Math.min(reportCount + 1, 5));
+        long reportCount = moderationQueueService.reportCountOf(ReportTargetType.ART, artId);
+        report.setPriority((int) Math.min(reportCount + 1, MAX_REPORT_PRIORITY));
         
-        Report saved = reportRepository.save(report);
+        Report saved = insertOnce(report, "You have already reported this art");
         logger.info("Report created with id: {}", saved.getId());
         
-        if (reportCount + 1 >= 10) {
-            logger.warn("Art {} has 5+ reports, auto-hiding", artId);
+        if (moderationQueueService.recordReport(ReportTargetType.ART, artId, reason,
+                report.getArtTitle(), report.getArtAuthorUsername())) {
+            logger.warn("Art {} reached the report threshold, auto-hiding", artId);
             artService.hideArt(artId);
         }
         
@@ -78,10 +83,6 @@ public class ReportService {
     public Report createCommentReport(Long reporterId, Long commentId, String reason, String description) {
         logger.info("Creating report on comment {} by user {}", commentId, reporterId);
         
-        if (reportRepository.existsByReporterIdAndTargetIdAndTargetType(reporterId, commentId, ReportTargetType.COMMENT)) {
-            throw new RuntimeException("You have already reported this comment");
-        }
-        
         Comment comment = commentService.getCommentEntityById(commentId)
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         
@@ -98,14 +99,15 @@ public class ReportService {
             report.setCommentAuthorUsername(comment.getUser().getUsername());
         }
         
-        long reportCount = reportRepository.countByTargetIdAndTargetType(commentId, ReportTargetType.COMMENT);
-        report.setPriority((int) Math.min(reportCount + 1, 5));
+        long reportCount = moderationQueueService.reportCountOf(ReportTargetType.COMMENT, commentId);
+        report.setPriority((int) Math.min(reportCount + 1, MAX_REPORT_PRIORITY));
         
-        Report saved = reportRepository.save(report);
+        Report saved = insertOnce(report, "You have already reported this comment");
         logger.info("Comment report created with id: {}", saved.getId());
         
-        if (reportCount + 1 >= 5) {
-            logger.warn("Comment {} has 5+ reports, auto-hiding", commentId);
+        if (moderationQueueService.recordReport(ReportTargetType.COMMENT, commentId, reason,
+                report.getCommentText(), report.getCommentAuthorUsername())) {
+            logger.warn("Comment {} reached the report threshold, auto-hiding", commentId);
             commentService.hideComment(commentId);  // ← ИСПРАВЛЕНО: вызываем метод из CommentService
         }
         
@@ -130,6 +132,7 @@ public class ReportService {
         Report report = reportRepository.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("Report not found"));
         
+        boolean wasOpen = isOpen(report);
         report.setStatus(ReportStatus.RESOLVED);
         report.setResolvedBy(resolvedBy);
         report.setResolutionNote(resolutionNote);
@@ -145,7 +148,16 @@ public class ReportService {
             }
         }
         
-        return reportRepository.save(report);
+        Report saved = reportRepository.save(report);
+        
+        if (deleteContent) {
+            // Контента больше нет — остальные жалобы на него тоже закрываются
+            moderationQueueService.onTargetResolved(report.getTargetType(), report.getTargetId(), resolvedBy, resolutionNote);
+        } else if (wasOpen) {
+            moderationQueueService.onReportProcessed(report.getTargetType(), report.getTargetId(), ReportStatus.RESOLVED);
+        }
+        
+        return saved;
     }
     
     // Отклонение жалобы
@@ -156,12 +168,17 @@ public class ReportService {
         Report report = reportRepository.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("Report not found"));
         
+        boolean wasOpen = isOpen(report);
         report.setStatus(ReportStatus.REJECTED);
         report.setResolvedBy(resolvedBy);
         report.setResolutionNote(resolutionNote);
         report.setResolvedAt(LocalDateTime.now());
         
-        return reportRepository.save(report);
+        Report saved = reportRepository.save(report);
+        if (wasOpen) {
+            moderationQueueService.onReportProcessed(report.getTargetType(), report.getTargetId(), ReportStatus.REJECTED);
+        }
+        return saved;
     }
 
     public Report getReportById(String reportId) {
@@ -173,4 +190,22 @@ public class ReportService {
     public long getReportCount(Long targetId, ReportTargetType targetType) {
         return reportRepository.countByTargetIdAndTargetType(targetId, targetType);
     }
+    
+    // Очередь модерации: объекты с жалобами, самые "горячие" первыми
+    public Page<ModerationTarget> getModerationQueue(ReportStatus status, Pageable pageable) {
+        return moderationQueueService.getQueue(status, pageable);
+    }
+    
+    private static boolean isOpen(Report report) {
+        return report.getStatus() == ReportStatus.PENDING || report.getStatus() == ReportStatus.REVIEWED;
+    }
+    
+    // Повторную жалобу отсекает уникальный индекс (reporterId, targetType, targetId)
+    private Report insertOnce(Report report, String duplicateMessage) {
+        try {
+            return reportRepository.insert(report);
+        } catch (DuplicateKeyException e) {
+            throw new RuntimeException(duplicateMessage);
+        }
+    }
 }
\ No newline at end of file
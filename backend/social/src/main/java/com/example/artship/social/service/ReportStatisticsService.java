@@ -0,0 +1,156 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.enumclass.ReportStatus;
+import com.example.artship.social.model.mongo.Report;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Статистика жалоб для админки.
+ *
+ * Считается на стороне Mongo: $group по (status, targetType, reason) и медиана
+ * времени обработки. В JVM жалобы не загружаются. Результат кэшируется
+ * на reports.statistics.cache-ttl-ms, так что частое обновление дашборда не нагружает базу.
+ */
+@Service
+public class ReportStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportStatisticsService.class);
+
+    private static final Document PROCESSED = new Document("resolvedAt", new Document("$ne", null))
+            .append("createdAt", new Document("$ne", null));
+
+    private final MongoTemplate mongoTemplate;
+    private final long cacheTtlMs;
+
+    private volatile Map<String, Object> cached;
+    private volatile long cachedAt;
+
+    public ReportStatisticsService(MongoTemplate mongoTemplate,
+                                   @Value("${reports.statistics.cache-ttl-ms:30000}") long cacheTtlMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheTtlMs = cacheTtlMs;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> current = cached;
+        if (current != null && System.currentTimeMillis() - cachedAt < cacheTtlMs) {
+            return current;
+        }
+
+        synchronized (this) {
+            // Пока ждали монитор, статистику мог пересчитать другой запрос
+            if (cached != null && System.currentTimeMillis() - cachedAt < cacheTtlMs) {
+                return cached;
+            }
+            Map<String, Object> fresh = Collections.unmodifiableMap(compute());
+            cached = fresh;
+            cachedAt = System.currentTimeMillis();
+            return fresh;
+        }
+    }
+
+    private Map<String, Object> compute() {
+        long started = System.currentTimeMillis();
+
+        MongoCollection<Document> reports = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Report.class));
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (ReportStatus status : ReportStatus.values()) {
+            byStatus.put(status.toString().toLowerCase(), 0L);
+        }
+        Map<String, Long> byTargetType = new TreeMap<>();
+        Map<String, Long> byReason = new TreeMap<>();
+        List<Map<String, Object>> breakdown = new ArrayList<>();
+        long total = 0;
+
+        for (Document group : reports.aggregate(groupsPipeline()).allowDiskUse(true)) {
+            Document key = group.get("_id", Document.class);
+            long count = ((Number) group.get("count")).longValue();
+            String status = key.getString("status");
+            String targetType = key.getString("targetType");
+            String reason = key.getString("reason");
+
+            total += count;
+            if (status != null) {
+                byStatus.merge(status.toLowerCase(), count, Long::sum);
+            }
+            byTargetType.merge(String.valueOf(targetType), count, Long::sum);
+            byReason.merge(String.valueOf(reason), count, Long::sum);
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("status", status);
+            row.put("targetType", targetType);
+            row.put("reason", reason);
+            row.put("count", count);
+            breakdown.add(row);
+        }
+
+        // Плоские ключи total/pending/... остаются для совместимости с прежним ответом
+        statistics.put("total", total);
+        statistics.putAll(byStatus);
+        statistics.put("byTargetType", byTargetType);
+        statistics.put("byReason", byReason);
+        statistics.put("breakdown", breakdown);
+
+        long processed = reports.countDocuments(PROCESSED);
+        statistics.put("processedCount", processed);
+        statistics.put("medianResolutionSeconds", processed == 0 ? null : medianResolutionSeconds(reports, processed));
+
+        statistics.put("generatedAt", LocalDateTime.now());
+
+        logger.debug("Report statistics computed in {} ms", System.currentTimeMillis() - started);
+        return statistics;
+    }
+
+    private static List<Document> groupsPipeline() {
+        return List.of(new Document("$group", new Document("_id", new Document()
+                .append("status", "$status")
+                .append("targetType", "$targetType")
+                .append("reason", "$reason"))
+                .append("count", new Document("$sum", 1))));
+    }
+
+    /**
+     * Медиана (resolvedAt - createdAt) по обработанным жалобам. Оператор $median появился
+     * только в MongoDB 7, поэтому длительности сортируются и берутся один или два средних
+     * элемента через $skip/$limit — в ответ попадают только они, а не массив всех длительностей.
+     * $sort с $limit выполняется как top-k, при нехватке памяти — с выгрузкой на диск.
+     */
+    private static Long medianResolutionSeconds(MongoCollection<Document> reports, long processed) {
+        long skip = (processed - 1) / 2;
+        int take = processed % 2 == 0 ? 2 : 1;
+
+        List<Document> pipeline = List.of(
+                new Document("$match", PROCESSED),
+                new Document("$project", new Document("_id", 0)
+                        .append("ms", new Document("$subtract", List.of("$resolvedAt", "$createdAt")))),
+                new Document("$sort", new Document("ms", 1)),
+                new Document("$skip", skip),
+                new Document("$limit", take));
+
+        List<Double> middle = new ArrayList<>(take);
+        for (Document row : reports.aggregate(pipeline).allowDiskUse(true)) {
+            middle.add(((Number) row.get("ms")).doubleValue());
+        }
+        if (middle.isEmpty()) {
+            return null; // жалобы удалили между подсчетом и выборкой
+        }
+        double medianMs = middle.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        return Math.round(medianMs) / 1000;
+    }
+}
@@ -1,197 +1,225 @@
 package com.example.artship.social.service;
 
+import com.example.artship.social.config.SearchSchemaInitializer;
 import com.example.artship.social.dto.ArtDto;
 import com.example.artship.social.dto.SearchResult;
 import com.example.artship.social.dto.UserDto;
+import com.example.artship.social.model.Art;
 import com.example.artship.social.repository.ArtRepository;
 import com.example.artship.social.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import jakarta.annotation.PreDestroy;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Поиск по артам, тегам и пользователям.
+ *
+ * Арты ищутся полнотекстово по search_vector с ранжированием по ts_rank,
+ * теги и username — по подстроке через trigram-индексы. Секции общего поиска
+ * выполняются параллельно, каждая в своей транзакции, поэтому сам сервис
+ * транзакцию не открывает.
+ */
 @Service
-@Transactional(readOnly = true)
 public class SearchService {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
-    
+
+    private static final int MAX_QUERY_TERMS = 8;
+
     private final ArtRepository artRepository;
     private final UserRepository userRepository;
-    private final ArtService artService;
-    
-    public SearchService(ArtRepository artRepository, 
+    private final ArtDtoAssembler artDtoAssembler;
+    private final SearchSchemaInitializer searchSchema;
+    private final ExecutorService searchExecutor;
+
+    public SearchService(ArtRepository artRepository,
                          UserRepository userRepository,
-                         ArtService artService) {
+                         ArtDtoAssembler artDtoAssembler,
+                         SearchSchemaInitializer searchSchema,
+                         @Value("${search.parallelism:8}") int parallelism) {
         this.artRepository = artRepository;
         this.userRepository = userRepository;
-        this.artService = artService;
+        this.artDtoAssembler = artDtoAssembler;
+        this.searchSchema = searchSchema;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.searchExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdown();
     }
-    
-    
+
+
      //Умный поиск: распознает #теги и @юзеров
-     
+
     public SearchResult smartSearch(String query, int limit) {
         logger.info("Smart search for: {}", query);
-        
-        if (query == null || query.trim().isEmpty()) {
-            return new SearchResult();
-        }
-        
-        String trimmedQuery = query.trim();
         Pageable pageable = PageRequest.of(0, limit);
-        
-        if (trimmedQuery.startsWith("#")) {
-            String tagName = trimmedQuery.substring(1);
-            logger.info("Searching by tag: {}", tagName);
-            
-            SearchResult result = new SearchResult();
-            result.setSearchType("tag");
-            
-            var artsPage = artRepository.findByTagNameAndIsPublicFlagTrue(tagName, pageable);
-            List<ArtDto> arts = artsPage.getContent().stream()
-                    .map(artService::convertToDto)
-                    .collect(Collectors.toList());
-            
-            result.setArtsByTags(arts);
-            result.setTotalArtsByTags(artsPage.getTotalElements());
-            
-            return result;
-        }
-        
-        if (trimmedQuery.startsWith("@")) {
-            String username = trimmedQuery.substring(1);
-            logger.info("Searching by username: {}", username);
-            
-            SearchResult result = new SearchResult();
-            result.setSearchType("user");
-            
-            var usersPage = userRepository.findByUsernameContainingIgnoreCase(username, pageable);
-            List<UserDto> users = usersPage.getContent().stream()
-                    .map(user -> {
-                        UserDto dto = new UserDto(user);
-                        dto.setEmail(null); // Скрываем email
-                        return dto;
-                    })
-                    .collect(Collectors.toList());
-            
-            result.setUsersByUsername(users);
-            result.setTotalUsers(usersPage.getTotalElements());
-            
-            return result;
-        }
-        
-        logger.info("General search: {}", trimmedQuery);
-        
-        SearchResult result = new SearchResult();
-        result.setSearchType("general");
-        
-        var artsByTitlePage = artRepository.findByTitleContainingIgnoreCaseAndIsPublicFlagTrue(trimmedQuery, pageable);
-        List<ArtDto> artsByTitle = artsByTitlePage.getContent().stream()
-                .map(artService::convertToDto)
-                .collect(Collectors.toList());
-        
-        var artsByTagsPage = artRepository.findByTagNameContainingIgnoreCaseAndIsPublicFlagTrue(trimmedQuery, pageable);
-        List<ArtDto> artsByTags = artsByTagsPage.getContent().stream()
-                .map(artService::convertToDto)
-                .collect(Collectors.toList());
-        
-        var usersPage = userRepository.findByUsernameContainingIgnoreCase(trimmedQuery, pageable);
-        List<UserDto> users = usersPage.getContent().stream()
-                .map(user -> {
-                    UserDto dto = new UserDto(user);
-                    dto.setEmail(null);
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        
-        result.setArtsByTitle(artsByTitle);
-        result.setArtsByTags(artsByTags);
-        result.setUsersByUsername(users);
-        result.setTotalArtsByTitle(artsByTitlePage.getTotalElements());
-        result.setTotalArtsByTags(artsByTagsPage.getTotalElements());
-        result.setTotalUsers(usersPage.getTotalElements());
-        
-        return result;
+        return smartSearchPaginated(query, pageable, pageable, pageable);
     }
-    
-    
+
+
      //Умный поиск с пагинацией для каждого типа
-     
-    public SearchResult smartSearchPaginated(String query, 
+
+    public SearchResult smartSearchPaginated(String query,
                                                    Pageable artsTitlePageable,
                                                    Pageable artsTagsPageable,
                                                    Pageable usersPageable) {
         logger.info("Smart search with pagination for: {}", query);
-        
+
         if (query == null || query.trim().isEmpty()) {
             return new SearchResult();
         }
-        
+
         String trimmedQuery = query.trim();
-        
+        long started = System.nanoTime();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        SearchResult result = new SearchResult();
+
         if (trimmedQuery.startsWith("#")) {
             String tagName = trimmedQuery.substring(1);
-            SearchResult result = new SearchResult();
             result.setSearchType("tag");
-            
-            var artsPage = artRepository.findByTagNameAndIsPublicFlagTrue(tagName, artsTagsPageable);
-            result.setArtsByTags(artsPage.getContent().stream()
-                    .map(artService::convertToDto)
-                    .collect(Collectors.toList()));
+
+            Page<ArtDto> artsPage = timed("artsByTags", timings, () -> artDtoAssembler.toDtoPage(
+                    artRepository.findByTagNameAndIsPublicFlagTrue(tagName, artsTagsPageable)));
+            result.setArtsByTags(artsPage.getContent());
             result.setTotalArtsByTags(artsPage.getTotalElements());
-            
-            return result;
-        }
-        
-        if (trimmedQuery.startsWith("@")) {
+
+        } else if (trimmedQuery.startsWith("@")) {
             String username = trimmedQuery.substring(1);
-            SearchResult result = new SearchResult();
             result.setSearchType("user");
-            
-            var usersPage = userRepository.findByUsernameContainingIgnoreCase(username, usersPageable);
-            result.setUsersByUsername(usersPage.getContent().stream()
-                    .map(user -> {
-                        UserDto dto = new UserDto(user);
-                        dto.setEmail(null);
-                        return dto;
-                    })
-                    .collect(Collectors.toList()));
+
+            Page<UserDto> usersPage = timed("users", timings, () -> searchUsers(username, usersPageable));
+            result.setUsersByUsername(usersPage.getContent());
+            result.setTotalUsers(usersPage.getTotalElements());
+
+        } else {
+            result.setSearchType("general");
+
+            CompletableFuture<Page<ArtDto>> byTitle = async("artsByTitle", timings,
+                    () -> searchArtsByText(trimmedQuery, artsTitlePageable));
+            CompletableFuture<Page<ArtDto>> byTags = async("artsByTags", timings,
+                    () -> searchArtsByTag(trimmedQuery, artsTagsPageable));
+            CompletableFuture<Page<UserDto>> users = async("users", timings,
+                    () -> searchUsers(trimmedQuery, usersPageable));
+
+            Page<ArtDto> artsByTitlePage = await(byTitle);
+            Page<ArtDto> artsByTagsPage = await(byTags);
+            Page<UserDto> usersPage = await(users);
+
+            result.setArtsByTitle(artsByTitlePage.getContent());
+            result.setTotalArtsByTitle(artsByTitlePage.getTotalElements());
+            result.setArtsByTags(artsByTagsPage.getContent());
+            result.setTotalArtsByTags(artsByTagsPage.getTotalElements());
+            result.setUsersByUsername(usersPage.getContent());
             result.setTotalUsers(usersPage.getTotalElements());
-            
-            return result;
         }
-        
-        SearchResult result = new SearchResult();
-        result.setSearchType("general");
-        
-        var artsByTitlePage = artRepository.findByTitleContainingIgnoreCaseAndIsPublicFlagTrue(trimmedQuery, artsTitlePageable);
-        result.setArtsByTitle(artsByTitlePage.getContent().stream()
-                .map(artService::convertToDto)
-                .collect(Collectors.toList()));
-        result.setTotalArtsByTitle(artsByTitlePage.getTotalElements());
-        
-        var artsByTagsPage = artRepository.findByTagNameContainingIgnoreCaseAndIsPublicFlagTrue(trimmedQuery, artsTagsPageable);
-        result.setArtsByTags(artsByTagsPage.getContent().stream()
-                .map(artService::convertToDto)
-                .collect(Collectors.toList()));
-        result.setTotalArtsByTags(artsByTagsPage.getTotalElements());
-        
-        var usersPage = userRepository.findByUsernameContainingIgnoreCase(trimmedQuery, usersPageable);
-        result.setUsersByUsername(usersPage.getContent().stream()
+
+        result.getTimingsMs().putAll(timings);
+        result.getTimingsMs().put("total", elapsedMs(started));
+        logger.debug("Search '{}' timings: {}", trimmedQuery, result.getTimingsMs());
+
+        return result;
+    }
+
+    private Page<ArtDto> searchArtsByText(String query, Pageable pageable) {
+        String tsQuery = toPrefixTsQuery(query);
+
+        Page<Art> arts = searchSchema.isFullTextEnabled() && tsQuery != null
+                ? artRepository.searchPublicByText(tsQuery, unsorted(pageable))
+                : artRepository.findByTitleContainingIgnoreCaseAndIsPublicFlagTrue(query, pageable);
+
+        return artDtoAssembler.toDtoPage(arts);
+    }
+
+    private Page<ArtDto> searchArtsByTag(String query, Pageable pageable) {
+        return artDtoAssembler.toDtoPage(
+                artRepository.searchPublicByTagPattern(toContainsPattern(query), unsorted(pageable)));
+    }
+
+    private Page<UserDto> searchUsers(String query, Pageable pageable) {
+        return userRepository.searchByUsernamePattern(
+                        toContainsPattern(query), query.toLowerCase(Locale.ROOT), unsorted(pageable))
                 .map(user -> {
                     UserDto dto = new UserDto(user);
-                    dto.setEmail(null);
+                    dto.setEmail(null); // Скрываем email
                     return dto;
-                })
-                .collect(Collectors.toList()));
-        result.setTotalUsers(usersPage.getTotalElements());
-        
-        return result;
+                });
+    }
+
+    // "кот в сапогах" -> "кот:* & в:* & сапогах:*"; null, если в запросе нет слов
+    static String toPrefixTsQuery(String query) {
+        String terms = Arrays.stream(query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+"))
+                .filter(term -> !term.isEmpty())
+                .limit(MAX_QUERY_TERMS)
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+        return terms.isEmpty() ? null : terms;
+    }
+
+    // Шаблон LIKE '%q%' с экранированием спецсимволов пользовательского ввода
+    static String toContainsPattern(String query) {
+        String escaped = query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    // Нативные запросы сортируют по релевантности сами, Sort из запроса к ним не применим
+    private static Pageable unsorted(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    private <T> CompletableFuture<T> async(String section, Map<String, Long> timings, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> timed(section, timings, work), searchExecutor);
+    }
+
+    private static <T> T timed(String section, Map<String, Long> timings, Supplier<T> work) {
+        long started = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            timings.put(section, elapsedMs(started));
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static long elapsedMs(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,314 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.repository.ArtRepository;
+import com.example.artship.social.repository.ArtTagRepository;
+import com.example.artship.social.repository.TagRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+/**
+ * Инвертированный индекс тег → отсортированный массив id артов в памяти.
+ *
+ * AND/OR-запросы по тегам решаются пересечением/объединением массивов без
+ * обращения к БД; из базы затем загружается только страница найденных артов.
+ * Кроме списков хранится видимость артов, которые не являются ACTIVE+public
+ * (таких немного), чтобы фильтровать результаты так же, как запросы ArtRepository.
+ *
+ * Изменения применяются после коммита транзакции, периодическая перестройка
+ * исправляет возможный дрейф. Пока идет перестройка, изменения применяются
+ * к текущим картам и запоминаются, а после чтения БД повторяются на новых
+ * картах перед подменой — иначе подмена потеряла бы изменения, закоммиченные
+ * после чтения. Все операции идемпотентны, повтор уже учтенных безопасен.
+ */
+@Service
+public class TagIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(TagIndexService.class);
+
+    private static final long[] EMPTY = new long[0];
+
+    private final ArtTagRepository artTagRepository;
+    private final ArtRepository artRepository;
+    private final TagRepository tagRepository;
+
+    // tagId -> id артов по возрастанию; массивы не изменяются, только заменяются
+    private volatile Map<Long, long[]> postings = new ConcurrentHashMap<>();
+
+    // Арты, скрытые от обычных пользователей: artId -> виден ли модераторам
+    private volatile Map<Long, Boolean> restricted = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    // Изменения, пришедшие во время перестройки; null, когда перестройка не идет
+    private List<IndexUpdate> updatesDuringRebuild;
+    private final Object updateLock = new Object();
+
+    public TagIndexService(ArtTagRepository artTagRepository,
+                           ArtRepository artRepository,
+                           TagRepository tagRepository) {
+        this.artTagRepository = artTagRepository;
+        this.artRepository = artRepository;
+        this.tagRepository = tagRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${tags.index.rebuild-interval-ms:3600000}",
+               initialDelayString = "${tags.index.rebuild-interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+
+        // Запись начинается до чтения БД: изменение, закоммиченное после чтения, точно попадет в буфер
+        synchronized (updateLock) {
+            updatesDuringRebuild = new ArrayList<>();
+        }
+
+        try {
+            swap(load());
+        } finally {
+            synchronized (updateLock) {
+                updatesDuringRebuild = null;
+            }
+        }
+
+        log.info("Tag index built: {} tags, {} restricted arts in {} ms",
+                postings.size(), restricted.size(), System.currentTimeMillis() - started);
+    }
+
+    private Snapshot load() {
+        Map<Long, List<Long>> collected = new HashMap<>();
+        for (Object[] row : artTagRepository.findAllTagIdArtIdPairs()) {
+            collected.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Long) row[1]);
+        }
+
+        Map<Long, long[]> newPostings = new ConcurrentHashMap<>(collected.size() * 2);
+        collected.forEach((tagId, artIds) -> newPostings.put(tagId,
+                artIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray()));
+
+        Map<Long, Boolean> newRestricted = new ConcurrentHashMap<>();
+        for (Object[] row : artRepository.findRestrictedIdsAndStatus(ArtStatus.ACTIVE)) {
+            newRestricted.put((Long) row[0], isVisibleToStaff((ArtStatus) row[1]));
+        }
+
+        return new Snapshot(newPostings, newRestricted);
+    }
+
+    private void swap(Snapshot snapshot) {
+        synchronized (updateLock) {
+            updatesDuringRebuild.forEach(update -> update.apply(snapshot.postings, snapshot.restricted));
+            postings = snapshot.postings;
+            restricted = snapshot.restricted;
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ==================== ОБНОВЛЕНИЕ ====================
+
+    public void onTagAdded(Long artId, Long tagId) {
+        afterCommit((tags, hidden) -> tags.compute(tagId, (id, ids) -> insert(ids, artId)));
+    }
+
+    public void onTagRemoved(Long artId, Long tagId) {
+        afterCommit((tags, hidden) -> tags.computeIfPresent(tagId, (id, ids) -> remove(ids, artId)));
+    }
+
+    public void onTagsRemoved(Long artId, Collection<Long> tagIds) {
+        tagIds.forEach(tagId -> onTagRemoved(artId, tagId));
+    }
+
+    public void onTagDeleted(Long tagId) {
+        afterCommit((tags, hidden) -> tags.remove(tagId));
+    }
+
+    // Смена статуса или приватности арта
+    public void onArtStateChanged(Art art) {
+        onArtStateChanged(art.getId(), art.getStatus(), art.getIsPublicFlag());
+    }
+
+    // То же для массовых UPDATE, где сущность не загружается
+    public void onArtStateChanged(Long artId, ArtStatus status, Boolean publicFlag) {
+        boolean publiclyVisible = status == ArtStatus.ACTIVE && Boolean.TRUE.equals(publicFlag);
+        boolean staffVisible = isVisibleToStaff(status);
+
+        afterCommit((tags, hidden) -> {
+            if (publiclyVisible) {
+                hidden.remove(artId);
+            } else {
+                hidden.put(artId, staffVisible);
+            }
+        });
+    }
+
+    // ==================== ЗАПРОСЫ ====================
+
+    // id существующих тегов с указанными названиями (один запрос по уникальному индексу)
+    @Transactional(readOnly = true)
+    public List<Long> resolveTagIds(List<String> tagNames) {
+        return tagNames.isEmpty() ? List.of() : tagRepository.findIdsByNameIn(tagNames);
+    }
+
+    /**
+     * Арты, у которых есть все указанные теги, от новых к старым (id по убыванию).
+     */
+    public long[] findAll(Collection<Long> tagIds, boolean staff) {
+        if (tagIds.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<Long, long[]> current = postings;
+        long[][] lists = tagIds.stream()
+                .distinct()
+                .map(tagId -> current.getOrDefault(tagId, EMPTY))
+                .sorted(Comparator.comparingInt(ids -> ids.length))
+                .toArray(long[][]::new);
+
+        // Пересечение начинается с самого короткого списка
+        long[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return visibleNewestFirst(result, staff);
+    }
+
+    /**
+     * Арты, у которых есть хотя бы один из указанных тегов, от новых к старым.
+     */
+    public long[] findAny(Collection<Long> tagIds, boolean staff) {
+        Map<Long, long[]> current = postings;
+        long[] union = tagIds.stream()
+                .distinct()
+                .map(tagId -> current.getOrDefault(tagId, EMPTY))
+                .flatMapToLong(LongStream::of)
+                .sorted()
+                .distinct()
+                .toArray();
+        return visibleNewestFirst(union, staff);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ ====================
+
+    private long[] visibleNewestFirst(long[] ascending, boolean staff) {
+        Map<Long, Boolean> hidden = restricted;
+        long[] result = new long[ascending.length];
+        int size = 0;
+        for (int i = ascending.length - 1; i >= 0; i--) {
+            Boolean staffVisible = hidden.get(ascending[i]);
+            if (staffVisible == null || (staff && staffVisible)) {
+                result[size++] = ascending[i];
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long[] insert(long[] ids, long artId) {
+        if (ids == null) {
+            return new long[] { artId };
+        }
+        int pos = Arrays.binarySearch(ids, artId);
+        if (pos >= 0) {
+            return ids;
+        }
+        int insertAt = -pos - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = artId;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long artId) {
+        int pos = Arrays.binarySearch(ids, artId);
+        if (pos < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null; // computeIfPresent удалит пустой тег из индекса
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        System.arraycopy(ids, pos + 1, result, pos, ids.length - pos - 1);
+        return result;
+    }
+
+    // Совпадает с фильтром status NOT IN (DELETED_BY_USER, BANNED) в запросах для модераторов
+    private static boolean isVisibleToStaff(ArtStatus status) {
+        return status != ArtStatus.DELETED_BY_USER && status != ArtStatus.BANNED;
+    }
+
+    private void apply(IndexUpdate update) {
+        synchronized (updateLock) {
+            update.apply(postings, restricted);
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.add(update);
+            }
+        }
+    }
+
+    private void afterCommit(IndexUpdate update) {
+        Runnable action = () -> apply(update);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private interface IndexUpdate {
+        void apply(Map<Long, long[]> postings, Map<Long, Boolean> restricted);
+    }
+
+    private static final class Snapshot {
+        final Map<Long, long[]> postings;
+        final Map<Long, Boolean> restricted;
+
+        Snapshot(Map<Long, long[]> postings, Map<Long, Boolean> restricted) {
+            this.postings = postings;
+            this.restricted = restricted;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.example.artship.social.service;
 
 import com.example.artship.social.dto.ArtDto;
 import com.example.artship.social.dto.TagDto;
-import com.example.artship.social.dto.UserDto;
 import com.example.artship.social.model.Art;
 import com.example.artship.social.model.ArtTag;
 import com.example.artship.social.model.Tag;
@@ -29,13 +28,19 @@ public class TagManagementService {
     private final ArtRepository artRepository;
     private final TagRepository tagRepository;
     private final ArtTagRepository artTagRepository;
+    private final ArtDtoAssembler artDtoAssembler;
+    private final TagIndexService tagIndexService;
     
     public TagManagementService(ArtRepository artRepository,
                                TagRepository tagRepository,
-                               ArtTagRepository artTagRepository) {
+                               ArtTagRepository artTagRepository,
+                               ArtDtoAssembler artDtoAssembler,
+                               TagIndexService tagIndexService) {
         this.artRepository = artRepository;
         this.tagRepository = tagRepository;
         this.artTagRepository = artTagRepository;
+        this.artDtoAssembler = artDtoAssembler;
+        this.tagIndexService = tagIndexService;
     }
     
     // Добавление тегов к арту (массовое)
@@ -55,6 +60,7 @@ public class TagManagementService {
             if (!artTagRepository.existsByArtIdAndTagId(artId, tag.getId())) {
                 ArtTag artTag = new ArtTag(art, tag);
                 artTagRepository.save(artTag);
+                tagIndexService.onTagAdded(artId, tag.getId());
                 log.debug("Added tag '{}' to art {}", tagName, artId);
             }
         }
@@ -78,6 +84,7 @@ public class TagManagementService {
         
         ArtTag artTag = new ArtTag(art, tag);
         artTagRepository.save(artTag);
+        tagIndexService.onTagAdded(artId, tagId);
         log.info("Successfully added tag {} to art {}", tagId, artId);
     }
     
@@ -90,6 +97,7 @@ public class TagManagementService {
         }
         
         artTagRepository.deleteByArtIdAndTagId(artId, tagId);
+        tagIndexService.onTagRemoved(artId, tagId);
         log.info("Successfully removed tag {} from art {}", tagId, artId);
     }
     
@@ -97,9 +105,10 @@ public class TagManagementService {
     public void removeAllTagsFromArt(Long artId) {
         log.info("Removing all tags from art {}", artId);
         
-        Long count = artTagRepository.countByArtId(artId);
+        List<Long> tagIds = artTagRepository.findTagIdsByArtId(artId);
         artTagRepository.deleteByArtId(artId);
-        log.info("Removed {} tags from art {}", count, artId);
+        tagIndexService.onTagsRemoved(artId, tagIds);
+        log.info("Removed {} tags from art {}", tagIds.size(), artId);
     }
     
     // Получение тегов арта
@@ -124,20 +133,7 @@ public class TagManagementService {
                  tagId, pageable.getPageNumber(), pageable.getPageSize());
         
         Page<Art> artsPage = artRepository.findByTagsId(tagId, pageable);
-        return artsPage.map(this::convertToDto);
-    }
-    
-    // НОВЫЙ МЕТОД: полная конвертация Art в ArtDto с тегами
-    private ArtDto convertToDto(Art art) {
-        if (art == null) return null;
-        
-        ArtDto dto = convertToArtDto(art);
-        
-        // Добавляем теги к арту
-        List<TagDto> tags = getTagsByArtId(art.getId());
-        dto.setTags(tags);
-        
-        return dto;
+        return artDtoAssembler.toDtoPage(artsPage);
     }
     
     // Проверка существования связи
@@ -157,31 +153,4 @@ public class TagManagementService {
     public Long getArtCountByTagId(Long tagId) {
         return artTagRepository.countByTagId(tagId);
     }
-    
-    // Конвертация Art в ArtDto (без тегов)
-    private ArtDto convertToArtDto(Art art) {
-        if (art == null) return null;
-        
-        ArtDto dto = new ArtDto();
-        dto.setId(art.getId());
-        dto.setTitle(art.getTitle());
-        dto.setDescription(art.getDescription());
-        dto.setImage(art.getImageUrl());
-        dto.setProjectDataUrl(art.getProjectDataUrl());
-        dto.setPublicFlag(art.getIsPublicFlag() != null ? art.getIsPublicFlag() : true);
-        dto.setCreatedAt(art.getCreatedAt());
-        dto.setUpdatedAt(art.getUpdatedAt());
-        
-        // Автор
-        if (art.getAuthor() != null) {
-            UserDto authorDto = new UserDto();
-            authorDto.setId(art.getAuthor().getId());
-            authorDto.setUsername(art.getAuthor().getUsername());
-            authorDto.setEmail(art.getAuthor().getEmail());
-            authorDto.setAvatarUrl(art.getAuthor().getAvatarUrl());
-            dto.setAuthor(authorDto);
-        }
-        
-        return dto;
-    }
 }
\ No newline at end of file
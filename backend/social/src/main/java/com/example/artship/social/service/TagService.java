@@ -18,10 +18,14 @@ public class TagService {
     private final TagRepository tagRepository;
 
     private final ArtTagRepository artTagRepository;
+
+    private final TagIndexService tagIndexService;
     
-    public TagService(TagRepository tagRepository, ArtTagRepository artTagRepository) {
+    public TagService(TagRepository tagRepository, ArtTagRepository artTagRepository,
+                      TagIndexService tagIndexService) {
     this.tagRepository = tagRepository;
     this.artTagRepository = artTagRepository;
+    this.tagIndexService = tagIndexService;
 }
     
     public Tag createTag(String name) {
@@ -88,6 +92,7 @@ public class TagService {
         Tag tag = tagRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Tag not found with id: " + id));
         tagRepository.delete(tag);
+        tagIndexService.onTagDeleted(id);
     }
     
 
@@ -0,0 +1,211 @@
+package com.example.artship.social.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Сборщик файлов в uploads/images, на которые не ссылается ни одна запись.
+ *
+ * Такие файлы остаются, если вставка арта упала после загрузки, если картинку
+ * заменили или счетчик ссылок разошелся с данными. Обе стороны перебираются
+ * в одном и том же порядке (байтовое сравнение путей): дерево каталогов —
+ * отсортированным обходом, ссылки из arts/users/collections — потоковым
+ * запросом с ORDER BY ... COLLATE "C". Они сливаются как два отсортированных
+ * списка, так что в памяти нет ни полного списка файлов, ни множества ссылок.
+ *
+ * За один запуск проверяется не больше max-files-per-run файлов, следующий
+ * продолжает с того же места. Удаляются только файлы старше grace-периода.
+ */
+@Service
+public class UploadGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadGarbageCollector.class);
+
+    // Относительные пути всех загрузок, на которые ссылаются записи
+    private static final String REFERENCED_PATHS_SQL =
+            "SELECT p FROM (" +
+            "  SELECT regexp_replace(url, '^.*?/(uploads|api/files)/images/', '') AS p FROM (" +
+            "    SELECT image AS url FROM arts" +
+            "    UNION ALL SELECT thumbnail_url FROM arts" +
+            "    UNION ALL SELECT medium_url FROM arts" +
+            "    UNION ALL SELECT avatar_url FROM users" +
+            "    UNION ALL SELECT avatar_thumbnail_url FROM users" +
+            "    UNION ALL SELECT cover_image_url FROM collections" +
+            "  ) urls WHERE url ~ '/(uploads|api/files)/images/'" +
+            ") refs WHERE p COLLATE \"C\" > ? ORDER BY p COLLATE \"C\"";
+
+    private final LocalFileStorageService fileStorageService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${uploads.gc.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${uploads.gc.max-files-per-run:20000}")
+    private int maxFilesPerRun;
+
+    // Последний проверенный путь; пустая строка — обход с начала
+    private volatile String cursor = "";
+
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder deletedFiles = new LongAdder();
+    private final LongAdder scannedFiles = new LongAdder();
+    private volatile Instant lastRunAt;
+
+    public UploadGarbageCollector(LocalFileStorageService fileStorageService, DataSource dataSource) {
+        this.fileStorageService = fileStorageService;
+        // Отдельный JdbcTemplate с fetchSize: ссылки читаются курсором, а не целиком
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+    }
+
+    @Scheduled(fixedDelayString = "${uploads.gc.interval-ms:3600000}",
+               initialDelayString = "${uploads.gc.interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public void collect() {
+        long started = System.currentTimeMillis();
+        Instant notModifiedSince = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+
+        Sweep sweep;
+        try (Stream<String> references = jdbcTemplate.queryForStream(
+                REFERENCED_PATHS_SQL, (rs, rowNum) -> rs.getString(1), cursor)) {
+            sweep = new Sweep(references.iterator(), notModifiedSince);
+            walk(fileStorageService.getUploadDir(), "", sweep);
+        } catch (IOException e) {
+            log.warn("Upload GC aborted at '{}': {}", cursor, e.getMessage());
+            return;
+        }
+
+        // Дерево пройдено до конца — следующий запуск начнет сначала
+        cursor = sweep.exhausted() ? "" : sweep.lastPath;
+        lastRunAt = Instant.now();
+
+        scannedFiles.add(sweep.scanned);
+        deletedFiles.add(sweep.deleted);
+        reclaimedBytes.add(sweep.freedBytes);
+
+        log.info("Upload GC: scanned {} files, deleted {} orphans ({} bytes) in {} ms",
+                sweep.scanned, sweep.deleted, sweep.freedBytes, System.currentTimeMillis() - started);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reclaimedBytes", reclaimedBytes.sum());
+        stats.put("deletedFiles", deletedFiles.sum());
+        stats.put("scannedFiles", scannedFiles.sum());
+        stats.put("cursor", cursor);
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+
+    /**
+     * Обход в порядке полных относительных путей. Каталог сортируется как "имя/",
+     * поэтому "ab.jpg" идет раньше "ab/..." — так же, как в COLLATE "C".
+     * Поддеревья целиком до курсора пропускаются без чтения.
+     */
+    private void walk(Path dir, String prefix, Sweep sweep) throws IOException {
+        List<Child> children = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(dir)) {
+            entries.forEach(path -> {
+                boolean directory = Files.isDirectory(path);
+                children.add(new Child(path, prefix + path.getFileName() + (directory ? "/" : ""), directory));
+            });
+        }
+        children.sort(Comparator.comparing(child -> child.key));
+
+        for (Child child : children) {
+            if (sweep.full()) {
+                return;
+            }
+            if (child.directory) {
+                if (child.key.compareTo(cursor) > 0 || cursor.startsWith(child.key)) {
+                    walk(child.path, child.key, sweep);
+                }
+            } else if (child.key.compareTo(cursor) > 0) {
+                sweep.visit(child.key, child.path);
+            }
+        }
+    }
+
+    /**
+     * Состояние слияния: текущая ссылка из БД и счетчики одного запуска.
+     */
+    private final class Sweep {
+        private final Iterator<String> references;
+        private final Instant notModifiedSince;
+        private String reference;
+
+        int scanned;
+        int deleted;
+        long freedBytes;
+        String lastPath = "";
+
+        Sweep(Iterator<String> references, Instant notModifiedSince) {
+            this.references = references;
+            this.notModifiedSince = notModifiedSince;
+            this.reference = references.hasNext() ? references.next() : null;
+        }
+
+        boolean full() {
+            return scanned >= maxFilesPerRun;
+        }
+
+        boolean exhausted() {
+            return scanned < maxFilesPerRun;
+        }
+
+        void visit(String path, Path file) {
+            scanned++;
+            lastPath = path;
+
+            while (reference != null && reference.compareTo(path) < 0) {
+                reference = references.hasNext() ? references.next() : null;
+            }
+            if (path.equals(reference)) {
+                return;
+            }
+
+            try {
+                long freed = fileStorageService.deleteOrphan(file, notModifiedSince);
+                if (freed > 0) {
+                    deleted++;
+                    freedBytes += freed;
+                    log.debug("Orphaned upload deleted: {} ({} bytes)", path, freed);
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete orphaned upload {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Child {
+        final Path path;
+        final String key;
+        final boolean directory;
+
+        Child(Path path, String key, boolean directory) {
+            this.path = path;
+            this.key = key;
+            this.directory = directory;
+        }
+    }
+}
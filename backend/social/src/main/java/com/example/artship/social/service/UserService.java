@@ -1,6 +1,5 @@
 package com.example.artship.social.service;
 
-import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -10,6 +9,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import com.example.artship.social.dto.RoleStatistics;
 import com.example.artship.social.model.User;
@@ -17,6 +18,9 @@ import com.example.artship.social.model.UserRole;
 import com.example.artship.social.repository.RefreshTokenRepository;
 import com.example.artship.social.repository.UserRepository;
 import com.example.artship.social.repository.mongo.VerificationTokenRepository;
+import com.example.artship.social.security.JwtAuthenticationFilter;
+import com.example.artship.social.security.TokenVersionRegistry;
+import com.example.artship.social.security.UserPrincipalCache;
 
 @Service
 public class UserService {
@@ -31,21 +35,44 @@ public class UserService {
     @Autowired
     private VerificationTokenRepository verificationTokenRepository; 
     
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+    
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
     
     public Optional<User> findById(Long id) {
+        User current = currentRequestUser();
+        if (current != null && current.getId().equals(id)) {
+            return Optional.of(current);
+        }
         return userRepository.findById(id);
     }
     
     public Optional<User> findByUsername(String username) {
+        User current = currentRequestUser();
+        if (current != null && current.getUsername().equals(username)) {
+            return Optional.of(current);
+        }
+        return userRepository.findByUsername(username);
+    }
+    
+    // Для изменения и сохранения: всегда свежая запись из БД. Копия из кэша может
+    // отставать на TTL, и save() вернул бы ее устаревшие поля (пароль, миниатюру аватара)
+    public Optional<User> findByUsernameForUpdate(String username) {
         return userRepository.findByUsername(username);
     }
     
     public User save(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        evictCachedUser(saved.getId());
+        return saved;
     }
     
     public void deleteById(Long id) {
         userRepository.deleteById(id);
+        evictCachedUser(id);
     }
     
     public boolean existsByUsername(String username) {
@@ -67,6 +94,8 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
         user.setUserRole(newRole);
         User updatedUser = userRepository.save(user);
+        tokenVersionRegistry.bump(userId); // токены со старой ролью больше не принимаются
+        evictCachedUser(userId);
         return updatedUser;
     }
     
@@ -76,25 +105,11 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with username: " + username));
         user.setUserRole(newRole);
         User updatedUser = userRepository.save(user);
+        tokenVersionRegistry.bump(updatedUser.getId());
+        evictCachedUser(updatedUser.getId());
         return updatedUser;
     }
 
-    @Transactional
-    public int bulkChangeUserRole(List<Long> userIds, UserRole newRole) {        
-        int updatedCount = 0;
-        for (Long userId : userIds) {
-            try {
-                changeUserRole(userId, newRole);
-                updatedCount++;
-            } catch (Exception e) {
-                logger.error("Failed to update user ID: {}", userId, e);
-            }
-        }
-        
-        logger.info("Successfully updated {} users", updatedCount);
-        return updatedCount;
-    }
-
     @Transactional(readOnly = true)
     public RoleStatistics getRoleStatistics() {
         logger.info("Getting role statistics");
@@ -146,4 +161,26 @@ public class UserService {
         logger.info("Deleting verification tokens for user ID: {}", userId);
         verificationTokenRepository.deleteByUserId(userId);
     }
-}
\ No newline at end of file
+
+    // Сброс кэша принципала и копии пользователя в текущем запросе
+    private void evictCachedUser(Long userId) {
+        userPrincipalCache.invalidate(userId);
+        
+        User current = currentRequestUser();
+        if (current != null && current.getId().equals(userId)) {
+            RequestContextHolder.getRequestAttributes().removeAttribute(
+                    JwtAuthenticationFilter.CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    // Пользователь, уже загруженный JwtAuthenticationFilter для текущего запроса
+    private User currentRequestUser() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object user = attributes.getAttribute(JwtAuthenticationFilter.CURRENT_USER_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        return user instanceof User ? (User) user : null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.artship.social.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Отзыв с другого инстанса: версия приходит опросом sync() из users.
+ */
+class TokenVersionRegistryTest {
+
+    private static final long USER_ID = 42L;
+
+    private JdbcTemplate jdbcTemplate;
+    private UserPrincipalCache userPrincipalCache;
+    private TokenVersionRegistry registry;
+    private Timestamp changedAt;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        userPrincipalCache = mock(UserPrincipalCache.class);
+        registry = new TokenVersionRegistry(jdbcTemplate, userPrincipalCache);
+
+        changedAt = new Timestamp(System.currentTimeMillis());
+        ReflectionTestUtils.setField(registry, "syncedUntil", new Timestamp(changedAt.getTime() - 60_000));
+    }
+
+    @Test
+    void remoteBumpRevokesOldTokensAndEvictsPrincipal() throws SQLException {
+        assertThat(registry.isCurrent(USER_ID, 0)).isTrue();
+        returnChangedRows(1);
+
+        registry.sync();
+
+        assertThat(registry.isCurrent(USER_ID, 0)).isFalse();
+        assertThat(registry.isCurrent(USER_ID, 1)).isTrue();
+        verify(userPrincipalCache).invalidate(USER_ID);
+    }
+
+    @Test
+    void rereadRowDoesNotEvictAgain() throws SQLException {
+        returnChangedRows(2);
+
+        // Окно опроса перекрывается: та же строка читается повторно
+        registry.sync();
+        registry.sync();
+
+        verify(userPrincipalCache, times(1)).invalidate(USER_ID);
+        assertThat(registry.current(USER_ID)).isEqualTo(2);
+    }
+
+    @Test
+    void tokensWithoutClaimAreAcceptedUntilFirstBump() {
+        assertThat(registry.isCurrent(USER_ID, null)).isTrue();
+        verify(userPrincipalCache, never()).invalidate(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void returnChangedRows(int version) throws SQLException {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong(1)).thenReturn(USER_ID);
+        when(row.getInt(2)).thenReturn(version);
+        when(row.getTimestamp(3)).thenReturn(changedAt);
+
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Timestamp.class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Timestamp> mapper = invocation.getArgument(1);
+                    return List.of(mapper.mapRow(row, 0));
+                });
+    }
+}
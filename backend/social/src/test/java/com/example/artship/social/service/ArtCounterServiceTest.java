@@ -0,0 +1,115 @@
+package com.example.artship.social.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ArtCounterServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ArtCounterService artCounterService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        artCounterService = new ArtCounterService(jdbcTemplate);
+        ReflectionTestUtils.setField(artCounterService, "reconcileBatchSize", 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rolledBackChangeIsNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        artCounterService.likeAdded(1L);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        artCounterService.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void committedChangeIsWrittenOnce() {
+        TransactionSynchronizationManager.initSynchronization();
+        artCounterService.likeAdded(1L);
+        artCounterService.commentAdded(1L);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        artCounterService.flush();
+        artCounterService.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = batchCaptor();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).containsExactly(new Object[] { 1L, 1L, 0L, 1L });
+    }
+
+    @Test
+    void changesOutsideTransactionAreBufferedImmediately() {
+        artCounterService.collectionSaveAdded(7L);
+        artCounterService.collectionSaveAdded(7L);
+        artCounterService.collectionSaveRemoved(7L);
+
+        artCounterService.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = batchCaptor();
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).containsExactly(new Object[] { 0L, 0L, 1L, 7L });
+    }
+
+    @Test
+    void reconcileDropsBufferedChangesOfRecountedArts() {
+        // Одна пачка (0, 10]: арт 5 пересчитан из таблиц, арт 20 в нее не попал
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), anyLong(), anyInt()))
+                .thenReturn(10L)
+                .thenReturn(null);
+        artCounterService.likeAdded(5L);
+        artCounterService.likeAdded(20L);
+
+        artCounterService.reconcile();
+        artCounterService.flush();
+
+        verify(jdbcTemplate).update(anyString(), eq(0L), eq(10L));
+        ArgumentCaptor<List<Object[]>> batch = batchCaptor();
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).containsExactly(new Object[] { 1L, 0L, 0L, 20L });
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Object[]>> batchCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.Collection;
+import com.example.artship.social.model.CollectionArt;
+import com.example.artship.social.model.User;
+import com.example.artship.social.repository.ArtRepository;
+import com.example.artship.social.repository.CollectionArtRepository;
+import com.example.artship.social.repository.CollectionRepository;
+import com.example.artship.social.support.PostgresJpaTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@Testcontainers(disabledWithoutDocker = true)
+class CollectionArtPositionsTest extends PostgresJpaTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CollectionArtRepository collectionArtRepository;
+
+    @Autowired
+    private CollectionRepository collectionRepository;
+
+    @Autowired
+    private ArtRepository artRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CollectionArtService collectionArtService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        collectionArtService = new CollectionArtService(collectionArtRepository, collectionRepository, artRepository,
+                mock(ArtDtoAssembler.class), mock(ArtCounterService.class), jdbcTemplate);
+        owner = entityManager.persist(new User("owner", "owner@artship.com", "hash"));
+    }
+
+    @Test
+    void moveToFrontSurvivesBackfill() {
+        Collection collection = entityManager.persist(new Collection("Favourites", owner));
+        List<Long> artIds = addArts(collection, 1, 2, 3);
+        entityManager.flush();
+
+        // Первый арт на GAP: перенос в начало дает позицию ровно 0
+        collectionArtService.moveArts(collection.getId(), collection.getId(), List.of(artIds.get(2)), null);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> expected = List.of(artIds.get(2), artIds.get(0), artIds.get(1));
+        assertThat(orderOf(collection)).isEqualTo(expected);
+        assertThat(positionsOf(collection).get(0)).isZero();
+
+        collectionArtService.initializePositions();
+        entityManager.clear();
+
+        assertThat(orderOf(collection)).isEqualTo(expected);
+    }
+
+    @Test
+    void insertBeforeHeadGoesBelowZero() {
+        Collection collection = entityManager.persist(new Collection("Sketches", owner));
+        List<Long> artIds = addArts(collection, 1, 2, 3);
+        entityManager.flush();
+
+        collectionArtService.moveArts(collection.getId(), collection.getId(), List.of(artIds.get(2)), null);
+        collectionArtService.moveArts(collection.getId(), collection.getId(), List.of(artIds.get(1)), null);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> expected = List.of(artIds.get(1), artIds.get(2), artIds.get(0));
+        assertThat(orderOf(collection)).isEqualTo(expected);
+        assertThat(positionsOf(collection).get(0)).isNegative();
+
+        collectionArtService.initializePositions();
+        entityManager.clear();
+
+        assertThat(orderOf(collection)).isEqualTo(expected);
+    }
+
+    @Test
+    void legacyCollectionIsNumberedBySavedAtOnce() {
+        Collection collection = new Collection("Legacy", owner);
+        collection.setPositionsInitialized(false);
+        entityManager.persist(collection);
+
+        // Строки до появления position: у всех 0, порядок — по времени добавления
+        LocalDateTime savedAt = LocalDateTime.now().minusDays(3);
+        List<Long> artIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Art art = entityManager.persist(new Art("Legacy " + i, "/uploads/images/legacy-" + i + ".png", owner));
+            CollectionArt item = new CollectionArt(collection, art);
+            item.setSavedAt(savedAt.plusHours(i));
+            entityManager.persist(item);
+            artIds.add(art.getId());
+        }
+        entityManager.flush();
+
+        collectionArtService.initializePositions();
+        entityManager.clear();
+
+        assertThat(orderOf(collection)).isEqualTo(artIds);
+        assertThat(positionsOf(collection)).containsExactly(
+                CollectionArt.POSITION_GAP, 2 * CollectionArt.POSITION_GAP, 3 * CollectionArt.POSITION_GAP);
+        assertThat(collectionRepository.findById(collection.getId()))
+                .hasValueSatisfying(found -> assertThat(found.isPositionsInitialized()).isTrue());
+
+        // Ручной порядок после нумерации повторный запуск не трогает
+        collectionArtService.moveArts(collection.getId(), collection.getId(), List.of(artIds.get(2)), null);
+        entityManager.flush();
+        entityManager.clear();
+        collectionArtService.initializePositions();
+        entityManager.clear();
+
+        assertThat(orderOf(collection)).containsExactly(artIds.get(2), artIds.get(0), artIds.get(1));
+    }
+
+    private List<Long> addArts(Collection collection, int... numbers) {
+        List<Long> artIds = new ArrayList<>();
+        for (int number : numbers) {
+            Art art = entityManager.persist(new Art("Art " + number, "/uploads/images/" + number + ".png", owner));
+            CollectionArt item = new CollectionArt(collection, art);
+            item.setPosition(number * CollectionArt.POSITION_GAP);
+            entityManager.persist(item);
+            artIds.add(art.getId());
+        }
+        return artIds;
+    }
+
+    private List<Long> orderOf(Collection collection) {
+        return collectionArtRepository.findByCollectionIdOrderByPositionAsc(collection.getId()).stream()
+                .map(item -> item.getArt().getId())
+                .toList();
+    }
+
+    private List<Double> positionsOf(Collection collection) {
+        return collectionArtRepository.findByCollectionIdOrderByPositionAsc(collection.getId()).stream()
+                .map(CollectionArt::getPosition)
+                .toList();
+    }
+}
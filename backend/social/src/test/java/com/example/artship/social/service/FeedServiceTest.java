@@ -0,0 +1,115 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.Art;
+import com.example.artship.social.model.User;
+import com.example.artship.social.model.enumclass.ArtStatus;
+import com.example.artship.social.repository.ArtRepository;
+import com.example.artship.social.repository.FeedEntryRepository;
+import com.example.artship.social.repository.FollowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Гибридная лента: feed_entries (push) плюс арты знаменитостей (pull).
+ */
+class FeedServiceTest {
+
+    private static final long READER_ID = 1L;
+    private static final long AUTHOR_ID = 2L;
+    private static final long CELEBRITY_ID = 3L;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    private FeedEntryRepository feedEntryRepository;
+    private FollowRepository followRepository;
+    private ArtRepository artRepository;
+    private FeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        feedEntryRepository = mock(FeedEntryRepository.class);
+        followRepository = mock(FollowRepository.class);
+        artRepository = mock(ArtRepository.class);
+        feedService = new FeedService(feedEntryRepository, followRepository, artRepository);
+        ReflectionTestUtils.setField(feedService, "maxEntriesPerUser", 1000);
+        ReflectionTestUtils.setField(feedService, "celebrityAuthorIds", Set.of(CELEBRITY_ID));
+        when(followRepository.findFollowingIdsAmong(eq(READER_ID), any())).thenReturn(List.of(CELEBRITY_ID));
+    }
+
+    @Test
+    void artInBothSourcesIsShownAndCountedOnce() {
+        // Арт 30 разослан, пока автор еще не был знаменитостью, и приходит из обоих источников
+        Art regular = art(20L, AUTHOR_ID, 2);
+        Art celebrityOld = art(30L, CELEBRITY_ID, 1);
+        Art celebrityNew = art(31L, CELEBRITY_ID, 0);
+        when(feedEntryRepository.findFeedArts(eq(READER_ID), eq(ArtStatus.ACTIVE), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(2), List.of(celebrityOld, regular), 2));
+        when(artRepository.findByAuthorIdInAndStatusAndIsPublicFlagTrue(eq(List.of(CELEBRITY_ID)), eq(ArtStatus.ACTIVE), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(2), List.of(celebrityNew, celebrityOld), 2));
+        when(feedEntryRepository.countFeedArtsByAuthors(READER_ID, ArtStatus.ACTIVE, List.of(CELEBRITY_ID)))
+                .thenReturn(1L);
+
+        Page<Art> feed = feedService.getFeed(READER_ID, PageRequest.of(0, 10));
+
+        assertThat(feed.getContent()).extracting(Art::getId).containsExactly(31L, 30L, 20L);
+        assertThat(feed.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void secondPageContinuesMergedOrder() {
+        List<Art> pushed = List.of(art(20L, AUTHOR_ID, 1), art(21L, AUTHOR_ID, 3));
+        List<Art> pulled = List.of(art(30L, CELEBRITY_ID, 0), art(31L, CELEBRITY_ID, 2));
+        when(feedEntryRepository.findFeedArts(eq(READER_ID), eq(ArtStatus.ACTIVE), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(2), pushed, 2));
+        when(artRepository.findByAuthorIdInAndStatusAndIsPublicFlagTrue(any(), eq(ArtStatus.ACTIVE), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(2), pulled, 2));
+
+        Page<Art> feed = feedService.getFeed(READER_ID, PageRequest.of(1, 2));
+
+        assertThat(feed.getContent()).extracting(Art::getId).containsExactly(31L, 21L);
+        assertThat(feed.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    void publishingDoesNotCountFollowers() {
+        feedService.onArtPublished(art(40L, CELEBRITY_ID, 0));
+        feedService.onArtPublished(art(41L, AUTHOR_ID, 0));
+        feedService.onFollow(READER_ID, AUTHOR_ID);
+
+        verify(feedEntryRepository, never()).fanOutToFollowers(eq(40L), anyLong(), any());
+        verify(feedEntryRepository).fanOutToFollowers(eq(41L), eq(AUTHOR_ID), any());
+        verify(followRepository, never()).countByFollowingId(anyLong());
+    }
+
+    private Art art(Long id, Long authorId, int hoursAgo) {
+        User author = new User(authorId);
+        Art art = new Art("Art " + id, "/uploads/images/" + id + ".png", author);
+        ReflectionTestUtils.setField(art, "id", id);
+        art.setCreatedAt(now.minusHours(hoursAgo));
+        art.setStatus(ArtStatus.ACTIVE);
+        art.setIsPublicFlag(true);
+        return art;
+    }
+
+    private static Page<Art> page(Pageable pageable, List<Art> content, long total) {
+        return new PageImpl<>(content, pageable, total);
+    }
+}
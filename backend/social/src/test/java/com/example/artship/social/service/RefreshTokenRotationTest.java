@@ -0,0 +1,101 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.model.User;
+import com.example.artship.social.repository.RefreshTokenRepository;
+import com.example.artship.social.service.RefreshTokenService.Rotation;
+import com.example.artship.social.support.PostgresJpaTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Grace-период и повторное использование: состояние только в refresh_tokens,
+ * поэтому второй инстанс видит ту же картину, что и первый.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RefreshTokenRotationTest extends PostgresJpaTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private RefreshTokenService refreshTokenService;
+    private String initialToken;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = newInstance();
+        User user = entityManager.persist(new User("tabs", "tabs@artship.com", "hash"));
+        initialToken = refreshTokenService.createRefreshToken(user, "Desktop", "127.0.0.1", "Firefox").getTokenHash();
+        // Ротация идет через JdbcTemplate — сущности в контексте не должны заслонять строки
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void secondTabOnAnotherInstanceGetsTokenOfSameFamily() {
+        Rotation first = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+        // Другой инстанс, другой User-Agent: grace определяется только строкой в БД
+        Rotation second = newInstance().rotate(initialToken, "Desktop", "127.0.0.2", "Chrome");
+
+        assertThat(first.getStatus()).isEqualTo(Rotation.Status.ROTATED);
+        assertThat(second.getStatus()).isEqualTo(Rotation.Status.GRACE);
+        assertThat(second.getFamilyId()).isEqualTo(first.getFamilyId());
+        assertThat(second.getRefreshToken()).isNotEqualTo(first.getRefreshToken());
+        assertThat(refreshTokenService.verifyToken(first.getRefreshToken())).isTrue();
+        assertThat(refreshTokenService.verifyToken(second.getRefreshToken())).isTrue();
+    }
+
+    @Test
+    void rotatedTokenAfterGraceIsReuse() {
+        Rotation first = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+        jdbcTemplate.update("UPDATE refresh_tokens SET rotated_at = rotated_at - INTERVAL '1 minute' WHERE id <> ?",
+                first.getTokenId());
+
+        Rotation replay = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+
+        assertThat(replay.getStatus()).isEqualTo(Rotation.Status.REUSED);
+        assertThat(replay.getFamilyId()).isEqualTo(first.getFamilyId());
+    }
+
+    @Test
+    void tokenIsReuseOnceItsSuccessorWasRotated() {
+        Rotation first = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+        refreshTokenService.rotate(first.getRefreshToken(), "Desktop", "127.0.0.1", "Firefox");
+
+        // Цепочка ушла дальше — в пределах окна, но это уже не параллельный запрос
+        Rotation replay = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+
+        assertThat(replay.getStatus()).isEqualTo(Rotation.Status.REUSED);
+    }
+
+    @Test
+    void revokedFamilyLeavesNoGrace() {
+        Rotation first = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+        refreshTokenService.revokeFamily(first.getFamilyId());
+
+        Rotation replay = refreshTokenService.rotate(initialToken, "Desktop", "127.0.0.1", "Firefox");
+
+        assertThat(replay.getStatus()).isEqualTo(Rotation.Status.REUSED);
+        assertThat(refreshTokenService.verifyToken(first.getRefreshToken())).isFalse();
+    }
+
+    private RefreshTokenService newInstance() {
+        RefreshTokenService service = new RefreshTokenService();
+        ReflectionTestUtils.setField(service, "refreshTokenRepository", refreshTokenRepository);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "gracePeriodMs", 10_000L);
+        return service;
+    }
+}
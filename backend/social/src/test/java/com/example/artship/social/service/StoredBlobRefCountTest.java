@@ -0,0 +1,137 @@
+package com.example.artship.social.service;
+
+import com.example.artship.social.repository.StoredBlobRepository;
+import com.example.artship.social.support.PostgresJpaTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Счетчик ссылок stored_blobs и файл на диске. Каждая операция коммитится сама,
+ * как в контроллерах: удаление файла после коммита иначе не наступит.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StoredBlobRefCountTest extends PostgresJpaTest {
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path uploadDir;
+
+    private LocalFileStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalFileStorageService(storedBlobRepository, new TransactionTemplate(transactionManager),
+                uploadDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM stored_blobs");
+    }
+
+    @Test
+    void sameContentIsStoredOnce() throws IOException {
+        String first = storage.uploadFile(image("sunset.png", "same bytes"));
+        String second = storage.uploadFile(image("copy.png", "same bytes"));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(refCount(first)).isEqualTo(2);
+        try (var files = Files.walk(uploadDir)) {
+            assertThat(files.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void fileIsDeletedWithLastReference() {
+        String url = storage.uploadFile(image("sunset.png", "shared"));
+        storage.uploadFile(image("sunset.png", "shared"));
+        Path file = storage.resolveLocalFile(url);
+
+        storage.deleteFile(url);
+        assertThat(file).exists();
+        assertThat(refCount(url)).isEqualTo(1);
+
+        storage.deleteFile(url);
+        assertThat(file).doesNotExist();
+        assertThat(refCount(url)).isNull();
+    }
+
+    @Test
+    void uploadAfterPurgeStoresFileAgain() {
+        String url = storage.uploadFile(image("sunset.png", "again"));
+        storage.deleteFile(url);
+
+        String reuploaded = storage.uploadFile(image("sunset.png", "again"));
+
+        assertThat(reuploaded).isEqualTo(url);
+        assertThat(storage.resolveLocalFile(reuploaded)).exists();
+        assertThat(refCount(reuploaded)).isEqualTo(1);
+    }
+
+    @Test
+    void orphanIsDeletedOnlyWhenNotTouchedSinceCutoff() throws IOException {
+        String url = storage.uploadFile(image("sunset.png", "orphan"));
+        Path file = storage.resolveLocalFile(url);
+        Instant cutoff = Instant.now().minus(Duration.ofHours(24));
+
+        // Свежая загрузка: ссылка могла еще не попасть в БД
+        assertThat(storage.deleteOrphan(file, cutoff)).isZero();
+        assertThat(refCount(url)).isEqualTo(1);
+
+        Files.setLastModifiedTime(file, FileTime.from(cutoff.minus(Duration.ofHours(1))));
+        assertThat(storage.deleteOrphan(file, cutoff)).isPositive();
+        assertThat(file).doesNotExist();
+        assertThat(refCount(url)).isNull();
+    }
+
+    @Test
+    void orphanCheckLeavesNoPlaceholderForFreshFile() throws IOException {
+        Path file = uploadDir.resolve("ab/cd/abcd" + "0".repeat(60) + ".png");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "written by another instance");
+
+        assertThat(storage.deleteOrphan(file, Instant.now().minus(Duration.ofHours(24)))).isZero();
+
+        assertThat(file).exists();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stored_blobs", Integer.class)).isZero();
+    }
+
+    private Integer refCount(String url) {
+        String hash = url.substring(url.lastIndexOf('/') + 1, url.lastIndexOf('.'));
+        return jdbcTemplate.query("SELECT ref_count FROM stored_blobs WHERE hash = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, hash);
+    }
+
+    private static MockMultipartFile image(String name, String content) {
+        return new MockMultipartFile("file", name, "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.artship.social.support;
+
+import com.example.artship.social.model.User;
+import com.example.artship.social.repository.UserRepository;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Только JPA-часть приложения: SocialApplication включает Mongo-репозитории,
+ * которых в срезе @DataJpaTest нет.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@EntityScan(basePackageClasses = User.class)
+@EnableJpaRepositories(basePackageClasses = UserRepository.class)
+public class JpaTestConfiguration {
+}
@@ -0,0 +1,29 @@
+package com.example.artship.social.support;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ContextConfiguration;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * База для тестов нативных запросов: схема создается Hibernate (ddl-auto=update)
+ * в том же PostgreSQL, что и в docker-compose. Каждый тест откатывается.
+ * Контейнер один на все тестовые классы: контекст Spring кэшируется между ними
+ * вместе с адресом базы.
+ *
+ * Наследники помечаются @Testcontainers(disabledWithoutDocker = true),
+ * чтобы без Docker тесты пропускались, а не падали.
+ */
+@DataJpaTest
+@ContextConfiguration(classes = JpaTestConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public abstract class PostgresJpaTest {
+
+    @ServiceConnection
+    protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+}
@@ -43,6 +43,12 @@ export const adminApi = {
     });
   },
   
+  // Прогресс массовой операции; failures приходят после завершения
+  getBulkJob: async (jobId) => {
+    const url = `${API_URL}/admin/bulk-jobs/${jobId}`;
+    return fetchWithErrorHandling(url);
+  },
+  
   // Поиск пользователей
   searchUsers: async (query, page = 0, size = 20) => {
     const url = `${API_URL}/users/all?search=${encodeURIComponent(query)}&page=${page}&size=${size}`;
@@ -229,7 +229,7 @@ export const userApi = {
       method: 'POST',
       body: JSON.stringify(userIds),
     });
-    return data; // { updatedCount, role, message }
+    return data; // { jobId, status, total, processed, ... } — роли меняются в фоне
   },
   
   // === ACCOUNT MANAGEMENT ===
@@ -41,7 +41,8 @@ export default function AddToCollectionModal({ isOpen, onClose, artId, onSuccess
             
             const filtered = (data?.content || []).filter(col => {
                 const id = String(col.id).toLowerCase();
-                return id !== LIKED_COLLECTION_ID && 
+                return col.kind !== 'LIKED' &&
+                       id !== LIKED_COLLECTION_ID && 
                        id !== '__liked__' && 
                        id !== 'liked' &&
                        col.title !== 'Мне понравилось' &&
@@ -62,10 +62,11 @@ export default function LikeBtn({
                     return newCount;
                 });
             } else {
-                await likeApi.addLike(user.id, artId);
+                const result = await likeApi.addLike(user.id, artId);
                 setIsLiked(true);
                 setLikesCount(prev => {
-                    const newCount = prev + 1;
+                    // changed=false — лайк уже был (повторный клик из другой вкладки)
+                    const newCount = result?.changed === false ? prev : prev + 1;
                     if (onLikeChange) {
                         onLikeChange(newCount);
                     }
@@ -168,7 +168,7 @@ export default function Home() {
         return (
             <div className={styles.feed}>
                 {validArts.map(art => {
-                    const imageUrl = getImageUrl(art.image);
+                    const imageUrl = getImageUrl(art.mediumUrl || art.image);
                     return (
                         <ArtCard 
                             key={art.id} 
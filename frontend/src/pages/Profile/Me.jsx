@@ -87,6 +87,10 @@ export default function Me() {
     const isSystemCollection = useCallback((collection) => {
         if (!collection) return false;
         
+        if (collection.kind === 'LIKED') {
+            return true;
+        }
+        
         const id = String(collection.id).toLowerCase();
         if (id === LIKED_COLLECTION_ID || id === '__liked__' || id === 'liked') {
             return true;